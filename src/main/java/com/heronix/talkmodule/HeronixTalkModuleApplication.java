@@ -1,5 +1,6 @@
 package com.heronix.talkmodule;
 
+import com.heronix.talkmodule.service.CacheRetentionService;
 import javafx.application.Application;
 import javafx.application.Platform;
 import javafx.fxml.FXMLLoader;
@@ -186,7 +187,10 @@ public class HeronixTalkModuleApplication extends Application {
     @Override
     public void stop() {
         if (springContext != null) {
+            // Compact only after every bean has finished with the database
+            Runnable compaction = springContext.getBean(CacheRetentionService.class).compactionAfterClose();
             springContext.close();
+            compaction.run();
         }
     }
 
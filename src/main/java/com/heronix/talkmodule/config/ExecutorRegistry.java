@@ -0,0 +1,175 @@
+package com.heronix.talkmodule.config;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Every executor the application runs background work on.
+ *
+ * Blocking I/O (HTTP, database, file transfers) goes to {@link #io(String)},
+ * which starts a named virtual thread per task, so a slow server never ties
+ * up a platform thread or the common pool. CPU-bound work shares the small
+ * bounded {@link #cpu()} pool. Services that need a fixed concurrency limit or
+ * a scheduler get their own named pool from here too, so all of them can be
+ * inspected through {@link #getStats()} and are shut down together.
+ */
+@Component
+public class ExecutorRegistry {
+
+    private static final int CPU_QUEUE_CAPACITY = 1024;
+
+    private final Map<String, ExecutorService> executors = new ConcurrentHashMap<>();
+
+    // ===================== Executors =====================
+
+    /**
+     * Virtual-thread-per-task executor for blocking I/O. Unbounded; callers that
+     * must limit concurrency should use {@link #bounded(String, int, int)}.
+     */
+    public ExecutorService io(String name) {
+        return executors.computeIfAbsent("io-" + name, key -> new VirtualExecutor(
+                Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("talkmodule-" + name + "-", 1).factory())));
+    }
+
+    /**
+     * Shared pool for CPU-bound work, one thread per spare core (at most four).
+     * When the queue is full the submitting thread runs the task itself.
+     */
+    public ExecutorService cpu() {
+        return executors.computeIfAbsent("cpu", key -> {
+            int threads = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() - 1));
+            return new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                    new ArrayBlockingQueue<>(CPU_QUEUE_CAPACITY), platformThreads("talkmodule-cpu", Thread.NORM_PRIORITY),
+                    new ThreadPoolExecutor.CallerRunsPolicy());
+        });
+    }
+
+    /**
+     * Fixed pool of platform threads with a bounded queue. Submissions beyond
+     * the queue are rejected with {@link java.util.concurrent.RejectedExecutionException}.
+     */
+    public ExecutorService bounded(String name, int threads, int queueCapacity) {
+        return executors.computeIfAbsent(name, key -> new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(queueCapacity), platformThreads("talkmodule-" + name, Thread.NORM_PRIORITY)));
+    }
+
+    /**
+     * Single-thread scheduler, e.g. for ordered work with delays or retries.
+     */
+    public ScheduledExecutorService scheduler(String name, int priority) {
+        return (ScheduledExecutorService) executors.computeIfAbsent(name, key -> {
+            ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(1,
+                    platformThreads("talkmodule-" + name, priority));
+            scheduler.setRemoveOnCancelPolicy(true);
+            return scheduler;
+        });
+    }
+
+    private static ThreadFactory platformThreads(String prefix, int priority) {
+        AtomicInteger counter = new AtomicInteger();
+        return r -> {
+            Thread t = new Thread(r, prefix + "-" + counter.incrementAndGet());
+            t.setDaemon(true);
+            t.setPriority(priority);
+            return t;
+        };
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executors.values().forEach(ExecutorService::shutdownNow);
+    }
+
+    // ===================== Metrics =====================
+
+    public List<ExecutorStats> getStats() {
+        List<ExecutorStats> stats = new ArrayList<>();
+        executors.forEach((name, executor) -> {
+            if (executor instanceof ThreadPoolExecutor pool) {
+                stats.add(new ExecutorStats(name, pool.getQueue().size(), pool.getActiveCount(),
+                        pool.getCompletedTaskCount(), pool.getLargestPoolSize()));
+            } else if (executor instanceof VirtualExecutor virtual) {
+                stats.add(new ExecutorStats(name, 0, virtual.active.get(), virtual.completed.get(),
+                        virtual.peak.get()));
+            }
+        });
+        stats.sort((a, b) -> a.name().compareTo(b.name()));
+        return stats;
+    }
+
+    /**
+     * {@code largest} is the peak thread count for pools and peak concurrent
+     * tasks for virtual-thread executors.
+     */
+    public record ExecutorStats(String name, int queued, int active, long completed, int largest) {}
+
+    /**
+     * Counts running and finished tasks, which a thread-per-task executor does
+     * not track itself.
+     */
+    private static final class VirtualExecutor extends AbstractExecutorService {
+        private final ExecutorService delegate;
+        final AtomicInteger active = new AtomicInteger();
+        final AtomicInteger peak = new AtomicInteger();
+        final AtomicLong completed = new AtomicLong();
+
+        VirtualExecutor(ExecutorService delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void execute(Runnable command) {
+            delegate.execute(() -> {
+                peak.accumulateAndGet(active.incrementAndGet(), Math::max);
+                try {
+                    command.run();
+                } finally {
+                    active.decrementAndGet();
+                    completed.incrementAndGet();
+                }
+            });
+        }
+
+        @Override
+        public void shutdown() {
+            delegate.shutdown();
+        }
+
+        @Override
+        public List<Runnable> shutdownNow() {
+            return delegate.shutdownNow();
+        }
+
+        @Override
+        public boolean isShutdown() {
+            return delegate.isShutdown();
+        }
+
+        @Override
+        public boolean isTerminated() {
+            return delegate.isTerminated();
+        }
+
+        @Override
+        public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+            return delegate.awaitTermination(timeout, unit);
+        }
+    }
+}
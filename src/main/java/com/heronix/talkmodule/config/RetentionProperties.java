@@ -0,0 +1,64 @@
+package com.heronix.talkmodule.config;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Retention settings for the local H2 cache.
+ *
+ * Per-channel overrides are keyed by channel id, e.g.
+ * {@code heronix.retention.channels.42.max-age-days=365}.
+ */
+@Component
+@ConfigurationProperties(prefix = "heronix.retention")
+@Data
+public class RetentionProperties {
+
+    private boolean enabled = true;
+
+    private int initialDelayMinutes = 5;
+    private int intervalMinutes = 60;
+
+    // Rows deleted per transaction
+    private int batchSize = 500;
+
+    // Default message policy applied to every channel without an override
+    private Policy defaults = new Policy(90, 5000);
+
+    private Map<Long, Policy> channels = new HashMap<>();
+
+    // Expired/inactive news and finished alerts older than this are pruned
+    private int newsMaxAgeDays = 30;
+    private int alertMaxAgeDays = 180;
+
+    // Run SHUTDOWN COMPACT on exit when rows were pruned during this session
+    private boolean compactOnShutdown = true;
+
+    /**
+     * Resolve the effective policy for a channel, falling back to the defaults
+     * for any limit the override leaves unset.
+     */
+    public Policy policyFor(Long channelId) {
+        Policy override = channelId != null ? channels.get(channelId) : null;
+        if (override == null) {
+            return defaults;
+        }
+        return new Policy(
+                override.getMaxAgeDays() != null ? override.getMaxAgeDays() : defaults.getMaxAgeDays(),
+                override.getMaxMessages() != null ? override.getMaxMessages() : defaults.getMaxMessages());
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Policy {
+        private Integer maxAgeDays;   // null or <= 0 disables the age limit
+        private Integer maxMessages;  // null or <= 0 disables the count limit
+    }
+}
@@ -0,0 +1,20 @@
+package com.heronix.talkmodule.config;
+
+import com.heronix.talkmodule.util.TimerWheel;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One timer wheel for every short in-memory timeout (typing indicators,
+ * alert expiry), so they share a single thread.
+ */
+@Configuration
+public class TimerConfig {
+
+    @Bean(destroyMethod = "stop")
+    public TimerWheel timerWheel() {
+        return new TimerWheel("talkmodule-timer-wheel", 100, TimeUnit.MILLISECONDS, 512);
+    }
+}
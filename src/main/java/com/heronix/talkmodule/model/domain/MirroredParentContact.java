@@ -0,0 +1,50 @@
+package com.heronix.talkmodule.model.domain;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+/**
+ * Local copy of a parent/guardian contact for a mirrored student.
+ * Only the parent token and what is needed to pick a recipient are kept;
+ * email addresses, phone numbers and addresses never leave the SIS.
+ */
+@Entity
+@Table(name = "sis_parent_mirror", indexes = {
+        @Index(name = "idx_sis_parent_mirror_student", columnList = "studentSisId, priority")
+})
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class MirroredParentContact {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private Long studentSisId;
+
+    @Column(nullable = false)
+    private String parentToken;
+
+    private String firstName;
+
+    private String lastName;
+
+    private String relationshipType;
+
+    private String preferredContactMethod;
+
+    private int priority;
+
+    private boolean emergencyContact;
+
+    private boolean receiveSchoolCommunication;
+
+    private boolean receiveEmergencyAlerts;
+
+    private boolean receiveEmailNotifications;
+
+    private boolean receiveTextNotifications;
+}
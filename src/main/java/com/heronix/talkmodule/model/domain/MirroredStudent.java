@@ -0,0 +1,44 @@
+package com.heronix.talkmodule.model.domain;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * Local copy of an SIS student, used to search students while the SIS is
+ * unreachable. Keyed by the SIS id.
+ */
+@Entity
+@Table(name = "sis_student_mirror", indexes = {
+        @Index(name = "idx_sis_student_mirror_student_id", columnList = "studentId"),
+        @Index(name = "idx_sis_student_mirror_name", columnList = "lastName, firstName"),
+        @Index(name = "idx_sis_student_mirror_grade", columnList = "gradeLevel"),
+        @Index(name = "idx_sis_student_mirror_stale", columnList = "contactsStale")
+})
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class MirroredStudent {
+
+    @Id
+    private Long id;
+
+    private String studentId;
+
+    private String firstName;
+
+    private String lastName;
+
+    private String gradeLevel;
+
+    // Last change reported by the SIS; the newest one is the refresh watermark
+    private LocalDateTime sourceUpdatedAt;
+
+    private LocalDateTime syncedAt;
+
+    // Parent contacts need reloading since the student changed
+    @Builder.Default
+    private boolean contactsStale = true;
+}
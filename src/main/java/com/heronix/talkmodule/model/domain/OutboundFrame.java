@@ -0,0 +1,52 @@
+package com.heronix.talkmodule.model.domain;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * WebSocket frame waiting to be written to the server.
+ * Rows survive restarts and are deleted once the server echoes the chat
+ * message back with the same client id; until then they are replayed on
+ * every reconnect.
+ */
+@Entity
+@Table(name = "ws_outbox", indexes = {
+        @Index(name = "idx_ws_outbox_created", columnList = "createdAt"),
+        @Index(name = "idx_ws_outbox_client", columnList = "clientId")
+})
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class OutboundFrame {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private String frameType;
+
+    private String action;
+
+    private Long channelId;
+
+    // Client-generated message id; the server dedupes replays by it
+    private String clientId;
+
+    // Serialized WebSocketMessageDTO, sent as-is
+    @Lob
+    @Column(nullable = false, columnDefinition = "TEXT")
+    private String frameJson;
+
+    private LocalDateTime createdAt;
+
+    @PrePersist
+    protected void onCreate() {
+        if (createdAt == null) {
+            createdAt = LocalDateTime.now();
+        }
+    }
+}
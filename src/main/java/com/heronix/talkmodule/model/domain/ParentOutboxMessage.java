@@ -0,0 +1,67 @@
+package com.heronix.talkmodule.model.domain;
+
+import com.heronix.talkmodule.model.enums.SyncStatus;
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * Parent Portal request waiting to be delivered.
+ * Rows survive restarts and are deleted once the server accepts them;
+ * requests the server rejects are kept as CONFLICT for inspection.
+ */
+@Entity
+@Table(name = "parent_outbox", indexes = {
+        @Index(name = "idx_parent_outbox_due", columnList = "syncStatus, nextAttemptAt"),
+        @Index(name = "idx_parent_outbox_key", columnList = "idempotencyKey", unique = true)
+})
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ParentOutboxMessage {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    // Sent as the Idempotency-Key header so retries are never delivered twice
+    @Column(nullable = false, unique = true)
+    private String idempotencyKey;
+
+    // MESSAGE, NOTIFICATION, ALERT or HALL_PASS
+    @Column(nullable = false)
+    private String kind;
+
+    // API path relative to the server URL
+    @Column(nullable = false)
+    private String path;
+
+    @Lob
+    @Column(nullable = false, columnDefinition = "TEXT")
+    private String payloadJson;
+
+    @Enumerated(EnumType.STRING)
+    @Builder.Default
+    private SyncStatus syncStatus = SyncStatus.PENDING;
+
+    @Builder.Default
+    private int attempts = 0;
+
+    private LocalDateTime nextAttemptAt;
+
+    private String lastError;
+
+    private LocalDateTime createdAt;
+
+    @PrePersist
+    protected void onCreate() {
+        if (createdAt == null) {
+            createdAt = LocalDateTime.now();
+        }
+        if (nextAttemptAt == null) {
+            nextAttemptAt = createdAt;
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package com.heronix.talkmodule.model.dto;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import lombok.*;
+
+/**
+ * Server-side fan-out progress for one alert.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class AlertDeliveryDTO {
+    private Long alertId;
+    private String alertUuid;
+    private int recipientCount;
+    private int deliveredCount;
+    private int acknowledgedCount;
+}
@@ -0,0 +1,25 @@
+package com.heronix.talkmodule.model.dto;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import lombok.*;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * One state transition applied to many alerts, synced to the server in a single request.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class AlertStateChangeDTO {
+    public static final String ACTION_CANCEL = "CANCEL";
+    public static final String ACTION_ACKNOWLEDGE = "ACKNOWLEDGE";
+
+    private String action;
+    private List<String> alertUuids;
+
+    @JsonFormat(pattern = "yyyy-MM-dd'T'HH:mm:ss")
+    private LocalDateTime changedAt;
+}
@@ -0,0 +1,21 @@
+package com.heronix.talkmodule.model.dto;
+
+import lombok.*;
+
+/**
+ * Server-side state of a chunked attachment upload.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class AttachmentUploadDTO {
+    private String uploadId;
+    private String fileName;
+    private String contentType;
+    private String sha256;
+    private long totalBytes;
+    private long receivedBytes;
+    private boolean complete;
+    private String attachmentPath;
+}
@@ -28,6 +28,13 @@ public class EmergencyAlertDTO {
     private boolean requiresAcknowledgment;
     private boolean playSound;
     private boolean campusWide;
+    private String soundFile;
+    private Integer repeatCount;
+
+    // Fan-out counts, returned when publishing a locally issued alert
+    private Integer recipientCount;
+    private Integer deliveredCount;
+    private Integer acknowledgedCount;
 
     @JsonFormat(pattern = "yyyy-MM-dd'T'HH:mm:ss")
     private LocalDateTime issuedAt;
@@ -16,6 +16,7 @@ public class SendMessageRequestDTO {
     private Long replyToId;
     private String clientId;
     private List<Long> mentionedUserIds;
+    private String attachmentPath;
     private String attachmentName;
     private String attachmentType;
     private Long attachmentSize;
@@ -0,0 +1,25 @@
+package com.heronix.talkmodule.model.dto;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Parent communication history entry from the SIS.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class SisMessageHistoryDTO {
+
+    // Kept as sent by the SIS; only displayed
+    private String sentAt;
+    private String recipient;
+    private String category;
+    private String subject;
+    private String status;
+}
@@ -0,0 +1,46 @@
+package com.heronix.talkmodule.model.dto;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Student search hit from the SIS.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class SisStudentDTO {
+
+    private Long id;
+    private String studentId;
+    private String firstName;
+    private String lastName;
+    private String gradeLevel;
+
+    // Only set on change feeds; active is false for students who have left
+    private LocalDateTime updatedAt;
+    private Boolean active;
+
+    public String getFullName() {
+        return (firstName != null ? firstName : "") + " " + (lastName != null ? lastName : "");
+    }
+
+    /**
+     * One page of search results. {@code hasMore} is set when the page came
+     * back full, so another page may exist.
+     */
+    public record Page(List<SisStudentDTO> students, int page, int limit, boolean hasMore) {
+
+        public boolean isEmpty() {
+            return students.isEmpty();
+        }
+    }
+}
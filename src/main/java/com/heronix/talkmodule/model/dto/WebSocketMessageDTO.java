@@ -5,6 +5,7 @@ import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import lombok.*;
 
 import java.time.LocalDateTime;
+import java.util.Map;
 
 @Data
 @Builder
@@ -35,4 +36,20 @@ public class WebSocketMessageDTO {
     public static final String TYPE_ALERT = "ALERT";
     public static final String TYPE_ERROR = "ERROR";
     public static final String TYPE_ACK = "ACK";
+
+    /**
+     * Chat message frame; {@code clientId} lets the server drop replays.
+     */
+    public static WebSocketMessageDTO chatMessage(Long channelId, String content, String clientId) {
+        return WebSocketMessageDTO.builder()
+                .type(TYPE_MESSAGE)
+                .action("CREATE")
+                .channelId(channelId)
+                .payload(Map.of(
+                        "channelId", channelId,
+                        "content", content,
+                        "clientId", clientId
+                ))
+                .build();
+    }
 }
@@ -0,0 +1,238 @@
+package com.heronix.talkmodule.model.timeline;
+
+import com.heronix.talkmodule.model.domain.LocalMessage;
+import com.heronix.talkmodule.model.enums.MessageType;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.function.Function;
+
+/**
+ * Column-oriented, in-memory message timeline for one channel.
+ *
+ * Each row keeps only what the message list renders: primitive ids, an
+ * epoch-millis timestamp, an interned sender name, a UTF-8 content slice and a
+ * flag byte. Rarely used fields (reactions, mentions, reply previews,
+ * attachment metadata, avatar) are materialized on demand from the local
+ * database via {@link #materialize(int)}.
+ *
+ * Target: at most {@link #TARGET_HEAP_BYTES_PER_MESSAGE} bytes of heap per
+ * message, excluding UTF-8 content, for a 100k-message timeline, as computed
+ * by {@link #estimatedHeapBytesPerMessage()}. A cached {@link LocalMessage},
+ * with its strings and collections, is far larger.
+ *
+ * Not thread-safe: build it on any thread, then confine it to the FX thread.
+ */
+public final class CompactTimeline {
+
+    public static final int TARGET_HEAP_BYTES_PER_MESSAGE = 64;
+
+    public static final long NONE = -1L;
+
+    static final byte FLAG_EDITED = 1;
+    static final byte FLAG_DELETED = 1 << 1;
+    static final byte FLAG_PINNED = 1 << 2;
+    static final byte FLAG_IMPORTANT = 1 << 3;
+    static final byte FLAG_ATTACHMENT = 1 << 4;
+    static final byte FLAG_IMAGE = 1 << 5;
+    static final byte FLAG_REPLY = 1 << 6;
+
+    private static final String DELETED_CONTENT = "[Message deleted]";
+    private static final ZoneId ZONE = ZoneId.systemDefault();
+
+    private final long channelId;
+    private final StringPool names;
+    private final ContentArena content;
+    private final Function<Long, Optional<LocalMessage>> loader;
+
+    private long[] localIds;
+    private long[] serverIds;
+    private long[] senderIds;
+    private long[] timestamps;
+    private int[] senderNames;
+    private int[] contentOffsets;
+    private int[] contentLengths;
+    private byte[] flags;
+    private int size;
+
+    public CompactTimeline(long channelId, StringPool names, int expectedSize, boolean offHeapContent,
+                           Function<Long, Optional<LocalMessage>> loader) {
+        int capacity = Math.max(16, expectedSize);
+        this.channelId = channelId;
+        this.names = names;
+        this.loader = loader;
+        this.content = new ContentArena(capacity * 64, offHeapContent);
+        this.localIds = new long[capacity];
+        this.serverIds = new long[capacity];
+        this.senderIds = new long[capacity];
+        this.timestamps = new long[capacity];
+        this.senderNames = new int[capacity];
+        this.contentOffsets = new int[capacity];
+        this.contentLengths = new int[capacity];
+        this.flags = new byte[capacity];
+    }
+
+    /**
+     * Append a message and return its row index.
+     */
+    public int append(LocalMessage message) {
+        ensureCapacity(size + 1);
+        int row = size++;
+
+        localIds[row] = orNone(message.getLocalId());
+        serverIds[row] = orNone(message.getServerId());
+        senderIds[row] = orNone(message.getSenderId());
+        timestamps[row] = message.getTimestamp() != null
+                ? message.getTimestamp().atZone(ZONE).toInstant().toEpochMilli() : 0L;
+        senderNames[row] = names.intern(message.getSenderName());
+
+        byte[] utf8 = message.getContent() != null
+                ? message.getContent().getBytes(StandardCharsets.UTF_8) : new byte[0];
+        contentOffsets[row] = content.append(utf8);
+        contentLengths[row] = utf8.length;
+
+        flags[row] = flagsOf(message);
+        return row;
+    }
+
+    private static byte flagsOf(LocalMessage message) {
+        byte f = 0;
+        if (message.isEdited()) f |= FLAG_EDITED;
+        if (message.isDeleted()) f |= FLAG_DELETED;
+        if (message.isPinned()) f |= FLAG_PINNED;
+        if (message.isImportant()) f |= FLAG_IMPORTANT;
+        if (message.hasAttachment()) f |= FLAG_ATTACHMENT;
+        if (message.getMessageType() == MessageType.IMAGE
+                || (message.getAttachmentType() != null && message.getAttachmentType().startsWith("image/"))) {
+            f |= FLAG_IMAGE;
+        }
+        if (message.isReply()) f |= FLAG_REPLY;
+        return f;
+    }
+
+    private static long orNone(Long value) {
+        return value != null ? value : NONE;
+    }
+
+    private void ensureCapacity(int wanted) {
+        if (wanted <= localIds.length) return;
+        int capacity = Math.max(wanted, localIds.length + (localIds.length >> 1));
+        localIds = Arrays.copyOf(localIds, capacity);
+        serverIds = Arrays.copyOf(serverIds, capacity);
+        senderIds = Arrays.copyOf(senderIds, capacity);
+        timestamps = Arrays.copyOf(timestamps, capacity);
+        senderNames = Arrays.copyOf(senderNames, capacity);
+        contentOffsets = Arrays.copyOf(contentOffsets, capacity);
+        contentLengths = Arrays.copyOf(contentLengths, capacity);
+        flags = Arrays.copyOf(flags, capacity);
+    }
+
+    // ===================== Row access =====================
+
+    public int size() {
+        return size;
+    }
+
+    public long getChannelId() {
+        return channelId;
+    }
+
+    public long localId(int row) {
+        return localIds[row];
+    }
+
+    public long serverId(int row) {
+        return serverIds[row];
+    }
+
+    public long senderId(int row) {
+        return senderIds[row];
+    }
+
+    public long timestampMillis(int row) {
+        return timestamps[row];
+    }
+
+    public LocalDateTime timestamp(int row) {
+        return timestamps[row] == 0L ? null
+                : LocalDateTime.ofInstant(Instant.ofEpochMilli(timestamps[row]), ZONE);
+    }
+
+    public String senderName(int row) {
+        return names.get(senderNames[row]);
+    }
+
+    public String content(int row) {
+        if (hasFlag(row, FLAG_DELETED)) return DELETED_CONTENT;
+        return content.read(contentOffsets[row], contentLengths[row]);
+    }
+
+    boolean hasFlag(int row, byte flag) {
+        return (flags[row] & flag) != 0;
+    }
+
+    /**
+     * Row index of the message with the given local id, or -1.
+     * Scans from the end since edits and deletes are usually recent.
+     */
+    public int indexOfLocalId(long localId) {
+        for (int row = size - 1; row >= 0; row--) {
+            if (localIds[row] == localId) return row;
+        }
+        return -1;
+    }
+
+    public void markDeleted(int row) {
+        flags[row] |= FLAG_DELETED;
+    }
+
+    public long lastServerId() {
+        for (int row = size - 1; row >= 0; row--) {
+            if (serverIds[row] != NONE) return serverIds[row];
+        }
+        return NONE;
+    }
+
+    /**
+     * Load the full entity for rarely used fields (reactions, attachments, replies).
+     */
+    public Optional<LocalMessage> materialize(int row) {
+        if (localIds[row] == NONE || loader == null) return Optional.empty();
+        return loader.apply(localIds[row]);
+    }
+
+    // ===================== Footprint =====================
+
+    /**
+     * Heap retained by this timeline: row arrays plus the content arena when it
+     * lives on-heap. Computed from array lengths and element sizes, ignoring
+     * alignment and the interned names; it is an estimate, not a heap measurement.
+     */
+    public long estimatedHeapBytes() {
+        long rows = localIds.length;
+        long arrays = rows * (8L * 4 + 4L * 3 + 1) + 8L * 16;
+        return arrays + content.heapBytes();
+    }
+
+    public long contentBytes() {
+        return content.usedBytes();
+    }
+
+    public long offHeapBytes() {
+        return content.offHeapBytes();
+    }
+
+    /**
+     * Estimated heap bytes per message, not counting the UTF-8 content itself.
+     * See {@link #estimatedHeapBytes()}.
+     */
+    public double estimatedHeapBytesPerMessage() {
+        if (size == 0) return 0;
+        long overhead = estimatedHeapBytes() - (content.isDirect() ? 0 : content.usedBytes());
+        return (double) overhead / size;
+    }
+}
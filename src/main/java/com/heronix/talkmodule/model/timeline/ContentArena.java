@@ -0,0 +1,76 @@
+package com.heronix.talkmodule.model.timeline;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Append-only UTF-8 store for message bodies.
+ *
+ * Backed by a heap buffer by default, or by a direct (off-heap) buffer when
+ * {@code heronix.timeline.off-heap=true}. Content is decoded to a String only
+ * when a cell actually renders it.
+ */
+public final class ContentArena {
+
+    private final boolean direct;
+    private ByteBuffer buffer;
+    private int position;
+
+    public ContentArena(int initialCapacity, boolean direct) {
+        this.direct = direct;
+        this.buffer = allocate(Math.max(1024, initialCapacity));
+    }
+
+    /**
+     * Append already-encoded UTF-8 bytes and return their offset.
+     */
+    public int append(byte[] utf8) {
+        ensureCapacity(utf8.length);
+        int offset = position;
+        buffer.put(offset, utf8);
+        position += utf8.length;
+        return offset;
+    }
+
+    public String read(int offset, int length) {
+        if (length == 0) return "";
+        if (buffer.hasArray()) {
+            return new String(buffer.array(), buffer.arrayOffset() + offset, length, StandardCharsets.UTF_8);
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(offset, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private void ensureCapacity(int extra) {
+        if (position + extra <= buffer.capacity()) return;
+
+        long wanted = Math.max((long) buffer.capacity() * 2, (long) position + extra);
+        if (wanted > Integer.MAX_VALUE - 8) {
+            throw new IllegalStateException("Timeline content arena exceeds 2 GB");
+        }
+        ByteBuffer grown = allocate((int) wanted);
+        grown.put(0, buffer, 0, position);
+        buffer = grown;
+    }
+
+    private ByteBuffer allocate(int capacity) {
+        return direct ? ByteBuffer.allocateDirect(capacity) : ByteBuffer.allocate(capacity);
+    }
+
+    public int usedBytes() {
+        return position;
+    }
+
+    public long heapBytes() {
+        return direct ? 0 : buffer.capacity();
+    }
+
+    public long offHeapBytes() {
+        return direct ? buffer.capacity() : 0;
+    }
+
+    public boolean isDirect() {
+        return direct;
+    }
+}
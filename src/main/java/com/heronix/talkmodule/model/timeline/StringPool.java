@@ -0,0 +1,40 @@
+package com.heronix.talkmodule.model.timeline;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Interns repeated strings (sender and channel names) behind int handles
+ * so each timeline row stores 4 bytes instead of a String reference.
+ */
+public final class StringPool {
+
+    public static final int NONE = -1;
+
+    private final Map<String, Integer> indexByValue = new HashMap<>();
+    private String[] values = new String[64];
+    private int size;
+
+    public synchronized int intern(String value) {
+        if (value == null) return NONE;
+
+        Integer existing = indexByValue.get(value);
+        if (existing != null) return existing;
+
+        if (size == values.length) {
+            values = Arrays.copyOf(values, size * 2);
+        }
+        values[size] = value;
+        indexByValue.put(value, size);
+        return size++;
+    }
+
+    public synchronized String get(int index) {
+        return index == NONE ? null : values[index];
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+}
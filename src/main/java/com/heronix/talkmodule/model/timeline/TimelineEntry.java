@@ -0,0 +1,69 @@
+package com.heronix.talkmodule.model.timeline;
+
+import com.heronix.talkmodule.model.domain.LocalMessage;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+/**
+ * Flyweight view of one timeline row. Created on demand by {@link TimelineList},
+ * so the list itself holds no per-message objects.
+ */
+public record TimelineEntry(CompactTimeline timeline, int index) {
+
+    public long getLocalId() {
+        return timeline.localId(index);
+    }
+
+    public long getServerId() {
+        return timeline.serverId(index);
+    }
+
+    public long getSenderId() {
+        return timeline.senderId(index);
+    }
+
+    public LocalDateTime getTimestamp() {
+        return timeline.timestamp(index);
+    }
+
+    public String getSenderName() {
+        return timeline.senderName(index);
+    }
+
+    public String getContent() {
+        return timeline.content(index);
+    }
+
+    public boolean isEdited() {
+        return timeline.hasFlag(index, CompactTimeline.FLAG_EDITED);
+    }
+
+    public boolean isDeleted() {
+        return timeline.hasFlag(index, CompactTimeline.FLAG_DELETED);
+    }
+
+    public boolean isPinned() {
+        return timeline.hasFlag(index, CompactTimeline.FLAG_PINNED);
+    }
+
+    public boolean isImportant() {
+        return timeline.hasFlag(index, CompactTimeline.FLAG_IMPORTANT);
+    }
+
+    public boolean hasAttachment() {
+        return timeline.hasFlag(index, CompactTimeline.FLAG_ATTACHMENT);
+    }
+
+    public boolean hasImageAttachment() {
+        return timeline.hasFlag(index, CompactTimeline.FLAG_IMAGE) && hasAttachment();
+    }
+
+    public boolean isReply() {
+        return timeline.hasFlag(index, CompactTimeline.FLAG_REPLY);
+    }
+
+    public Optional<LocalMessage> materialize() {
+        return timeline.materialize(index);
+    }
+}
@@ -0,0 +1,82 @@
+package com.heronix.talkmodule.model.timeline;
+
+import javafx.collections.ObservableListBase;
+
+import java.util.AbstractList;
+import java.util.List;
+
+/**
+ * Observable view over a {@link CompactTimeline} for the message ListView.
+ * Entries are created lazily in {@link #get(int)}; must be used on the FX thread.
+ */
+public class TimelineList extends ObservableListBase<TimelineEntry> {
+
+    private CompactTimeline timeline;
+
+    public CompactTimeline getTimeline() {
+        return timeline;
+    }
+
+    /**
+     * Replace the displayed timeline.
+     */
+    public void show(CompactTimeline next) {
+        CompactTimeline previous = this.timeline;
+        int previousSize = previous != null ? previous.size() : 0;
+
+        beginChange();
+        if (previousSize > 0) {
+            nextRemove(0, rowsOf(previous, previousSize));
+        }
+        this.timeline = next;
+        if (size() > 0) {
+            nextAdd(0, size());
+        }
+        endChange();
+    }
+
+    /**
+     * Notify listeners that a row was appended to the displayed timeline.
+     */
+    public void appended(int row) {
+        beginChange();
+        nextAdd(row, row + 1);
+        endChange();
+    }
+
+    /**
+     * Notify listeners that a row of the displayed timeline changed in place.
+     */
+    public void updated(int row) {
+        beginChange();
+        nextUpdate(row);
+        endChange();
+    }
+
+    @Override
+    public TimelineEntry get(int index) {
+        if (timeline == null || index < 0 || index >= timeline.size()) {
+            throw new IndexOutOfBoundsException(index);
+        }
+        return new TimelineEntry(timeline, index);
+    }
+
+    @Override
+    public int size() {
+        return timeline != null ? timeline.size() : 0;
+    }
+
+    private static List<TimelineEntry> rowsOf(CompactTimeline source, int count) {
+        return new AbstractList<>() {
+            @Override
+            public TimelineEntry get(int index) {
+                return new TimelineEntry(source, index);
+            }
+
+            @Override
+            public int size() {
+                return count;
+            }
+        };
+    }
+}
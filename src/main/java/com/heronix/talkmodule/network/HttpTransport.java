@@ -0,0 +1,177 @@
+package com.heronix.talkmodule.network;
+
+import com.heronix.talkmodule.config.ExecutorRegistry;
+import com.heronix.talkmodule.util.LatencyHistogram;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+/**
+ * The one HTTP client every outbound REST call goes through.
+ *
+ * Prefers HTTP/2 (ALPN on TLS, h2c upgrade on plain HTTP) and falls back to
+ * HTTP/1.1 when the server does not speak it. Connections are pooled and kept
+ * alive across the Talk server, Parent Portal and SIS calls, and the client's
+ * async work runs on a virtual-thread executor from {@link ExecutorRegistry}.
+ * Requests to a host beyond {@code max-concurrent-per-host} wait for a slot.
+ *
+ * The {@link Lane#PRIORITY} lane has its own HTTP/1.1 connection and no cap,
+ * so emergency alerts never queue behind uploads or sync traffic.
+ *
+ * Every request is counted and timed per endpoint (method, host and path with
+ * ids collapsed), see {@link #getStats()}.
+ */
+@Component
+@Slf4j
+public class HttpTransport {
+
+    private static final int MAX_ENDPOINTS = 256;
+    private static final Pattern ID_SEGMENT = Pattern.compile("\\d+|[0-9a-fA-F-]{16,}");
+
+    public enum Lane { DEFAULT, PRIORITY }
+
+    private final HttpClient client;
+    private final HttpClient priorityClient;
+    private final int maxConcurrentPerHost;
+
+    private final Map<String, Semaphore> hostSlots = new ConcurrentHashMap<>();
+    private final Map<String, Endpoint> endpoints = new ConcurrentHashMap<>();
+
+    public HttpTransport(ExecutorRegistry executors,
+                         @Value("${heronix.http.version:HTTP_2}") HttpClient.Version version,
+                         @Value("${heronix.http.connect-timeout-seconds:10}") int connectTimeoutSeconds,
+                         @Value("${heronix.http.keepalive-seconds:300}") int keepAliveSeconds,
+                         @Value("${heronix.http.max-concurrent-per-host:16}") int maxConcurrentPerHost) {
+        // Read by the JDK connection pool when the first client is created
+        if (System.getProperty("jdk.httpclient.keepalive.timeout") == null) {
+            System.setProperty("jdk.httpclient.keepalive.timeout", String.valueOf(keepAliveSeconds));
+        }
+        this.maxConcurrentPerHost = Math.max(1, maxConcurrentPerHost);
+        this.client = HttpClient.newBuilder()
+                .version(version)
+                .connectTimeout(Duration.ofSeconds(connectTimeoutSeconds))
+                .executor(executors.io("http"))
+                .build();
+        this.priorityClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(Math.min(3, connectTimeoutSeconds)))
+                .executor(executors.io("http-priority"))
+                .build();
+        log.info("HTTP transport: {} preferred, {} concurrent requests per host", version, this.maxConcurrentPerHost);
+    }
+
+    // ===================== Sending =====================
+
+    public <T> HttpResponse<T> send(HttpRequest request, HttpResponse.BodyHandler<T> handler)
+            throws IOException, InterruptedException {
+        return send(Lane.DEFAULT, request, handler);
+    }
+
+    /**
+     * Send a request and record it. For streaming body handlers the host slot
+     * is released once the headers arrive, not when the body is consumed.
+     */
+    public <T> HttpResponse<T> send(Lane lane, HttpRequest request, HttpResponse.BodyHandler<T> handler)
+            throws IOException, InterruptedException {
+        Endpoint endpoint = endpoint(request);
+        Semaphore slot = lane == Lane.PRIORITY ? null
+                : hostSlots.computeIfAbsent(hostKey(request.uri()), h -> new Semaphore(maxConcurrentPerHost, true));
+
+        long start = System.nanoTime();
+        if (slot != null) {
+            slot.acquire();
+        }
+        try {
+            HttpResponse<T> response = (lane == Lane.PRIORITY ? priorityClient : client).send(request, handler);
+            endpoint.record(start, response.statusCode() >= 500, response.version());
+            return response;
+        } catch (IOException | RuntimeException e) {
+            endpoint.record(start, true, null);
+            throw e;
+        } finally {
+            if (slot != null) {
+                slot.release();
+            }
+        }
+    }
+
+    private static String hostKey(URI uri) {
+        return uri.getHost() + ":" + uri.getPort();
+    }
+
+    private Endpoint endpoint(HttpRequest request) {
+        URI uri = request.uri();
+        String key = request.method() + " " + uri.getHost() + normalize(uri.getPath());
+        Endpoint endpoint = endpoints.get(key);
+        if (endpoint != null) return endpoint;
+        if (endpoints.size() >= MAX_ENDPOINTS) {
+            key = request.method() + " " + uri.getHost() + "/*";
+        }
+        return endpoints.computeIfAbsent(key, k -> new Endpoint());
+    }
+
+    /**
+     * Collapse numeric and id-like path segments so /api/users/42 and
+     * /api/users/43 share one entry.
+     */
+    private static String normalize(String path) {
+        if (path == null || path.isEmpty()) return "/";
+        String[] segments = path.split("/");
+        StringBuilder sb = new StringBuilder();
+        for (String segment : segments) {
+            if (segment.isEmpty()) continue;
+            sb.append('/').append(ID_SEGMENT.matcher(segment).matches() ? "{id}" : segment);
+        }
+        return sb.length() == 0 ? "/" : sb.toString();
+    }
+
+    // ===================== Metrics =====================
+
+    /**
+     * Per-endpoint counts and latency, busiest first.
+     */
+    public List<EndpointStats> getStats() {
+        List<EndpointStats> stats = new ArrayList<>();
+        endpoints.forEach((name, e) -> stats.add(new EndpointStats(name, e.requests.get(), e.failures.get(),
+                e.http2.get(), e.latency.snapshot())));
+        stats.sort(Comparator.comparingLong(EndpointStats::requests).reversed());
+        return stats;
+    }
+
+    private static final class Endpoint {
+        final AtomicLong requests = new AtomicLong();
+        final AtomicLong failures = new AtomicLong();
+        final AtomicLong http2 = new AtomicLong();
+        final LatencyHistogram latency = new LatencyHistogram();
+
+        void record(long startNanos, boolean failed, HttpClient.Version version) {
+            requests.incrementAndGet();
+            if (failed) failures.incrementAndGet();
+            if (version == HttpClient.Version.HTTP_2) http2.incrementAndGet();
+            latency.record((System.nanoTime() - startNanos) / 1_000_000);
+        }
+    }
+
+    /**
+     * {@code failures} counts I/O errors and 5xx responses; {@code http2} counts
+     * responses that came back over HTTP/2. Latency includes time waiting for a
+     * host slot.
+     */
+    public record EndpointStats(String endpoint, long requests, long failures, long http2,
+                                LatencyHistogram.Snapshot latency) {}
+}
@@ -0,0 +1,82 @@
+package com.heronix.talkmodule.network;
+
+import org.java_websocket.exceptions.InvalidDataException;
+import org.java_websocket.extensions.IExtension;
+import org.java_websocket.extensions.permessage_deflate.PerMessageDeflateExtension;
+import org.java_websocket.framing.DataFrame;
+import org.java_websocket.framing.Framedata;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * permessage-deflate (RFC 7692) that counts raw and on-the-wire payload bytes.
+ *
+ * Frames smaller than the threshold are sent uncompressed. The library copies
+ * the extension for every handshake; copies share the counters, so totals
+ * survive reconnects.
+ */
+public final class MeteredDeflateExtension extends PerMessageDeflateExtension {
+
+    private final Counters counters;
+
+    public MeteredDeflateExtension(int thresholdBytes) {
+        this(thresholdBytes, new Counters());
+    }
+
+    private MeteredDeflateExtension(int thresholdBytes, Counters counters) {
+        this.counters = counters;
+        setThreshold(thresholdBytes);
+    }
+
+    @Override
+    public void encodeFrame(Framedata frame) {
+        int raw = frame.getPayloadData().remaining();
+        super.encodeFrame(frame);
+        if (frame instanceof DataFrame) {
+            counters.rawBytesOut.addAndGet(raw);
+            counters.wireBytesOut.addAndGet(frame.getPayloadData().remaining());
+        }
+    }
+
+    @Override
+    public void decodeFrame(Framedata frame) throws InvalidDataException {
+        int wire = frame.getPayloadData().remaining();
+        super.decodeFrame(frame);
+        if (frame instanceof DataFrame) {
+            counters.wireBytesIn.addAndGet(wire);
+            counters.rawBytesIn.addAndGet(frame.getPayloadData().remaining());
+        }
+    }
+
+    @Override
+    public IExtension copyInstance() {
+        return new MeteredDeflateExtension(getThreshold(), counters);
+    }
+
+    public CompressionStats getStats() {
+        return new CompressionStats(counters.rawBytesOut.get(), counters.wireBytesOut.get(),
+                counters.rawBytesIn.get(), counters.wireBytesIn.get());
+    }
+
+    private static final class Counters {
+        final AtomicLong rawBytesOut = new AtomicLong();
+        final AtomicLong wireBytesOut = new AtomicLong();
+        final AtomicLong rawBytesIn = new AtomicLong();
+        final AtomicLong wireBytesIn = new AtomicLong();
+    }
+
+    /**
+     * Payload bytes before and after compression in each direction. Only counts
+     * traffic on connections where the server accepted the extension.
+     */
+    public record CompressionStats(long rawBytesOut, long wireBytesOut, long rawBytesIn, long wireBytesIn) {
+
+        public double outboundRatio() {
+            return rawBytesOut == 0 ? 1.0 : (double) wireBytesOut / rawBytesOut;
+        }
+
+        public double inboundRatio() {
+            return rawBytesIn == 0 ? 1.0 : (double) wireBytesIn / rawBytesIn;
+        }
+    }
+}
@@ -0,0 +1,541 @@
+package com.heronix.talkmodule.network;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.util.ByteBufferBackedOutputStream;
+import com.heronix.talkmodule.model.domain.OutboundFrame;
+import com.heronix.talkmodule.model.dto.WebSocketMessageDTO;
+import com.heronix.talkmodule.repository.OutboundFrameRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.java_websocket.framing.BinaryFrame;
+import org.java_websocket.framing.DataFrame;
+import org.java_websocket.framing.Framedata;
+import org.java_websocket.framing.TextFrame;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * Single outbound write path for the WebSocket connection.
+ *
+ * Callers enqueue frames from any thread; one writer thread serializes them
+ * into a reused buffer and sends them in batches. Typing indicators, read
+ * receipts and pings are coalesced per channel so only the latest one is sent.
+ * Chat frames are written to the {@code ws_outbox} table before they are
+ * queued and deleted only when the server echoes them back (see
+ * {@link #acknowledge(String)}), so nothing is lost while disconnected, on
+ * overflow, across restarts, or when the connection drops right after a
+ * write. Unacknowledged frames are replayed on every reconnect; the server
+ * drops duplicates by client id. When the in-memory queue fills, further chat
+ * frames stay in H2 only and backpressure listeners are told to slow down.
+ */
+@Component
+@Slf4j
+public class OutboundWriter {
+
+    private final ObjectMapper objectMapper;
+    private final OutboundFrameRepository outboxRepository;
+
+    @Value("${heronix.websocket.outbound.queue-capacity:500}")
+    private int queueCapacity;
+
+    @Value("${heronix.websocket.outbound.batch-size:32}")
+    private int batchSize;
+
+    @Value("${heronix.websocket.outbound.unacked-ttl-hours:24}")
+    private long unackedTtlHours;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition workAvailable = lock.newCondition();
+
+    // Guarded by lock
+    private final ArrayDeque<PendingFrame> queue = new ArrayDeque<>();
+    private final LinkedHashMap<String, WebSocketMessageDTO> coalesced = new LinkedHashMap<>();
+    private boolean spilled;
+    private long lastQueuedId;
+    private boolean backpressured;
+    private WebSocketClient client;
+
+    // Client ids of chat frames in the outbox, so echoes of other users' messages skip the database
+    private final Set<String> pendingClientIds = ConcurrentHashMap.newKeySet();
+
+    private final CopyOnWriteArrayList<Consumer<Boolean>> backpressureListeners = new CopyOnWriteArrayList<>();
+
+    private final AtomicLong framesSent = new AtomicLong();
+    private final AtomicLong batchesSent = new AtomicLong();
+    private final AtomicLong framesCoalesced = new AtomicLong();
+    private final AtomicLong framesDropped = new AtomicLong();
+    private final AtomicLong bytesSent = new AtomicLong();
+
+    // Writer thread only
+    private ByteBuffer frameBuffer = ByteBuffer.allocate(16 * 1024);
+    private final CharsetEncoder utf8 = StandardCharsets.UTF_8.newEncoder();
+    private final List<PendingFrame> batch = new ArrayList<>();
+    private final List<Framedata> frames = new ArrayList<>();
+
+    private volatile boolean running;
+    private Thread writerThread;
+
+    public OutboundWriter(ObjectMapper objectMapper, OutboundFrameRepository outboxRepository) {
+        this.objectMapper = objectMapper;
+        this.outboxRepository = outboxRepository;
+    }
+
+    @PostConstruct
+    public void start() {
+        // Anything left from the previous run is replayed on the first connection
+        spilled = outboxRepository.count() > 0;
+        pendingClientIds.addAll(outboxRepository.findAllClientIds());
+        running = true;
+        writerThread = new Thread(this::writeLoop, "talkmodule-ws-writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        if (writerThread != null) {
+            writerThread.interrupt();
+        }
+    }
+
+    // ===================== Connection =====================
+
+    /**
+     * Start writing to a freshly opened connection. Pending chat frames are
+     * reloaded from the outbox in order; transient and coalesced frames meant
+     * for the old connection are discarded and counted as dropped.
+     */
+    public void attach(WebSocketClient webSocketClient) {
+        expireUnacknowledged();
+        lock.lock();
+        try {
+            client = webSocketClient;
+            long discarded = queue.stream().filter(frame -> frame.outboxId() == 0).count() + coalesced.size();
+            if (discarded > 0) {
+                framesDropped.addAndGet(discarded);
+                log.debug("Discarded {} transient frames queued for the previous connection", discarded);
+            }
+            queue.clear();
+            coalesced.clear();
+            lastQueuedId = 0;
+            spilled = true;
+            workAvailable.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public boolean isConnected() {
+        lock.lock();
+        try {
+            return client != null && client.isOpen();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void detach(WebSocketClient webSocketClient) {
+        lock.lock();
+        try {
+            if (client == webSocketClient) {
+                client = null;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // ===================== Enqueue =====================
+
+    public void enqueue(WebSocketMessageDTO message) {
+        String coalesceKey = coalesceKey(message);
+        if (coalesceKey != null) {
+            enqueueCoalesced(coalesceKey, message);
+        } else if (WebSocketMessageDTO.TYPE_MESSAGE.equals(message.getType())) {
+            enqueueDurable(message);
+        } else {
+            enqueueTransient(message);
+        }
+    }
+
+    private void enqueueCoalesced(String key, WebSocketMessageDTO message) {
+        lock.lock();
+        try {
+            WebSocketMessageDTO previous = coalesced.get(key);
+            if (previous != null) {
+                framesCoalesced.incrementAndGet();
+                // Never move a read receipt backwards
+                if (readMessageId(previous) > readMessageId(message)) return;
+            }
+            coalesced.put(key, message);
+            workAvailable.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void enqueueTransient(WebSocketMessageDTO message) {
+        lock.lock();
+        try {
+            if (queue.size() >= queueCapacity) {
+                framesDropped.incrementAndGet();
+                log.warn("Outbound queue full, dropping {} {} frame", message.getType(), message.getAction());
+                return;
+            }
+            queue.add(new PendingFrame(0, message, null));
+            updateBackpressure();
+            workAvailable.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void enqueueDurable(WebSocketMessageDTO message) {
+        String json;
+        try {
+            json = objectMapper.writeValueAsString(message);
+        } catch (Exception e) {
+            log.error("Cannot serialize outbound {} frame", message.getType(), e);
+            return;
+        }
+
+        lock.lock();
+        try {
+            // Saved under the lock so outbox ids follow queue order
+            OutboundFrame row = outboxRepository.save(OutboundFrame.builder()
+                    .frameType(message.getType())
+                    .action(message.getAction())
+                    .channelId(message.getChannelId())
+                    .clientId(clientId(message))
+                    .frameJson(json)
+                    .build());
+            if (row.getClientId() != null) {
+                pendingClientIds.add(row.getClientId());
+            }
+
+            if (spilled || queue.size() >= queueCapacity) {
+                spilled = true;
+            } else {
+                queue.add(new PendingFrame(row.getId(), null, json));
+                lastQueuedId = row.getId();
+            }
+            updateBackpressure();
+            workAvailable.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static String clientId(WebSocketMessageDTO message) {
+        if (message.getPayload() instanceof Map<?, ?> payload && payload.get("clientId") != null) {
+            return payload.get("clientId").toString();
+        }
+        return null;
+    }
+
+    // ===================== Acknowledgment =====================
+
+    /**
+     * The server echoed chat messages with these client ids; stop replaying
+     * them. Ids that are not ours cost nothing; ours are deleted in one batch.
+     * Blocks on the database, so call it off the receive path.
+     */
+    public void acknowledge(Collection<String> clientIds) {
+        List<String> ours = clientIds.stream().filter(this::isPending).distinct().toList();
+        if (ours.isEmpty()) return;
+        List<Long> ids = outboxRepository.findIdsByClientIdIn(ours);
+        if (!ids.isEmpty()) {
+            outboxRepository.deleteAllByIdInBatch(ids);
+        }
+        ours.forEach(pendingClientIds::remove);
+    }
+
+    /**
+     * True while a chat message is still waiting in the outbox for its echo.
+     */
+    public boolean isPending(String clientId) {
+        return clientId != null && pendingClientIds.contains(clientId);
+    }
+
+    /**
+     * Drop frames the server never acknowledged within the TTL, e.g. for a
+     * channel that no longer exists, so they are not replayed forever.
+     */
+    private void expireUnacknowledged() {
+        try {
+            List<Long> expired = outboxRepository.findIdsCreatedBefore(LocalDateTime.now().minusHours(unackedTtlHours));
+            if (!expired.isEmpty()) {
+                outboxRepository.deleteAllByIdInBatch(expired);
+                pendingClientIds.retainAll(outboxRepository.findAllClientIds());
+                framesDropped.addAndGet(expired.size());
+                log.warn("Dropped {} outbound frames never acknowledged within {} h", expired.size(), unackedTtlHours);
+            }
+        } catch (Exception e) {
+            log.error("Could not expire outbound frames", e);
+        }
+    }
+
+    private static String coalesceKey(WebSocketMessageDTO message) {
+        String type = message.getType();
+        if (WebSocketMessageDTO.TYPE_TYPING.equals(type)) {
+            return "TYPING:" + message.getChannelId();
+        }
+        if (WebSocketMessageDTO.TYPE_CHANNEL.equals(type) && "READ".equals(message.getAction())) {
+            return "READ:" + message.getChannelId();
+        }
+        if ("PING".equals(type)) {
+            return "PING";
+        }
+        return null;
+    }
+
+    private static long readMessageId(WebSocketMessageDTO message) {
+        if (message.getPayload() instanceof Map<?, ?> payload
+                && payload.get("messageId") instanceof Number id) {
+            return id.longValue();
+        }
+        return Long.MIN_VALUE;
+    }
+
+    // ===================== Writer Thread =====================
+
+    private void writeLoop() {
+        while (running) {
+            WebSocketClient target;
+            try {
+                target = nextBatch();
+            } catch (InterruptedException e) {
+                break;
+            } catch (Exception e) {
+                log.error("Outbound writer failed to collect frames", e);
+                continue;
+            }
+            if (target == null || batch.isEmpty()) continue;
+
+            try {
+                int bytes = encodeBatch(target.getWireCodec());
+                target.sendFrame(frames);
+                framesSent.addAndGet(frames.size());
+                bytesSent.addAndGet(bytes);
+                batchesSent.incrementAndGet();
+            } catch (Exception e) {
+                log.warn("Outbound batch of {} frames not sent: {}", batch.size(), e.getMessage());
+                requeueFromOutbox();
+            }
+        }
+        log.debug("Outbound writer stopped");
+    }
+
+    /**
+     * Wait for a connection and work, then move up to batch-size frames into {@link #batch}.
+     * Coalesced frames go first: they are tiny and latency sensitive.
+     */
+    private WebSocketClient nextBatch() throws InterruptedException {
+        batch.clear();
+        lock.lock();
+        try {
+            while (running && (client == null || !client.isOpen() || !hasWork())) {
+                workAvailable.await(1, TimeUnit.SECONDS);
+            }
+            if (!running) return null;
+
+            if (queue.isEmpty() && spilled) {
+                reloadFromOutbox();
+            }
+
+            Iterator<WebSocketMessageDTO> it = coalesced.values().iterator();
+            while (batch.size() < batchSize && it.hasNext()) {
+                batch.add(new PendingFrame(0, it.next(), null));
+                it.remove();
+            }
+            while (batch.size() < batchSize && !queue.isEmpty()) {
+                batch.add(queue.poll());
+            }
+            updateBackpressure();
+            return client;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private boolean hasWork() {
+        return !queue.isEmpty() || !coalesced.isEmpty() || spilled;
+    }
+
+    private void reloadFromOutbox() {
+        int page = Math.max(1, queueCapacity / 2);
+        List<OutboundFrame> rows = outboxRepository.findNextBatch(lastQueuedId, PageRequest.of(0, page));
+        for (OutboundFrame row : rows) {
+            queue.add(new PendingFrame(row.getId(), null, row.getFrameJson()));
+            lastQueuedId = row.getId();
+        }
+        if (rows.size() < page) {
+            spilled = false;
+        }
+        if (!rows.isEmpty()) {
+            log.info("Replaying {} pending outbound frames", rows.size());
+        }
+    }
+
+    /**
+     * After a failed send, restart the replay from the beginning; frames sent
+     * earlier but not yet echoed are resent too.
+     */
+    private void requeueFromOutbox() {
+        lock.lock();
+        try {
+            queue.removeIf(frame -> frame.outboxId() > 0);
+            lastQueuedId = 0;
+            spilled = true;
+            updateBackpressure();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // ===================== Encoding =====================
+
+    /**
+     * Serialize the batch back to back into the shared buffer, one text or binary
+     * frame per slice depending on the codec. The library copies payloads during
+     * {@code sendFrame}, so the buffer is reused next batch. Returns the bytes encoded.
+     */
+    private int encodeBatch(WireCodec codec) throws Exception {
+        frameBuffer.clear();
+        frames.clear();
+
+        for (PendingFrame frame : batch) {
+            int start = frameBuffer.position();
+            while (true) {
+                try {
+                    write(frame, codec);
+                    break;
+                } catch (Exception e) {
+                    if (!isOverflow(e)) throw e;
+                    grow(start);
+                }
+            }
+
+            ByteBuffer payload = frameBuffer.duplicate();
+            payload.position(start).limit(frameBuffer.position());
+            DataFrame dataFrame = codec.isBinary() ? new BinaryFrame() : new TextFrame();
+            dataFrame.setPayload(payload.slice());
+            frames.add(dataFrame);
+        }
+        return frameBuffer.position();
+    }
+
+    private void write(PendingFrame frame, WireCodec codec) throws Exception {
+        if (frame.json() != null && !codec.isBinary()) {
+            utf8.reset();
+            CoderResult result = utf8.encode(CharBuffer.wrap(frame.json()), frameBuffer, true);
+            if (result.isOverflow()) throw new BufferOverflowException();
+            utf8.flush(frameBuffer);
+        } else if (frame.json() != null) {
+            // Outbox rows are stored as JSON; transcode for binary connections
+            codec.encode(objectMapper.readTree(frame.json()), new ByteBufferBackedOutputStream(frameBuffer));
+        } else {
+            codec.encode(frame.message(), new ByteBufferBackedOutputStream(frameBuffer));
+        }
+    }
+
+    /**
+     * Double the buffer, keeping frames already encoded in this batch.
+     */
+    private void grow(int keep) {
+        ByteBuffer larger = ByteBuffer.allocate(frameBuffer.capacity() * 2);
+        frameBuffer.position(0).limit(keep);
+        larger.put(frameBuffer);
+        frameBuffer = larger;
+    }
+
+    private static boolean isOverflow(Throwable e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof BufferOverflowException) return true;
+        }
+        return false;
+    }
+
+    // ===================== Backpressure =====================
+
+    /**
+     * Listeners are called on the enqueuing or writer thread and must not block.
+     */
+    public void addBackpressureListener(Consumer<Boolean> listener) {
+        backpressureListeners.add(listener);
+    }
+
+    public void removeBackpressureListener(Consumer<Boolean> listener) {
+        backpressureListeners.remove(listener);
+    }
+
+    private void updateBackpressure() {
+        boolean now = spilled || queue.size() >= queueCapacity * 3 / 4;
+        if (now == backpressured) return;
+        backpressured = now;
+        log.info("Outbound backpressure {}", now ? "on" : "off");
+        for (Consumer<Boolean> listener : backpressureListeners) {
+            try {
+                listener.accept(now);
+            } catch (Exception e) {
+                log.error("Error in backpressure listener", e);
+            }
+        }
+    }
+
+    public boolean isBackpressured() {
+        lock.lock();
+        try {
+            return backpressured;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // ===================== Stats =====================
+
+    public int getQueuedCount() {
+        lock.lock();
+        try {
+            return queue.size() + coalesced.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public OutboundStats getStats() {
+        return new OutboundStats(getQueuedCount(), outboxRepository.count(), framesSent.get(),
+                batchesSent.get(), framesCoalesced.get(), framesDropped.get(), bytesSent.get(), isBackpressured());
+    }
+
+    private record PendingFrame(long outboxId, WebSocketMessageDTO message, String json) {}
+
+    public record OutboundStats(int queued, long outboxDepth, long framesSent, long batchesSent,
+                                long framesCoalesced, long framesDropped, long bytesSent, boolean backpressured) {}
+}
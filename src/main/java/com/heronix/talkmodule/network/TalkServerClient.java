@@ -1,5 +1,6 @@
 package com.heronix.talkmodule.network;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.heronix.talkmodule.model.dto.*;
@@ -7,13 +8,15 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
+import java.io.InputStream;
 import java.net.URI;
-import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
 import java.time.Duration;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.Flow;
 
 /**
  * HTTP client for communicating with Heronix-Talk server.
@@ -23,7 +26,8 @@ import java.util.Optional;
 public class TalkServerClient {
 
     private final ObjectMapper objectMapper;
-    private final HttpClient httpClient;
+    private final HttpTransport transport;
+    private static final Duration ALERT_TIMEOUT = Duration.ofSeconds(5);
 
     @Value("${heronix.server.url:http://localhost:9680}")
     private String serverUrl;
@@ -33,11 +37,9 @@ public class TalkServerClient {
 
     private String sessionToken;
 
-    public TalkServerClient(ObjectMapper objectMapper) {
+    public TalkServerClient(ObjectMapper objectMapper, HttpTransport transport) {
         this.objectMapper = objectMapper;
-        this.httpClient = HttpClient.newBuilder()
-                .connectTimeout(Duration.ofSeconds(10))
-                .build();
+        this.transport = transport;
     }
 
     public void setServerUrl(String url) {
@@ -62,7 +64,7 @@ public class TalkServerClient {
                     .GET()
                     .build();
 
-            HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+            HttpResponse<String> response = transport.send(request, HttpResponse.BodyHandlers.ofString());
             return response.statusCode() == 200;
         } catch (Exception e) {
             log.debug("Server not reachable: {}", e.getMessage());
@@ -90,7 +92,7 @@ public class TalkServerClient {
                     .POST(HttpRequest.BodyPublishers.ofString(json))
                     .build();
 
-            HttpResponse<String> response = httpClient.send(httpRequest, HttpResponse.BodyHandlers.ofString());
+            HttpResponse<String> response = transport.send(httpRequest, HttpResponse.BodyHandlers.ofString());
 
             if (response.statusCode() == 200) {
                 AuthResponseDTO authResponse = objectMapper.readValue(response.body(), AuthResponseDTO.class);
@@ -121,7 +123,7 @@ public class TalkServerClient {
                     .POST(HttpRequest.BodyPublishers.noBody())
                     .build();
 
-            httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+            transport.send(request, HttpResponse.BodyHandlers.ofString());
         } catch (Exception e) {
             log.debug("Logout error", e);
         } finally {
@@ -166,13 +168,11 @@ public class TalkServerClient {
     }
 
     public boolean joinChannel(Long channelId) {
-        return post("/api/channels/" + channelId + "/join", null, new TypeReference<Void>() {}).isPresent()
-                || isSuccessfulEmptyResponse();
+        return postForStatus("/api/channels/" + channelId + "/join", null) == 200;
     }
 
     public boolean leaveChannel(Long channelId) {
-        return post("/api/channels/" + channelId + "/leave", null, new TypeReference<Void>() {}).isPresent()
-                || isSuccessfulEmptyResponse();
+        return postForStatus("/api/channels/" + channelId + "/leave", null) == 200;
     }
 
     // ===================== Messages =====================
@@ -214,12 +214,36 @@ public class TalkServerClient {
                 new TypeReference<NewsItemDTO>() {});
     }
 
+    // ===================== Alerts =====================
+
+    /**
+     * Publish a locally issued alert over the dedicated alert connection.
+     * The response carries the server id and initial delivery counts.
+     */
+    public Optional<EmergencyAlertDTO> publishAlert(EmergencyAlertDTO alert) {
+        return post(HttpTransport.Lane.PRIORITY, ALERT_TIMEOUT, "/api/alerts", alert, new TypeReference<EmergencyAlertDTO>() {});
+    }
+
+    public Optional<AlertDeliveryDTO> getAlertDelivery(Long serverId) {
+        return get("/api/alerts/" + serverId + "/delivery", new TypeReference<AlertDeliveryDTO>() {});
+    }
+
+    /**
+     * Push one cancel/acknowledge transition for a batch of alerts.
+     */
+    public boolean syncAlertStates(AlertStateChangeDTO change) {
+        return postForStatus("/api/alerts/state", change) == 200;
+    }
+
     // ===================== Presence =====================
 
+    /**
+     * REST presence heartbeat for sessions without a WebSocket. While the socket
+     * is open, liveness is handled by WebSocketClient's ping timer instead.
+     */
     public boolean sendHeartbeat() {
         try {
-            return post("/api/presence/heartbeat", null, new TypeReference<Void>() {}).isPresent()
-                    || isSuccessfulEmptyResponse();
+            return postForStatus("/api/presence/heartbeat", null) == 200;
         } catch (Exception e) {
             return false;
         }
@@ -231,46 +255,139 @@ public class TalkServerClient {
                 new TypeReference<Object>() {}).isPresent();
     }
 
-    // ===================== Helper Methods =====================
+    // ===================== Attachments =====================
 
-    private <T> Optional<T> get(String path, TypeReference<T> typeRef) {
+    /**
+     * Start (or resume) a chunked upload. The server keys sessions by SHA-256,
+     * so a restarted client gets back the bytes already received.
+     */
+    public Optional<AttachmentUploadDTO> startUpload(AttachmentUploadDTO request) {
+        return post("/api/attachments/uploads", request, new TypeReference<AttachmentUploadDTO>() {});
+    }
+
+    public Optional<AttachmentUploadDTO> getUpload(String uploadId) {
+        return get("/api/attachments/uploads/" + encode(uploadId), new TypeReference<AttachmentUploadDTO>() {});
+    }
+
+    public Optional<AttachmentUploadDTO> completeUpload(String uploadId) {
+        return post("/api/attachments/uploads/" + encode(uploadId) + "/complete", null,
+                new TypeReference<AttachmentUploadDTO>() {});
+    }
+
+    /**
+     * PUT one chunk at the given offset. The buffer is usually a mapped region of
+     * the source file and is handed to the HTTP client without a heap copy.
+     */
+    public boolean uploadChunk(String uploadId, long offset, ByteBuffer chunk) {
+        int length = chunk.remaining();
         try {
             HttpRequest.Builder requestBuilder = HttpRequest.newBuilder()
-                    .uri(URI.create(serverUrl + path))
-                    .timeout(Duration.ofSeconds(timeoutSeconds))
-                    .GET();
+                    .uri(URI.create(serverUrl + "/api/attachments/uploads/" + encode(uploadId) + "?offset=" + offset))
+                    .timeout(Duration.ofSeconds(Math.max(timeoutSeconds, 60)))
+                    .header("Content-Type", "application/octet-stream")
+                    .header("Content-Range", "bytes " + offset + "-" + (offset + length - 1) + "/*")
+                    .PUT(HttpRequest.BodyPublishers.fromPublisher(bufferPublisher(chunk), length));
 
             if (sessionToken != null) {
                 requestBuilder.header("X-Session-Token", sessionToken);
             }
 
-            HttpResponse<String> response = httpClient.send(requestBuilder.build(), HttpResponse.BodyHandlers.ofString());
+            HttpResponse<Void> response = transport.send(requestBuilder.build(), HttpResponse.BodyHandlers.discarding());
+            return response.statusCode() == 200 || response.statusCode() == 204;
+        } catch (Exception e) {
+            log.warn("Chunk upload {}@{} failed: {}", uploadId, offset, e.getMessage());
+            return false;
+        }
+    }
 
-            if (response.statusCode() == 200) {
-                return Optional.of(objectMapper.readValue(response.body(), typeRef));
+    /**
+     * Open an attachment download, resuming at {@code offset} with a Range request.
+     * A 206 response continues the partial file; a 200 response restarts from zero.
+     * A 416 response to a resumed request is returned too, so the caller can tell a
+     * partial file that is already complete from one that is stale.
+     * The caller must close the body stream.
+     */
+    public Optional<HttpResponse<InputStream>> openDownload(String attachmentPath, long offset) {
+        try {
+            HttpRequest.Builder requestBuilder = HttpRequest.newBuilder()
+                    .uri(URI.create(serverUrl + "/api/attachments/download?path=" + encode(attachmentPath)))
+                    .timeout(Duration.ofSeconds(Math.max(timeoutSeconds, 60)))
+                    .GET();
+
+            if (sessionToken != null) {
+                requestBuilder.header("X-Session-Token", sessionToken);
+            }
+            if (offset > 0) {
+                requestBuilder.header("Range", "bytes=" + offset + "-");
+            }
+
+            HttpResponse<InputStream> response = transport.send(requestBuilder.build(), HttpResponse.BodyHandlers.ofInputStream());
+            if (response.statusCode() == 200 || response.statusCode() == 206
+                    || (response.statusCode() == 416 && offset > 0)) {
+                return Optional.of(response);
             }
+            response.body().close();
+            log.warn("Download {} failed with status {}", attachmentPath, response.statusCode());
         } catch (Exception e) {
-            log.error("GET {} error: {}", path, e.getMessage());
+            log.error("Download {} error: {}", attachmentPath, e.getMessage());
         }
         return Optional.empty();
     }
 
-    private <T, R> Optional<R> post(String path, T body, TypeReference<R> typeRef) {
+    /**
+     * Single-buffer publisher; each subscription gets its own view so retries resend the whole chunk.
+     */
+    private static Flow.Publisher<ByteBuffer> bufferPublisher(ByteBuffer buffer) {
+        return subscriber -> subscriber.onSubscribe(new Flow.Subscription() {
+            private boolean done;
+
+            @Override
+            public synchronized void request(long n) {
+                if (done || n <= 0) return;
+                done = true;
+                subscriber.onNext(buffer.duplicate());
+                subscriber.onComplete();
+            }
+
+            @Override
+            public synchronized void cancel() {
+                done = true;
+            }
+        });
+    }
+
+    // ===================== Helper Methods =====================
+
+    private <T> Optional<T> get(String path, TypeReference<T> typeRef) {
         try {
             HttpRequest.Builder requestBuilder = HttpRequest.newBuilder()
                     .uri(URI.create(serverUrl + path))
                     .timeout(Duration.ofSeconds(timeoutSeconds))
-                    .header("Content-Type", "application/json");
+                    .GET();
 
             if (sessionToken != null) {
                 requestBuilder.header("X-Session-Token", sessionToken);
             }
 
-            String json = body != null ? objectMapper.writeValueAsString(body) : "";
-            requestBuilder.POST(HttpRequest.BodyPublishers.ofString(json));
+            HttpResponse<String> response = transport.send(requestBuilder.build(), HttpResponse.BodyHandlers.ofString());
+
+            if (response.statusCode() == 200) {
+                return Optional.of(objectMapper.readValue(response.body(), typeRef));
+            }
+        } catch (Exception e) {
+            log.error("GET {} error: {}", path, e.getMessage());
+        }
+        return Optional.empty();
+    }
+
+    private <T, R> Optional<R> post(String path, T body, TypeReference<R> typeRef) {
+        return post(HttpTransport.Lane.DEFAULT, Duration.ofSeconds(timeoutSeconds), path, body, typeRef);
+    }
 
-            HttpResponse<String> response = httpClient.send(requestBuilder.build(), HttpResponse.BodyHandlers.ofString());
-            lastResponseCode = response.statusCode();
+    private <T, R> Optional<R> post(HttpTransport.Lane lane, Duration timeout, String path, T body, TypeReference<R> typeRef) {
+        try {
+            HttpResponse<String> response = transport.send(lane, postRequest(timeout, path, body),
+                    HttpResponse.BodyHandlers.ofString());
 
             if (response.statusCode() == 200) {
                 if (response.body() != null && !response.body().isEmpty()) {
@@ -284,6 +401,34 @@ public class TalkServerClient {
         return Optional.empty();
     }
 
+    /**
+     * POST for endpoints that answer with an empty body. Returns the HTTP
+     * status, or -1 if no response arrived.
+     */
+    private <T> int postForStatus(String path, T body) {
+        try {
+            return transport.send(postRequest(Duration.ofSeconds(timeoutSeconds), path, body),
+                    HttpResponse.BodyHandlers.discarding()).statusCode();
+        } catch (Exception e) {
+            log.error("POST {} error: {}", path, e.getMessage());
+            return -1;
+        }
+    }
+
+    private <T> HttpRequest postRequest(Duration timeout, String path, T body) throws JsonProcessingException {
+        HttpRequest.Builder requestBuilder = HttpRequest.newBuilder()
+                .uri(URI.create(serverUrl + path))
+                .timeout(timeout)
+                .header("Content-Type", "application/json");
+
+        if (sessionToken != null) {
+            requestBuilder.header("X-Session-Token", sessionToken);
+        }
+
+        String json = body != null ? objectMapper.writeValueAsString(body) : "";
+        return requestBuilder.POST(HttpRequest.BodyPublishers.ofString(json)).build();
+    }
+
     private <T, R> Optional<R> put(String path, T body, TypeReference<R> typeRef) {
         try {
             HttpRequest.Builder requestBuilder = HttpRequest.newBuilder()
@@ -298,7 +443,7 @@ public class TalkServerClient {
             String json = body != null ? objectMapper.writeValueAsString(body) : "";
             requestBuilder.PUT(HttpRequest.BodyPublishers.ofString(json));
 
-            HttpResponse<String> response = httpClient.send(requestBuilder.build(), HttpResponse.BodyHandlers.ofString());
+            HttpResponse<String> response = transport.send(requestBuilder.build(), HttpResponse.BodyHandlers.ofString());
 
             if (response.statusCode() == 200 && response.body() != null && !response.body().isEmpty()) {
                 return Optional.of(objectMapper.readValue(response.body(), typeRef));
@@ -320,7 +465,7 @@ public class TalkServerClient {
                 requestBuilder.header("X-Session-Token", sessionToken);
             }
 
-            HttpResponse<String> response = httpClient.send(requestBuilder.build(), HttpResponse.BodyHandlers.ofString());
+            HttpResponse<String> response = transport.send(requestBuilder.build(), HttpResponse.BodyHandlers.ofString());
             return response.statusCode() == 200;
         } catch (Exception e) {
             log.error("DELETE {} error: {}", path, e.getMessage());
@@ -328,12 +473,6 @@ public class TalkServerClient {
         }
     }
 
-    private int lastResponseCode = 0;
-
-    private boolean isSuccessfulEmptyResponse() {
-        return lastResponseCode == 200;
-    }
-
     private String encode(String value) {
         try {
             return java.net.URLEncoder.encode(value, java.nio.charset.StandardCharsets.UTF_8);
@@ -2,19 +2,32 @@ package com.heronix.talkmodule.network;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.heronix.talkmodule.model.dto.WebSocketMessageDTO;
+import com.heronix.talkmodule.util.LatencyHistogram;
 import javafx.application.Platform;
+import org.java_websocket.drafts.Draft_6455;
+import org.java_websocket.extensions.IExtension;
 import org.java_websocket.handshake.ServerHandshake;
+import org.java_websocket.protocols.IProtocol;
+import org.java_websocket.protocols.Protocol;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.net.URI;
-import java.util.concurrent.BlockingQueue;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.Executors;
-import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
 import java.util.function.Consumer;
 
 /**
@@ -25,16 +38,38 @@ public class WebSocketClient extends org.java_websocket.client.WebSocketClient {
     private static final Logger log = LoggerFactory.getLogger(WebSocketClient.class);
 
     private final ObjectMapper objectMapper;
+    private final OutboundWriter outboundWriter;
+    private final LatencyHistogram rttHistogram;
+    private final WireCodec jsonCodec;
+    private final WireCodec preferredCodec;
+    // Chosen at handshake: the preferred codec if the server accepted its subprotocol
+    private volatile WireCodec wireCodec;
     private final CopyOnWriteArrayList<Consumer<WebSocketMessageDTO>> messageListeners = new CopyOnWriteArrayList<>();
+
+    // Inbound lanes: ALERT frames go straight to the priority listener on the socket
+    // thread; everything else is drained on the FX thread in time-boxed slices so a
+    // chat burst never builds a deep FX queue in front of an alert banner
+    private static final long FX_SLICE_NANOS = TimeUnit.MILLISECONDS.toNanos(8);
+    private final ConcurrentLinkedQueue<WebSocketMessageDTO> inbox = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean drainScheduled = new AtomicBoolean();
+    private volatile BiConsumer<WebSocketMessageDTO, Long> priorityListener;
     private final CopyOnWriteArrayList<Consumer<Boolean>> connectionListeners = new CopyOnWriteArrayList<>();
 
     private volatile boolean reconnecting = false;
     private volatile boolean shouldReconnect = true;
+    // Set when the heartbeat closes a stale connection: a local close, but still unexpected
+    private volatile boolean closedAsStale = false;
     private int reconnectAttempts = 0;
     private static final int MAX_RECONNECT_ATTEMPTS = 10;
     private static final int BASE_RECONNECT_DELAY_MS = 1000;
     private static final int MAX_RECONNECT_DELAY_MS = 60000;
-    private static final int HEARTBEAT_INTERVAL_MS = 30000;
+
+    // Liveness: ping only when the link is quiet, back off while traffic flows
+    private static final long IDLE_PING_INTERVAL_MS = 15000;
+    private static final long MAX_PING_INTERVAL_MS = 60000;
+    private static final long DEFAULT_STALE_TIMEOUT_MS = 10000;
+    private static final long MIN_STALE_TIMEOUT_MS = 3000;
+    private static final long MAX_STALE_TIMEOUT_MS = 30000;
 
     // Scheduled executor for reconnection and heartbeat
     private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
@@ -44,13 +79,40 @@ public class WebSocketClient extends org.java_websocket.client.WebSocketClient {
     });
     private ScheduledFuture<?> heartbeatTask;
     private volatile long lastPongTime = System.currentTimeMillis();
-
-    // Queue for pending messages during reconnection
-    private final BlockingQueue<WebSocketMessageDTO> pendingMessages = new LinkedBlockingQueue<>(100);
-
-    public WebSocketClient(URI serverUri, ObjectMapper objectMapper) {
-        super(serverUri);
+    private volatile long lastInboundTime = System.currentTimeMillis();
+    private volatile long pingSentNanos = 0;
+    private long pingInterval = IDLE_PING_INTERVAL_MS;
+
+    // Inbound wire metrics
+    private final AtomicLong framesReceived = new AtomicLong();
+    private final AtomicLong bytesReceived = new AtomicLong();
+    private final AtomicLong decodeNanos = new AtomicLong();
+
+    public WebSocketClient(URI serverUri, ObjectMapper objectMapper, OutboundWriter outboundWriter,
+                           LatencyHistogram rttHistogram, WireCodec preferredCodec,
+                           MeteredDeflateExtension compression) {
+        super(serverUri, buildDraft(preferredCodec, compression));
         this.objectMapper = objectMapper;
+        this.outboundWriter = outboundWriter;
+        this.rttHistogram = rttHistogram;
+        this.jsonCodec = WireCodec.json(objectMapper);
+        this.preferredCodec = preferredCodec;
+        this.wireCodec = jsonCodec;
+    }
+
+    /**
+     * Offer the preferred codec's subprotocol, keeping plain JSON acceptable
+     * for servers that do not pick one, and permessage-deflate when enabled
+     * (servers without it simply do not accept the extension).
+     */
+    private static Draft_6455 buildDraft(WireCodec preferredCodec, MeteredDeflateExtension compression) {
+        List<IExtension> extensions = compression != null ? List.of(compression) : Collections.emptyList();
+        List<IProtocol> protocols = new ArrayList<>();
+        if (!preferredCodec.subprotocol().isEmpty()) {
+            protocols.add(new Protocol(preferredCodec.subprotocol()));
+        }
+        protocols.add(new Protocol(""));
+        return new Draft_6455(extensions, protocols);
     }
 
     @Override
@@ -58,41 +120,111 @@ public class WebSocketClient extends org.java_websocket.client.WebSocketClient {
         log.info("WebSocket connection established");
         reconnecting = false;
         reconnectAttempts = 0;
+        String accepted = handshake.getFieldValue("Sec-WebSocket-Protocol");
+        wireCodec = !preferredCodec.subprotocol().isEmpty() && preferredCodec.subprotocol().equals(accepted)
+                ? preferredCodec : jsonCodec;
+        log.info("WebSocket wire format: {}", wireCodec.name());
+        // Attach first so frames sent by connection listeners are not cleared
+        outboundWriter.attach(this);
         notifyConnectionListeners(true);
         startHeartbeat();
-        flushPendingMessages();
     }
 
     @Override
     public void onMessage(String message) {
+        lastInboundTime = System.currentTimeMillis();
         try {
+            long start = System.nanoTime();
             WebSocketMessageDTO wsMessage = objectMapper.readValue(message, WebSocketMessageDTO.class);
-            log.debug("Received WebSocket message: type={}, action={}", wsMessage.getType(), wsMessage.getAction());
-
-            // Notify on JavaFX thread
-            Platform.runLater(() -> {
-                for (Consumer<WebSocketMessageDTO> listener : messageListeners) {
-                    try {
-                        listener.accept(wsMessage);
-                    } catch (Exception e) {
-                        log.error("Error in message listener", e);
-                    }
-                }
-            });
-
+            recordInbound(message.length(), start);
+            dispatch(wsMessage, start);
         } catch (Exception e) {
             log.error("Error parsing WebSocket message: {}", message, e);
         }
     }
 
+    /**
+     * Binary frames carry the negotiated codec (CBOR), or UTF-8 JSON otherwise.
+     */
+    @Override
+    public void onMessage(ByteBuffer bytes) {
+        lastInboundTime = System.currentTimeMillis();
+        int size = bytes.remaining();
+        try {
+            long start = System.nanoTime();
+            WebSocketMessageDTO wsMessage = wireCodec.decode(bytes);
+            recordInbound(size, start);
+            dispatch(wsMessage, start);
+        } catch (Exception e) {
+            log.error("Error decoding {} byte {} WebSocket frame", size, wireCodec.name(), e);
+        }
+    }
+
+    private void recordInbound(int size, long startNanos) {
+        decodeNanos.addAndGet(System.nanoTime() - startNanos);
+        bytesReceived.addAndGet(size);
+        framesReceived.incrementAndGet();
+    }
+
+    private void dispatch(WebSocketMessageDTO wsMessage, long receivedNanos) {
+        log.debug("Received WebSocket message: type={}, action={}", wsMessage.getType(), wsMessage.getAction());
+
+        BiConsumer<WebSocketMessageDTO, Long> priority = priorityListener;
+        if (priority != null && WebSocketMessageDTO.TYPE_ALERT.equals(wsMessage.getType())) {
+            try {
+                priority.accept(wsMessage, receivedNanos);
+            } catch (Exception e) {
+                log.error("Error in priority listener", e);
+            }
+            return;
+        }
+
+        inbox.add(wsMessage);
+        if (drainScheduled.compareAndSet(false, true)) {
+            Platform.runLater(this::drainInbox);
+        }
+    }
+
+    /**
+     * FX thread: deliver queued frames for up to one slice, then yield to other events.
+     */
+    private void drainInbox() {
+        long deadline = System.nanoTime() + FX_SLICE_NANOS;
+        WebSocketMessageDTO wsMessage;
+        while ((wsMessage = inbox.poll()) != null) {
+            for (Consumer<WebSocketMessageDTO> listener : messageListeners) {
+                try {
+                    listener.accept(wsMessage);
+                } catch (Exception e) {
+                    log.error("Error in message listener", e);
+                }
+            }
+            if (System.nanoTime() - deadline > 0) break;
+        }
+        drainScheduled.set(false);
+        if (!inbox.isEmpty() && drainScheduled.compareAndSet(false, true)) {
+            Platform.runLater(this::drainInbox);
+        }
+    }
+
+    /**
+     * Codec negotiated for this connection; JSON until the handshake completes.
+     */
+    public WireCodec getWireCodec() {
+        return wireCodec;
+    }
+
     @Override
     public void onClose(int code, String reason, boolean remote) {
         log.info("WebSocket connection closed: code={}, reason={}, remote={}", code, reason, remote);
         stopHeartbeat();
+        outboundWriter.detach(this);
         notifyConnectionListeners(false);
 
         // Attempt reconnection if it was unexpected and we should reconnect
-        if (remote && shouldReconnect && !reconnecting && reconnectAttempts < MAX_RECONNECT_ATTEMPTS) {
+        boolean stale = closedAsStale;
+        closedAsStale = false;
+        if ((remote || stale) && shouldReconnect && !reconnecting && reconnectAttempts < MAX_RECONNECT_ATTEMPTS) {
             scheduleReconnect();
         }
     }
@@ -130,30 +262,67 @@ public class WebSocketClient extends org.java_websocket.client.WebSocketClient {
     }
 
     /**
-     * Start heartbeat to detect stale connections
+     * Start the liveness timer. It is the only heartbeat for the connection:
+     * protocol pings are sent only after a quiet period, and a connection is
+     * declared stale when a ping goes unanswered for longer than the measured
+     * round-trip time allows.
      */
     private void startHeartbeat() {
         stopHeartbeat();
         lastPongTime = System.currentTimeMillis();
+        lastInboundTime = lastPongTime;
+        pingSentNanos = 0;
+        pingInterval = IDLE_PING_INTERVAL_MS;
+        scheduleHeartbeat(pingInterval);
+    }
 
-        heartbeatTask = scheduler.scheduleAtFixedRate(() -> {
-            if (isOpen()) {
-                // Check if connection is stale
-                long timeSinceLastPong = System.currentTimeMillis() - lastPongTime;
-                if (timeSinceLastPong > HEARTBEAT_INTERVAL_MS * 2) {
-                    log.warn("Connection appears stale (no pong in {}ms), forcing reconnect", timeSinceLastPong);
-                    try {
-                        closeConnection(1000, "Stale connection");
-                    } catch (Exception e) {
-                        log.debug("Error closing stale connection: {}", e.getMessage());
-                    }
-                    return;
-                }
+    private void scheduleHeartbeat(long delayMs) {
+        heartbeatTask = scheduler.schedule(this::heartbeat, Math.max(100, delayMs), TimeUnit.MILLISECONDS);
+    }
 
-                // Send ping
-                sendPing();
+    private void heartbeat() {
+        if (!isOpen()) return;
+
+        long sent = pingSentNanos;
+        if (sent != 0) {
+            long waited = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - sent);
+            long timeout = staleTimeoutMs();
+            if (waited >= timeout) {
+                log.warn("Connection appears stale (no pong in {}ms, limit {}ms from RTT p99 {}ms), forcing reconnect",
+                        waited, timeout, rttHistogram.percentile(99));
+                closedAsStale = true;
+                try {
+                    closeConnection(1000, "Stale connection");
+                } catch (Exception e) {
+                    log.debug("Error closing stale connection: {}", e.getMessage());
+                }
+                return;
             }
-        }, HEARTBEAT_INTERVAL_MS, HEARTBEAT_INTERVAL_MS, TimeUnit.MILLISECONDS);
+            scheduleHeartbeat(timeout - waited);
+            return;
+        }
+
+        long quiet = System.currentTimeMillis() - lastInboundTime;
+        if (quiet < pingInterval) {
+            // Inbound traffic already proves liveness
+            pingInterval = Math.min(MAX_PING_INTERVAL_MS, pingInterval * 2);
+            scheduleHeartbeat(pingInterval - quiet);
+            return;
+        }
+
+        pingInterval = IDLE_PING_INTERVAL_MS;
+        pingSentNanos = System.nanoTime();
+        sendPing();
+        scheduleHeartbeat(staleTimeoutMs());
+    }
+
+    /**
+     * How long to wait for a pong: a few times the observed p99 RTT, within fixed bounds.
+     */
+    private long staleTimeoutMs() {
+        if (rttHistogram.count() < 3) return DEFAULT_STALE_TIMEOUT_MS;
+        long budget = rttHistogram.percentile(99) * 4 + 1000;
+        return Math.max(MIN_STALE_TIMEOUT_MS, Math.min(MAX_STALE_TIMEOUT_MS, budget));
     }
 
     private void stopHeartbeat() {
@@ -166,21 +335,12 @@ public class WebSocketClient extends org.java_websocket.client.WebSocketClient {
     @Override
     public void onWebsocketPong(org.java_websocket.WebSocket conn, org.java_websocket.framing.Framedata f) {
         lastPongTime = System.currentTimeMillis();
-    }
-
-    /**
-     * Flush pending messages after reconnection
-     */
-    private void flushPendingMessages() {
-        if (pendingMessages.isEmpty()) return;
-
-        log.info("Flushing {} pending messages", pendingMessages.size());
-        scheduler.execute(() -> {
-            WebSocketMessageDTO msg;
-            while ((msg = pendingMessages.poll()) != null && isOpen()) {
-                sendMessage(msg);
-            }
-        });
+        lastInboundTime = lastPongTime;
+        long sent = pingSentNanos;
+        if (sent != 0) {
+            pingSentNanos = 0;
+            rttHistogram.record(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - sent));
+        }
     }
 
     public void addMessageListener(Consumer<WebSocketMessageDTO> listener) {
@@ -191,6 +351,15 @@ public class WebSocketClient extends org.java_websocket.client.WebSocketClient {
         messageListeners.remove(listener);
     }
 
+    /**
+     * Receives ALERT frames on the socket thread, ahead of queued chat traffic,
+     * with the {@link System#nanoTime()} at which the frame arrived. Without one,
+     * alerts go through the regular message listeners.
+     */
+    public void setPriorityListener(BiConsumer<WebSocketMessageDTO, Long> listener) {
+        this.priorityListener = listener;
+    }
+
     public void addConnectionListener(Consumer<Boolean> listener) {
         connectionListeners.add(listener);
     }
@@ -211,30 +380,12 @@ public class WebSocketClient extends org.java_websocket.client.WebSocketClient {
         });
     }
 
+    /**
+     * Hand a frame to the outbound writer. Chat frames are persisted and survive
+     * disconnects; typing, read and ping frames are coalesced.
+     */
     public void sendMessage(WebSocketMessageDTO message) {
-        if (!isOpen()) {
-            // Queue message for later delivery
-            if ("MESSAGE".equals(message.getType())) {
-                if (pendingMessages.offer(message)) {
-                    log.debug("Message queued for later delivery (queue size: {})", pendingMessages.size());
-                } else {
-                    log.warn("Pending message queue full, message dropped");
-                }
-            }
-            log.warn("Cannot send message: WebSocket not connected");
-            return;
-        }
-
-        try {
-            String json = objectMapper.writeValueAsString(message);
-            send(json);
-        } catch (Exception e) {
-            log.error("Error sending WebSocket message", e);
-            // Queue for retry if it's a chat message
-            if ("MESSAGE".equals(message.getType())) {
-                pendingMessages.offer(message);
-            }
-        }
+        outboundWriter.enqueue(message);
     }
 
     public void sendTypingIndicator(Long channelId, boolean isTyping) {
@@ -248,24 +399,40 @@ public class WebSocketClient extends org.java_websocket.client.WebSocketClient {
     }
 
     public void sendChatMessage(Long channelId, String content, String clientId) {
+        sendMessage(WebSocketMessageDTO.chatMessage(channelId, content, clientId));
+    }
+
+    public void joinChannel(Long channelId) {
         WebSocketMessageDTO message = WebSocketMessageDTO.builder()
-                .type("MESSAGE")
-                .action("CREATE")
+                .type("CHANNEL")
+                .action("JOIN")
                 .channelId(channelId)
-                .payload(java.util.Map.of(
-                        "channelId", channelId,
-                        "content", content,
-                        "clientId", clientId
-                ))
                 .build();
         sendMessage(message);
     }
 
-    public void joinChannel(Long channelId) {
+    /**
+     * Subscribe to (JOIN) or drop (LEAVE) several channels in one frame.
+     */
+    public void updateSubscriptions(String action, Collection<Long> channelIds) {
+        if (channelIds.isEmpty()) return;
         WebSocketMessageDTO message = WebSocketMessageDTO.builder()
                 .type("CHANNEL")
-                .action("JOIN")
-                .channelId(channelId)
+                .action(action)
+                .channelId(channelIds.size() == 1 ? channelIds.iterator().next() : null)
+                .payload(Map.of("channelIds", List.copyOf(channelIds)))
+                .build();
+        sendMessage(message);
+    }
+
+    /**
+     * Ask for the current status of every online user; answered with a
+     * PRESENCE frame whose payload is a list of {userId, status}.
+     */
+    public void requestPresenceSnapshot() {
+        WebSocketMessageDTO message = WebSocketMessageDTO.builder()
+                .type(WebSocketMessageDTO.TYPE_PRESENCE)
+                .action("SNAPSHOT")
                 .build();
         sendMessage(message);
     }
@@ -280,6 +447,23 @@ public class WebSocketClient extends org.java_websocket.client.WebSocketClient {
         sendMessage(message);
     }
 
+    /**
+     * Ask for what was missed in each channel, in a single frame.
+     * Each entry maps a channel id to the last server message id already stored.
+     */
+    public void resumeSession(Map<Long, Long> lastMessageIds, int maxReplayPerChannel) {
+        List<Map<String, Object>> channels = new ArrayList<>(lastMessageIds.size());
+        lastMessageIds.forEach((channelId, lastId) ->
+                channels.add(Map.of("channelId", channelId, "afterMessageId", lastId)));
+
+        WebSocketMessageDTO message = WebSocketMessageDTO.builder()
+                .type("CHANNEL")
+                .action("RESUME")
+                .payload(Map.of("channels", channels, "limit", maxReplayPerChannel))
+                .build();
+        sendMessage(message);
+    }
+
     public void cancelReconnect() {
         reconnecting = false;
         shouldReconnect = false;
@@ -293,7 +477,7 @@ public class WebSocketClient extends org.java_websocket.client.WebSocketClient {
         shouldReconnect = false;
         reconnecting = false;
         stopHeartbeat();
-        pendingMessages.clear();
+        outboundWriter.detach(this);
 
         if (isOpen()) {
             try {
@@ -319,8 +503,13 @@ public class WebSocketClient extends org.java_websocket.client.WebSocketClient {
      * Get connection statistics for monitoring
      */
     public ConnectionStats getConnectionStats() {
-        return new ConnectionStats(isOpen(), reconnectAttempts, pendingMessages.size(), lastPongTime);
+        long frames = framesReceived.get();
+        return new ConnectionStats(isOpen(), reconnectAttempts, outboundWriter.getQueuedCount(), lastPongTime,
+                rttHistogram.percentile(50), rttHistogram.percentile(99), staleTimeoutMs(),
+                wireCodec.name(), frames, bytesReceived.get(), frames == 0 ? 0 : decodeNanos.get() / frames / 1000.0);
     }
 
-    public record ConnectionStats(boolean connected, int reconnectAttempts, int pendingMessageCount, long lastPongTime) {}
+    public record ConnectionStats(boolean connected, int reconnectAttempts, int pendingMessageCount, long lastPongTime,
+                                  long rttP50Ms, long rttP99Ms, long staleTimeoutMs,
+                                  String wireFormat, long framesReceived, long bytesReceived, double meanDecodeMicros) {}
 }
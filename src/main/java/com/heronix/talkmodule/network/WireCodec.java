@@ -0,0 +1,85 @@
+package com.heronix.talkmodule.network;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.util.ByteBufferBackedInputStream;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.heronix.talkmodule.model.dto.WebSocketMessageDTO;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Encoding of WebSocket frames on the wire.
+ *
+ * JSON text frames are the default and need no negotiation. CBOR sends the
+ * same object model as binary frames; it is offered as a WebSocket
+ * subprotocol and only used when the server accepts it at handshake.
+ */
+public final class WireCodec {
+
+    public static final String JSON = "json";
+    public static final String CBOR = "cbor";
+
+    static final String CBOR_SUBPROTOCOL = "heronix.cbor.v1";
+
+    private final String name;
+    private final ObjectMapper mapper;
+    private final boolean binary;
+    private final String subprotocol;
+
+    private WireCodec(String name, ObjectMapper mapper, boolean binary, String subprotocol) {
+        this.name = name;
+        this.mapper = mapper;
+        this.binary = binary;
+        this.subprotocol = subprotocol;
+    }
+
+    public static WireCodec json(ObjectMapper jsonMapper) {
+        return new WireCodec(JSON, jsonMapper, false, "");
+    }
+
+    /**
+     * CBOR codec sharing the JSON mapper's modules and settings.
+     */
+    public static WireCodec cbor(ObjectMapper jsonMapper) {
+        return new WireCodec(CBOR, jsonMapper.copyWith(new CBORFactory()), true, CBOR_SUBPROTOCOL);
+    }
+
+    /**
+     * Codec for a {@code heronix.websocket.wire-format} value; unknown values fall back to JSON.
+     */
+    public static WireCodec forFormat(String format, ObjectMapper jsonMapper) {
+        return CBOR.equalsIgnoreCase(format) ? cbor(jsonMapper) : json(jsonMapper);
+    }
+
+    public String name() {
+        return name;
+    }
+
+    /**
+     * Sent as binary frames rather than text frames.
+     */
+    public boolean isBinary() {
+        return binary;
+    }
+
+    /**
+     * Value offered in {@code Sec-WebSocket-Protocol}; empty for plain JSON.
+     */
+    public String subprotocol() {
+        return subprotocol;
+    }
+
+    public WebSocketMessageDTO decode(ByteBuffer bytes) throws IOException {
+        if (bytes.hasArray()) {
+            return mapper.readValue(bytes.array(), bytes.arrayOffset() + bytes.position(),
+                    bytes.remaining(), WebSocketMessageDTO.class);
+        }
+        return mapper.readValue(new ByteBufferBackedInputStream(bytes), WebSocketMessageDTO.class);
+    }
+
+    public void encode(Object value, OutputStream out) throws IOException {
+        mapper.writeValue(out, value);
+    }
+}
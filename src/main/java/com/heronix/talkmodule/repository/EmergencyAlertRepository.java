@@ -4,12 +4,15 @@ import com.heronix.talkmodule.model.domain.EmergencyAlert;
 import com.heronix.talkmodule.model.enums.AlertLevel;
 import com.heronix.talkmodule.model.enums.AlertType;
 import com.heronix.talkmodule.model.enums.SyncStatus;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -60,4 +63,57 @@ public interface EmergencyAlertRepository extends JpaRepository<EmergencyAlert,
             "AND a.alertLevel = 'EMERGENCY' " +
             "AND a.cancelledAt IS NULL")
     long countActiveEmergencies();
+
+    @Query("SELECT a.alertUuid FROM EmergencyAlert a WHERE a.active = true " +
+            "AND a.cancelledAt IS NULL " +
+            "AND a.alertLevel IN ('EMERGENCY', 'URGENT') " +
+            "AND (a.expiresAt IS NULL OR a.expiresAt > :now)")
+    List<String> findActiveEmergencyUuids(@Param("now") LocalDateTime now);
+
+    @Query("SELECT a.alertUuid FROM EmergencyAlert a WHERE a.active = true " +
+            "AND a.acknowledged = false " +
+            "AND a.requiresAcknowledgment = true " +
+            "AND a.cancelledAt IS NULL")
+    List<String> findUnacknowledgedUuids();
+
+    @Modifying
+    @Query("UPDATE EmergencyAlert a SET a.active = false, a.cancelledAt = :now, a.syncStatus = :syncStatus " +
+            "WHERE a.alertUuid IN :uuids AND a.cancelledAt IS NULL")
+    int cancelByUuids(@Param("uuids") Collection<String> uuids, @Param("now") LocalDateTime now,
+                      @Param("syncStatus") SyncStatus syncStatus);
+
+    @Modifying
+    @Query("UPDATE EmergencyAlert a SET a.acknowledged = true, a.acknowledgedAt = :now, a.syncStatus = :syncStatus " +
+            "WHERE a.alertUuid IN :uuids AND a.acknowledged = false")
+    int acknowledgeByUuids(@Param("uuids") Collection<String> uuids, @Param("now") LocalDateTime now,
+                           @Param("syncStatus") SyncStatus syncStatus);
+
+    @Query("SELECT a FROM EmergencyAlert a WHERE a.serverId IS NULL " +
+            "AND a.syncStatus IN :statuses " +
+            "AND a.active = true AND a.cancelledAt IS NULL " +
+            "AND (a.expiresAt IS NULL OR a.expiresAt > :now) " +
+            "ORDER BY a.issuedAt ASC")
+    List<EmergencyAlert> findUnpublished(@Param("statuses") Collection<SyncStatus> statuses,
+                                         @Param("now") LocalDateTime now);
+
+    @Modifying
+    @Query("UPDATE EmergencyAlert a SET a.serverId = :serverId, a.syncStatus = :syncStatus, a.lastSyncTime = :now " +
+            "WHERE a.localId = :localId")
+    int markPublished(@Param("localId") Long localId, @Param("serverId") Long serverId,
+                      @Param("syncStatus") SyncStatus syncStatus, @Param("now") LocalDateTime now);
+
+    @Modifying
+    @Query("UPDATE EmergencyAlert a SET a.syncStatus = :syncStatus, a.lastSyncTime = :now WHERE a.alertUuid IN :uuids")
+    int updateSyncStatus(@Param("uuids") Collection<String> uuids, @Param("syncStatus") SyncStatus syncStatus,
+                         @Param("now") LocalDateTime now);
+
+    @Query("SELECT a.localId FROM EmergencyAlert a WHERE a.issuedAt < :cutoff " +
+            "AND a.syncStatus = 'SYNCED' " +
+            "AND (a.active = false OR a.cancelledAt IS NOT NULL OR a.expiresAt < :cutoff) " +
+            "AND (a.requiresAcknowledgment = false OR a.acknowledged = true)")
+    List<Long> findPrunableIds(@Param("cutoff") LocalDateTime cutoff, Pageable pageable);
+
+    @Modifying
+    @Query("DELETE FROM EmergencyAlert a WHERE a.localId IN :ids")
+    int deleteByLocalIdIn(@Param("ids") List<Long> ids);
 }
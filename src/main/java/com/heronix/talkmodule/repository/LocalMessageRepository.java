@@ -5,11 +5,13 @@ import com.heronix.talkmodule.model.enums.SyncStatus;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -48,6 +50,10 @@ public interface LocalMessageRepository extends JpaRepository<LocalMessage, Long
 
     List<LocalMessage> findBySyncStatus(SyncStatus status);
 
+    Optional<LocalMessage> findFirstByClientId(String clientId);
+
+    List<LocalMessage> findByClientIdIn(Collection<String> clientIds);
+
     @Query("SELECT m FROM LocalMessage m WHERE m.syncStatus IN ('PENDING', 'LOCAL_ONLY')")
     List<LocalMessage> findNeedingSync();
 
@@ -55,4 +61,29 @@ public interface LocalMessageRepository extends JpaRepository<LocalMessage, Long
     long countByChannelId(@Param("channelId") Long channelId);
 
     boolean existsByClientId(String clientId);
+
+    // ===================== Retention =====================
+
+    @Query("SELECT DISTINCT m.channelId FROM LocalMessage m WHERE m.channelId IS NOT NULL")
+    List<Long> findDistinctChannelIds();
+
+    @Query("SELECT m.timestamp FROM LocalMessage m WHERE m.channelId = :channelId ORDER BY m.timestamp DESC")
+    List<LocalDateTime> findTimestampsNewestFirst(@Param("channelId") Long channelId, Pageable pageable);
+
+    @Query("SELECT m.localId FROM LocalMessage m WHERE m.channelId = :channelId AND m.timestamp < :cutoff " +
+            "AND m.pinned = false AND m.important = false AND m.syncStatus = 'SYNCED' ORDER BY m.timestamp ASC")
+    List<Long> findPrunableIds(@Param("channelId") Long channelId, @Param("cutoff") LocalDateTime cutoff, Pageable pageable);
+
+    @Modifying
+    @Query("DELETE FROM LocalMessage m WHERE m.localId IN :ids")
+    int deleteByLocalIdIn(@Param("ids") List<Long> ids);
+
+    @Query("SELECT m.channelId, MAX(m.serverId) FROM LocalMessage m WHERE m.serverId IS NOT NULL GROUP BY m.channelId")
+    List<Object[]> findLastServerIdPerChannel();
+
+    @Query("SELECT m.messageUuid FROM LocalMessage m WHERE m.messageUuid IN :uuids")
+    List<String> findExistingUuids(@Param("uuids") Collection<String> uuids);
+
+    @Query("SELECT m.serverId FROM LocalMessage m WHERE m.serverId IN :serverIds")
+    List<Long> findExistingServerIds(@Param("serverIds") Collection<Long> serverIds);
 }
@@ -5,6 +5,7 @@ import com.heronix.talkmodule.model.enums.SyncStatus;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
@@ -51,4 +52,13 @@ public interface LocalNewsItemRepository extends JpaRepository<LocalNewsItem, Lo
     List<String> findAllCategories();
 
     long countByActiveTrue();
+
+    @Query("SELECT n.localId FROM LocalNewsItem n WHERE n.pinned = false AND n.syncStatus = 'SYNCED' " +
+            "AND ((n.expiresAt IS NOT NULL AND n.expiresAt < :cutoff) " +
+            "OR (n.active = false AND n.modifiedDate < :cutoff))")
+    List<Long> findPrunableIds(@Param("cutoff") LocalDateTime cutoff, Pageable pageable);
+
+    @Modifying
+    @Query("DELETE FROM LocalNewsItem n WHERE n.localId IN :ids")
+    int deleteByLocalIdIn(@Param("ids") List<Long> ids);
 }
@@ -5,10 +5,13 @@ import com.heronix.talkmodule.model.enums.SyncStatus;
 import com.heronix.talkmodule.model.enums.UserRole;
 import com.heronix.talkmodule.model.enums.UserStatus;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -47,4 +50,9 @@ public interface LocalUserRepository extends JpaRepository<LocalUser, Long> {
 
     @Query("SELECT COUNT(u) FROM LocalUser u WHERE u.status != 'OFFLINE' AND u.active = true")
     long countOnlineUsers();
+
+    @Modifying
+    @Query("UPDATE LocalUser u SET u.status = :status, u.lastSeen = :seen WHERE u.id IN :ids")
+    int updateStatusForIds(@Param("ids") Collection<Long> ids, @Param("status") UserStatus status,
+                           @Param("seen") LocalDateTime seen);
 }
@@ -0,0 +1,21 @@
+package com.heronix.talkmodule.repository;
+
+import com.heronix.talkmodule.model.domain.MirroredParentContact;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface MirroredParentContactRepository extends JpaRepository<MirroredParentContact, Long> {
+
+    List<MirroredParentContact> findByStudentSisIdOrderByPriorityAsc(Long studentSisId);
+
+    @Modifying
+    @Query("DELETE FROM MirroredParentContact c WHERE c.studentSisId IN :studentIds")
+    int deleteByStudentSisIdIn(@Param("studentIds") Collection<Long> studentIds);
+}
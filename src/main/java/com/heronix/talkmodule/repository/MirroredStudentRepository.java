@@ -0,0 +1,22 @@
+package com.heronix.talkmodule.repository;
+
+import com.heronix.talkmodule.model.domain.MirroredStudent;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface MirroredStudentRepository extends JpaRepository<MirroredStudent, Long> {
+
+    @Query("SELECT MAX(s.sourceUpdatedAt) FROM MirroredStudent s")
+    LocalDateTime findLatestSourceUpdate();
+
+    @Query("SELECT s FROM MirroredStudent s WHERE s.contactsStale = true ORDER BY s.id ASC")
+    List<MirroredStudent> findContactsStale(Pageable pageable);
+
+    long countByContactsStaleTrue();
+}
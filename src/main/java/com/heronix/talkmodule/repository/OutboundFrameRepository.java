@@ -0,0 +1,31 @@
+package com.heronix.talkmodule.repository;
+
+import com.heronix.talkmodule.model.domain.OutboundFrame;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface OutboundFrameRepository extends JpaRepository<OutboundFrame, Long> {
+
+    @Query("SELECT f FROM OutboundFrame f WHERE f.id > :afterId ORDER BY f.id ASC")
+    List<OutboundFrame> findNextBatch(@Param("afterId") Long afterId, Pageable pageable);
+
+    @Query("SELECT f.id FROM OutboundFrame f WHERE f.clientId IN :clientIds")
+    List<Long> findIdsByClientIdIn(@Param("clientIds") Collection<String> clientIds);
+
+    @Query("SELECT f.clientId FROM OutboundFrame f WHERE f.clientId IS NOT NULL")
+    List<String> findAllClientIds();
+
+    @Query("SELECT f.id FROM OutboundFrame f WHERE f.createdAt < :cutoff")
+    List<Long> findIdsCreatedBefore(@Param("cutoff") LocalDateTime cutoff);
+
+    @Query("SELECT MIN(f.createdAt) FROM OutboundFrame f")
+    LocalDateTime findOldestCreatedAt();
+}
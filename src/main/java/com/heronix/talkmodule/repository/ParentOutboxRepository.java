@@ -0,0 +1,26 @@
+package com.heronix.talkmodule.repository;
+
+import com.heronix.talkmodule.model.domain.ParentOutboxMessage;
+import com.heronix.talkmodule.model.enums.SyncStatus;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface ParentOutboxRepository extends JpaRepository<ParentOutboxMessage, Long> {
+
+    @Query("SELECT m FROM ParentOutboxMessage m WHERE m.syncStatus = :status AND m.nextAttemptAt <= :now " +
+           "ORDER BY m.nextAttemptAt ASC, m.id ASC")
+    List<ParentOutboxMessage> findDue(@Param("status") SyncStatus status, @Param("now") LocalDateTime now,
+                                      Pageable pageable);
+
+    long countBySyncStatus(SyncStatus syncStatus);
+
+    @Query("SELECT MIN(m.createdAt) FROM ParentOutboxMessage m WHERE m.syncStatus = :status")
+    LocalDateTime findOldestCreatedAt(@Param("status") SyncStatus status);
+}
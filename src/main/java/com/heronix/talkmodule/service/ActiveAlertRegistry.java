@@ -0,0 +1,188 @@
+package com.heronix.talkmodule.service;
+
+import com.heronix.talkmodule.model.domain.EmergencyAlert;
+import com.heronix.talkmodule.model.enums.AlertLevel;
+import com.heronix.talkmodule.util.TimerWheel;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.function.Consumer;
+
+/**
+ * In-memory set of active (not cancelled, not expired) alerts.
+ *
+ * Loaded from H2 once, then kept current by AlertService as alerts arrive or
+ * are cancelled. Each alert with an {@code expiresAt} gets a timeout on a
+ * {@link TimerWheel}, so expiry needs no polling query. Counts per level are
+ * maintained on every change and can be read from any thread without locking.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ActiveAlertRegistry {
+
+    private static final Comparator<EmergencyAlert> DISPLAY_ORDER = Comparator
+            .comparing(EmergencyAlert::getAlertLevel)
+            .thenComparing(EmergencyAlert::getIssuedAt, Comparator.nullsLast(Comparator.reverseOrder()));
+
+    private final TimerWheel expiryWheel;
+
+    // Guarded by this
+    private final Map<String, Entry> alerts = new HashMap<>();
+    private final Set<String> removedBeforeLoad = new HashSet<>();
+    private boolean loaded;
+
+    private final AtomicInteger total = new AtomicInteger();
+    private final AtomicIntegerArray byLevel = new AtomicIntegerArray(AlertLevel.values().length);
+
+    private volatile Consumer<EmergencyAlert> expiryListener;
+
+    /**
+     * Called on the timer thread when an alert reaches its {@code expiresAt}.
+     */
+    public void setExpiryListener(Consumer<EmergencyAlert> listener) {
+        this.expiryListener = listener;
+    }
+
+    // ===================== Updates =====================
+
+    public synchronized boolean isLoaded() {
+        return loaded;
+    }
+
+    /**
+     * Merge alerts read from the database. Alerts already tracked, or removed
+     * since startup, are newer than their rows (whose writes may still be
+     * queued) and are left as they are, so loading twice is harmless.
+     */
+    public synchronized void load(Collection<EmergencyAlert> activeAlerts) {
+        for (EmergencyAlert alert : activeAlerts) {
+            String uuid = alert.getAlertUuid();
+            if (uuid != null && !alerts.containsKey(uuid) && !removedBeforeLoad.contains(uuid)) {
+                add(alert);
+            }
+        }
+        removedBeforeLoad.clear();
+        loaded = true;
+        log.debug("Active alert registry loaded with {} alerts", total.get());
+    }
+
+    /**
+     * Track an alert; ignored if it is already inactive. Returns true if it was new.
+     */
+    public synchronized boolean add(EmergencyAlert alert) {
+        if (alert.getAlertUuid() == null || !alert.isActiveAlert()) return false;
+
+        TimerWheel.Timeout timeout = null;
+        if (alert.getExpiresAt() != null) {
+            long millis = Math.max(0, Duration.between(LocalDateTime.now(), alert.getExpiresAt()).toMillis());
+            timeout = expiryWheel.schedule(() -> expire(alert.getAlertUuid()), millis, TimeUnit.MILLISECONDS);
+        }
+
+        Entry previous = alerts.put(alert.getAlertUuid(), new Entry(alert, timeout));
+        if (previous != null) {
+            if (previous.timeout != null) previous.timeout.cancel();
+            adjust(previous.alert, -1);
+        }
+        adjust(alert, 1);
+        return previous == null;
+    }
+
+    public synchronized EmergencyAlert remove(String alertUuid) {
+        if (!loaded && alertUuid != null) {
+            removedBeforeLoad.add(alertUuid);
+        }
+        Entry entry = alerts.remove(alertUuid);
+        if (entry == null) return null;
+        if (entry.timeout != null) entry.timeout.cancel();
+        adjust(entry.alert, -1);
+        return entry.alert;
+    }
+
+    /**
+     * Mark tracked alerts acknowledged; they stay active until cancelled or
+     * expired. Returns how many were tracked.
+     */
+    public synchronized int acknowledge(Collection<String> alertUuids, LocalDateTime acknowledgedAt) {
+        int marked = 0;
+        for (String uuid : alertUuids) {
+            Entry entry = alerts.get(uuid);
+            if (entry == null) continue;
+            entry.alert.setAcknowledged(true);
+            entry.alert.setAcknowledgedAt(acknowledgedAt);
+            marked++;
+        }
+        return marked;
+    }
+
+    private void expire(String alertUuid) {
+        EmergencyAlert expired;
+        synchronized (this) {
+            expired = remove(alertUuid);
+        }
+        if (expired == null) return;
+        log.info("Alert expired: {}", expired.getTitle());
+        Consumer<EmergencyAlert> listener = expiryListener;
+        if (listener != null) {
+            try {
+                listener.accept(expired);
+            } catch (Exception e) {
+                log.error("Error in alert expiry listener", e);
+            }
+        }
+    }
+
+    private void adjust(EmergencyAlert alert, int delta) {
+        total.addAndGet(delta);
+        if (alert.getAlertLevel() != null) {
+            byLevel.addAndGet(alert.getAlertLevel().ordinal(), delta);
+        }
+    }
+
+    // ===================== Queries =====================
+
+    public int count() {
+        return total.get();
+    }
+
+    public int count(AlertLevel level) {
+        return byLevel.get(level.ordinal());
+    }
+
+    public Map<AlertLevel, Integer> countsByLevel() {
+        Map<AlertLevel, Integer> counts = new EnumMap<>(AlertLevel.class);
+        for (AlertLevel level : AlertLevel.values()) {
+            counts.put(level, byLevel.get(level.ordinal()));
+        }
+        return counts;
+    }
+
+    /**
+     * Active alerts, most severe first, newest first within a level.
+     */
+    public synchronized List<EmergencyAlert> snapshot() {
+        List<EmergencyAlert> list = new ArrayList<>(alerts.size());
+        for (Entry entry : alerts.values()) {
+            list.add(entry.alert);
+        }
+        list.sort(DISPLAY_ORDER);
+        return list;
+    }
+
+    private record Entry(EmergencyAlert alert, TimerWheel.Timeout timeout) {}
+}
@@ -0,0 +1,176 @@
+package com.heronix.talkmodule.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Client-side throttle for typing indicators and read receipts.
+ *
+ * Keystrokes produce at most one TYPING_START per channel per debounce
+ * window, and a TYPING_STOP once the user goes quiet. Read receipts are
+ * collapsed to the highest message id per channel and sent once per flush
+ * window. A receipt that cannot be sent stays pending until the connection
+ * is back. Frames that never reach the wire are counted in {@link #getStats()}.
+ */
+@Service
+@Slf4j
+public class ActivityAggregator {
+
+    @Autowired
+    @Lazy
+    private WebSocketService webSocketService;
+
+    @Value("${heronix.activity.typing-debounce-seconds:3}")
+    private int typingDebounceSeconds;
+
+    @Value("${heronix.activity.typing-idle-seconds:5}")
+    private int typingIdleSeconds;
+
+    // Guarded by this
+    private final Map<Long, TypingState> typing = new HashMap<>();
+    private final Map<Long, Long> pendingReads = new HashMap<>();
+    private final Map<Long, Long> sentReads = new HashMap<>();
+
+    private final AtomicLong typingFramesSent = new AtomicLong();
+    private final AtomicLong readFramesSent = new AtomicLong();
+    private final AtomicLong framesSaved = new AtomicLong();
+
+    // ===================== Typing =====================
+
+    /**
+     * Record a keystroke in a channel's composer.
+     */
+    public void typing(Long channelId) {
+        if (channelId == null) return;
+        long now = System.currentTimeMillis();
+        boolean send;
+
+        synchronized (this) {
+            TypingState state = typing.computeIfAbsent(channelId, id -> new TypingState());
+            state.lastKeystroke = now;
+            send = !state.active || now - state.lastSent >= typingDebounceSeconds * 1000L;
+            if (send) {
+                state.active = true;
+                state.lastSent = now;
+            }
+        }
+
+        if (send) {
+            webSocketService.sendTypingIndicator(channelId, true);
+            typingFramesSent.incrementAndGet();
+        } else {
+            framesSaved.incrementAndGet();
+        }
+    }
+
+    /**
+     * The user sent or cleared the message; stop immediately.
+     */
+    public void stoppedTyping(Long channelId) {
+        if (channelId == null) return;
+        boolean send;
+        synchronized (this) {
+            TypingState state = typing.remove(channelId);
+            send = state != null && state.active;
+        }
+        if (send) {
+            webSocketService.sendTypingIndicator(channelId, false);
+            typingFramesSent.incrementAndGet();
+        }
+    }
+
+    // ===================== Read Receipts =====================
+
+    /**
+     * Note that everything up to {@code messageId} has been seen. Sent on the next flush.
+     */
+    public void markRead(Long channelId, Long messageId) {
+        if (channelId == null || messageId == null || messageId < 0) return;
+        synchronized (this) {
+            Long sent = sentReads.get(channelId);
+            if (sent != null && sent >= messageId) {
+                framesSaved.incrementAndGet();
+                return;
+            }
+            Long previous = pendingReads.put(channelId, messageId);
+            if (previous != null) {
+                framesSaved.incrementAndGet();
+                if (previous > messageId) {
+                    pendingReads.put(channelId, previous);
+                }
+            }
+        }
+    }
+
+    // ===================== Flush =====================
+
+    @Scheduled(fixedDelayString = "${heronix.activity.flush-interval-ms:2000}")
+    public void flush() {
+        Map<Long, Long> reads;
+        List<Long> stops = new ArrayList<>();
+        long now = System.currentTimeMillis();
+
+        synchronized (this) {
+            reads = pendingReads.isEmpty() ? Map.of() : new HashMap<>(pendingReads);
+            pendingReads.clear();
+
+            Iterator<Map.Entry<Long, TypingState>> it = typing.entrySet().iterator();
+            while (it.hasNext()) {
+                Map.Entry<Long, TypingState> entry = it.next();
+                if (now - entry.getValue().lastKeystroke >= typingIdleSeconds * 1000L) {
+                    if (entry.getValue().active) {
+                        stops.add(entry.getKey());
+                    }
+                    it.remove();
+                }
+            }
+        }
+
+        reads.forEach((channelId, messageId) -> {
+            boolean accepted = webSocketService.markAsRead(channelId, messageId);
+            synchronized (this) {
+                // Only an accepted receipt may suppress later ones; otherwise retry next flush
+                (accepted ? sentReads : pendingReads).merge(channelId, messageId, Math::max);
+            }
+            if (accepted) {
+                readFramesSent.incrementAndGet();
+            }
+        });
+        stops.forEach(channelId -> {
+            webSocketService.sendTypingIndicator(channelId, false);
+            typingFramesSent.incrementAndGet();
+        });
+    }
+
+    /**
+     * Receipts handed to the writer shortly before a drop may never have been
+     * written; send the latest per channel again after reconnecting.
+     */
+    public synchronized void connectionLost() {
+        sentReads.forEach((channelId, messageId) -> pendingReads.merge(channelId, messageId, Math::max));
+        sentReads.clear();
+    }
+
+    public ActivityStats getStats() {
+        return new ActivityStats(typingFramesSent.get(), readFramesSent.get(), framesSaved.get());
+    }
+
+    private static final class TypingState {
+        boolean active;
+        long lastSent;
+        long lastKeystroke;
+    }
+
+    public record ActivityStats(long typingFramesSent, long readFramesSent, long framesSaved) {}
+}
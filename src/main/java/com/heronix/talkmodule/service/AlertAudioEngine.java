@@ -0,0 +1,208 @@
+package com.heronix.talkmodule.service;
+
+import com.heronix.talkmodule.config.ExecutorRegistry;
+import com.heronix.talkmodule.model.domain.EmergencyAlert;
+import com.heronix.talkmodule.model.enums.AlertLevel;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import javafx.scene.media.AudioClip;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Plays alert sounds from pre-decoded clips.
+ *
+ * Level sounds are loaded once at startup and custom {@code soundFile} clips
+ * on first use, so nothing is decoded when an alert arrives. An alert's sound
+ * repeats {@code repeatCount} times on a fixed interval. Alerts that want the
+ * same sound while it is already repeating share one playback instead of
+ * layering over each other; it stops once every alert using it is stopped.
+ */
+@Component
+@Slf4j
+public class AlertAudioEngine {
+
+    private static final Map<AlertLevel, String> LEVEL_SOUNDS = Map.of(
+            AlertLevel.EMERGENCY, "/sounds/emergency.wav",
+            AlertLevel.URGENT, "/sounds/urgent.wav");
+    private static final String DEFAULT_SOUND = "/sounds/notification.wav";
+    private static final int MAX_CUSTOM_CLIPS = 16;
+
+    @Value("${heronix.alerts.audio.repeat-interval-ms:3000}")
+    private long repeatIntervalMs;
+
+    private final Map<String, AudioClip> clips = new ConcurrentHashMap<>();
+    // Sources that could not be loaded, so they are not retried on every alert
+    private final Set<String> missing = ConcurrentHashMap.newKeySet();
+
+    // Guarded by this
+    private final Map<String, Playback> playing = new HashMap<>();
+
+    private final ExecutorRegistry executors;
+    private ScheduledExecutorService scheduler;
+
+    public AlertAudioEngine(ExecutorRegistry executors) {
+        this.executors = executors;
+    }
+
+    @PostConstruct
+    public void preload() {
+        scheduler = executors.scheduler("alert-audio", Thread.NORM_PRIORITY);
+        scheduler.execute(() -> {
+            LEVEL_SOUNDS.values().forEach(this::clip);
+            clip(DEFAULT_SOUND);
+            log.info("Preloaded {} alert sounds", clips.size());
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        stopAll();
+    }
+
+    // ===================== Playback =====================
+
+    /**
+     * Sound an alert: its custom file if it has one, else its level's sound.
+     */
+    public void play(EmergencyAlert alert) {
+        String levelSound = soundFor(alert.getAlertLevel());
+        boolean custom = alert.getSoundFile() != null && !alert.getSoundFile().isBlank();
+        String source = custom ? alert.getSoundFile() : levelSound;
+        Optional<AudioClip> clip = clip(source);
+        if (clip.isEmpty() && custom) {
+            source = levelSound;
+            clip = clip(source);
+        }
+        if (clip.isEmpty()) return;
+
+        String key = source;
+        int repeats = Math.max(1, alert.getRepeatCount());
+        synchronized (this) {
+            Playback current = playing.get(key);
+            if (current != null) {
+                // Already sounding: join it rather than starting a second copy
+                current.alerts.add(alert.getAlertUuid());
+                current.remaining = Math.max(current.remaining, repeats - 1);
+                return;
+            }
+            Playback playback = new Playback(clip.get(), repeats - 1);
+            playback.alerts.add(alert.getAlertUuid());
+            playing.put(key, playback);
+            clip.get().play();
+            // Stays registered for at least one interval so near-simultaneous alerts share it
+            playback.task = scheduler.scheduleWithFixedDelay(() -> repeat(key),
+                    repeatIntervalMs, repeatIntervalMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private synchronized void repeat(String key) {
+        Playback playback = playing.get(key);
+        if (playback == null) return;
+        if (playback.remaining <= 0) {
+            finish(key, playback);
+            return;
+        }
+        playback.remaining--;
+        playback.clip.play();
+    }
+
+    /**
+     * Stop repeats requested by an alert, e.g. once it is acknowledged.
+     */
+    public synchronized void stop(String alertUuid) {
+        for (Map.Entry<String, Playback> entry : Map.copyOf(playing).entrySet()) {
+            Playback playback = entry.getValue();
+            if (playback.alerts.remove(alertUuid) && playback.alerts.isEmpty()) {
+                playback.clip.stop();
+                finish(entry.getKey(), playback);
+            }
+        }
+    }
+
+    public synchronized void stopAll() {
+        for (Map.Entry<String, Playback> entry : Map.copyOf(playing).entrySet()) {
+            entry.getValue().clip.stop();
+            finish(entry.getKey(), entry.getValue());
+        }
+    }
+
+    private void finish(String key, Playback playback) {
+        if (playback.task != null) {
+            playback.task.cancel(false);
+        }
+        playing.remove(key);
+    }
+
+    // ===================== Clips =====================
+
+    private static String soundFor(AlertLevel level) {
+        return LEVEL_SOUNDS.getOrDefault(level, DEFAULT_SOUND);
+    }
+
+    /**
+     * Decoded clip for a classpath resource, file path or URL; loaded once.
+     */
+    private Optional<AudioClip> clip(String source) {
+        AudioClip cached = clips.get(source);
+        if (cached != null) return Optional.of(cached);
+        if (missing.contains(source)) return Optional.empty();
+
+        try {
+            String url = resolve(source);
+            if (url == null) {
+                log.warn("Alert sound not found: {}", source);
+                missing.add(source);
+                return Optional.empty();
+            }
+            boolean builtIn = source.equals(DEFAULT_SOUND) || LEVEL_SOUNDS.containsValue(source);
+            if (!builtIn && clips.size() >= LEVEL_SOUNDS.size() + 1 + MAX_CUSTOM_CLIPS) {
+                // Custom sounds beyond the cap are played uncached
+                return Optional.of(new AudioClip(url));
+            }
+            return Optional.of(clips.computeIfAbsent(source, s -> new AudioClip(url)));
+        } catch (Exception e) {
+            log.warn("Could not load alert sound {}: {}", source, e.getMessage());
+            missing.add(source);
+            return Optional.empty();
+        }
+    }
+
+    private String resolve(String source) {
+        if (source.contains("://") || source.startsWith("file:")) {
+            return source;
+        }
+        URL resource = getClass().getResource(source.startsWith("/") ? source : "/sounds/" + source);
+        if (resource != null) {
+            return resource.toExternalForm();
+        }
+        Path file = Path.of(source);
+        return Files.isRegularFile(file) ? file.toUri().toString() : null;
+    }
+
+    private static final class Playback {
+        final AudioClip clip;
+        final Set<String> alerts = new HashSet<>();
+        int remaining;
+        ScheduledFuture<?> task;
+
+        Playback(AudioClip clip, int remaining) {
+            this.clip = clip;
+            this.remaining = remaining;
+        }
+    }
+}
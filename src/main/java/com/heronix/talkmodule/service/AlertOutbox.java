@@ -0,0 +1,267 @@
+package com.heronix.talkmodule.service;
+
+import com.heronix.talkmodule.config.ExecutorRegistry;
+import com.heronix.talkmodule.model.domain.EmergencyAlert;
+import com.heronix.talkmodule.model.dto.AlertDeliveryDTO;
+import com.heronix.talkmodule.model.dto.EmergencyAlertDTO;
+import com.heronix.talkmodule.model.enums.SyncStatus;
+import com.heronix.talkmodule.network.TalkServerClient;
+import com.heronix.talkmodule.repository.EmergencyAlertRepository;
+import com.heronix.talkmodule.util.LatencyHistogram;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Publishes locally issued alerts to the server and follows their delivery.
+ *
+ * Alerts are pushed as soon as their row commits, on a dedicated max-priority
+ * thread and HTTP connection, retrying with a short capped backoff. Anything
+ * still unpublished (offline, or out of retries) is picked up by a periodic
+ * sweep. Recipient, delivered and acknowledged counts come from the publish
+ * response, ALERT/DELIVERY frames and polling; the time for an alert to reach
+ * 95% acknowledged is recorded for drill reviews.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class AlertOutbox {
+
+    private static final long[] BACKOFF_MS = {250, 500, 1000, 2000, 2000};
+    private static final double ACK_TARGET = 0.95;
+
+    private final EmergencyAlertRepository alertRepository;
+    private final TalkServerClient serverClient;
+    private final SessionManager sessionManager;
+    private final PlatformTransactionManager transactionManager;
+
+    private final ExecutorRegistry executors;
+
+    private ScheduledExecutorService publisher;
+
+    private final Set<Long> inFlight = ConcurrentHashMap.newKeySet();
+    private final Map<String, Delivery> deliveries = new ConcurrentHashMap<>();
+
+    // Issue time -> 95% of recipients acknowledged, in milliseconds
+    private final LatencyHistogram timeTo95Acknowledged = new LatencyHistogram();
+    private final AtomicLong published = new AtomicLong();
+    private final AtomicLong publishRetries = new AtomicLong();
+    private final AtomicLong publishFailures = new AtomicLong();
+
+    @PostConstruct
+    public void start() {
+        publisher = executors.scheduler("alert-outbox", Thread.MAX_PRIORITY);
+    }
+
+    // ===================== Publishing =====================
+
+    /**
+     * Queue a newly created alert for publishing. Inside a transaction the push
+     * starts after commit, so the row it updates is guaranteed to exist.
+     */
+    public void submit(EmergencyAlert alert) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    schedule(alert, 0, 0);
+                }
+            });
+        } else {
+            schedule(alert, 0, 0);
+        }
+    }
+
+    private void schedule(EmergencyAlert alert, int attempt, long delayMs) {
+        if (attempt == 0 && !inFlight.add(alert.getLocalId())) return;
+        publisher.schedule(() -> publish(alert, attempt), delayMs, TimeUnit.MILLISECONDS);
+    }
+
+    private void publish(EmergencyAlert alert, int attempt) {
+        if (!sessionManager.isConnected()) {
+            // The sweep publishes it once we are back online
+            inFlight.remove(alert.getLocalId());
+            return;
+        }
+
+        var response = serverClient.publishAlert(toDto(alert));
+        if (response.isPresent() && response.get().getId() != null) {
+            EmergencyAlertDTO dto = response.get();
+            new TransactionTemplate(transactionManager).executeWithoutResult(tx -> alertRepository.markPublished(
+                    alert.getLocalId(), dto.getId(), SyncStatus.SYNCED, LocalDateTime.now()));
+            alert.setServerId(dto.getId());
+            alert.setSyncStatus(SyncStatus.SYNCED);
+            inFlight.remove(alert.getLocalId());
+            published.incrementAndGet();
+
+            track(alert);
+            if (dto.getRecipientCount() != null) {
+                recordDelivery(AlertDeliveryDTO.builder()
+                        .alertId(dto.getId())
+                        .alertUuid(alert.getAlertUuid())
+                        .recipientCount(dto.getRecipientCount())
+                        .deliveredCount(dto.getDeliveredCount() != null ? dto.getDeliveredCount() : 0)
+                        .acknowledgedCount(dto.getAcknowledgedCount() != null ? dto.getAcknowledgedCount() : 0)
+                        .build());
+            }
+            log.info("Alert published: {} (server id {}, attempt {})", alert.getTitle(), dto.getId(), attempt + 1);
+            return;
+        }
+
+        if (attempt < BACKOFF_MS.length) {
+            publishRetries.incrementAndGet();
+            log.warn("Publishing alert {} failed, retrying in {} ms", alert.getAlertUuid(), BACKOFF_MS[attempt]);
+            schedule(alert, attempt + 1, BACKOFF_MS[attempt]);
+        } else {
+            publishFailures.incrementAndGet();
+            inFlight.remove(alert.getLocalId());
+            log.error("Alert {} not published after {} attempts; will retry on next sweep",
+                    alert.getAlertUuid(), attempt + 1);
+        }
+    }
+
+    /**
+     * Publish alerts that were created offline or ran out of retries.
+     */
+    @Scheduled(fixedDelayString = "${heronix.alerts.outbox-sweep-seconds:30}", timeUnit = TimeUnit.SECONDS)
+    public void sweep() {
+        if (!sessionManager.isConnected()) return;
+        List<EmergencyAlert> pending = alertRepository.findUnpublished(
+                List.of(SyncStatus.PENDING, SyncStatus.LOCAL_ONLY), LocalDateTime.now());
+        for (EmergencyAlert alert : pending) {
+            schedule(alert, 0, 0);
+        }
+        if (!pending.isEmpty()) {
+            log.info("Publishing {} pending alerts", pending.size());
+        }
+    }
+
+    private static EmergencyAlertDTO toDto(EmergencyAlert alert) {
+        return EmergencyAlertDTO.builder()
+                .alertUuid(alert.getAlertUuid())
+                .title(alert.getTitle())
+                .message(alert.getMessage())
+                .instructions(alert.getInstructions())
+                .alertLevel(alert.getAlertLevel())
+                .alertType(alert.getAlertType())
+                .issuedById(alert.getIssuedById())
+                .issuedByName(alert.getIssuedByName())
+                .issuedAt(alert.getIssuedAt())
+                .expiresAt(alert.getExpiresAt())
+                .active(alert.isActive())
+                .requiresAcknowledgment(alert.isRequiresAcknowledgment())
+                .playSound(alert.isPlaySound())
+                .campusWide(alert.isCampusWide())
+                .soundFile(alert.getSoundFile())
+                .repeatCount(alert.getRepeatCount())
+                .build();
+    }
+
+    // ===================== Delivery Tracking =====================
+
+    private void track(EmergencyAlert alert) {
+        deliveries.computeIfAbsent(alert.getAlertUuid(), uuid -> new Delivery(alert.getServerId(),
+                alert.getIssuedAt() != null ? alert.getIssuedAt() : LocalDateTime.now(),
+                alert.isRequiresAcknowledgment()));
+    }
+
+    /**
+     * Apply fan-out counts from the server, from a poll or an ALERT/DELIVERY frame.
+     */
+    public void recordDelivery(AlertDeliveryDTO update) {
+        if (update.getAlertUuid() == null) return;
+        Delivery delivery = deliveries.get(update.getAlertUuid());
+        if (delivery == null) return;
+
+        synchronized (delivery) {
+            delivery.recipients = update.getRecipientCount();
+            delivery.delivered = Math.max(delivery.delivered, update.getDeliveredCount());
+            delivery.acknowledged = Math.max(delivery.acknowledged, update.getAcknowledgedCount());
+            if (delivery.timeTo95AckMs < 0 && delivery.recipients > 0
+                    && delivery.acknowledged >= Math.ceil(delivery.recipients * ACK_TARGET)) {
+                delivery.timeTo95AckMs = Duration.between(delivery.issuedAt, LocalDateTime.now()).toMillis();
+                timeTo95Acknowledged.record(delivery.timeTo95AckMs);
+                log.info("Alert {} reached 95% acknowledged ({}/{}) after {} ms", update.getAlertUuid(),
+                        delivery.acknowledged, delivery.recipients, delivery.timeTo95AckMs);
+            }
+        }
+    }
+
+    /**
+     * Poll counts for recent alerts that still await acknowledgments.
+     */
+    @Scheduled(fixedDelayString = "${heronix.alerts.delivery-poll-seconds:10}", timeUnit = TimeUnit.SECONDS)
+    public void pollDelivery() {
+        if (deliveries.isEmpty() || !sessionManager.isConnected()) return;
+        LocalDateTime cutoff = LocalDateTime.now().minusHours(24);
+        deliveries.forEach((uuid, delivery) -> {
+            if (!delivery.requiresAck || delivery.timeTo95AckMs >= 0 || delivery.issuedAt.isBefore(cutoff)) return;
+            serverClient.getAlertDelivery(delivery.serverId).ifPresent(dto -> {
+                dto.setAlertUuid(uuid);
+                recordDelivery(dto);
+            });
+        });
+        deliveries.values().removeIf(d -> d.issuedAt.isBefore(cutoff));
+    }
+
+    // ===================== Metrics =====================
+
+    public DeliveryStatus getDeliveryStatus(String alertUuid) {
+        Delivery delivery = deliveries.get(alertUuid);
+        if (delivery == null) return null;
+        synchronized (delivery) {
+            return new DeliveryStatus(alertUuid, delivery.recipients, delivery.delivered, delivery.acknowledged,
+                    delivery.timeTo95AckMs >= 0 ? delivery.timeTo95AckMs : null);
+        }
+    }
+
+    /**
+     * Milliseconds from issuing an alert until 95% of its recipients acknowledged it.
+     */
+    public LatencyHistogram getTimeTo95Acknowledged() {
+        return timeTo95Acknowledged;
+    }
+
+    public OutboxStats getStats() {
+        return new OutboxStats(inFlight.size(), published.get(), publishRetries.get(), publishFailures.get(),
+                timeTo95Acknowledged.snapshot());
+    }
+
+    private static final class Delivery {
+        final Long serverId;
+        final LocalDateTime issuedAt;
+        final boolean requiresAck;
+        int recipients;
+        int delivered;
+        int acknowledged;
+        long timeTo95AckMs = -1;
+
+        Delivery(Long serverId, LocalDateTime issuedAt, boolean requiresAck) {
+            this.serverId = serverId;
+            this.issuedAt = issuedAt;
+            this.requiresAck = requiresAck;
+        }
+    }
+
+    public record DeliveryStatus(String alertUuid, int recipients, int delivered, int acknowledged,
+                                 Long timeTo95AcknowledgedMs) {}
+
+    public record OutboxStats(int inFlight, long published, long retries, long failures,
+                              LatencyHistogram.Snapshot timeTo95Acknowledged) {}
+}
@@ -1,30 +1,53 @@
 package com.heronix.talkmodule.service;
 
+import com.heronix.talkmodule.config.ExecutorRegistry;
 import com.heronix.talkmodule.model.domain.EmergencyAlert;
+import com.heronix.talkmodule.model.dto.AlertStateChangeDTO;
 import com.heronix.talkmodule.model.dto.EmergencyAlertDTO;
 import com.heronix.talkmodule.model.enums.AlertLevel;
 import com.heronix.talkmodule.model.enums.AlertType;
 import com.heronix.talkmodule.model.enums.SyncStatus;
+import com.heronix.talkmodule.network.TalkServerClient;
 import com.heronix.talkmodule.repository.EmergencyAlertRepository;
+import com.heronix.talkmodule.util.LatencyHistogram;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import javafx.application.Platform;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
-import javafx.scene.media.AudioClip;
 import lombok.Getter;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Consumer;
+import java.util.function.Function;
 
 /**
  * Service for managing emergency alerts.
  * Handles creation, display, and acknowledgment of alerts.
+ *
+ * Alerts arriving over the WebSocket are shown and sounded before anything
+ * touches H2; persistence follows on a dedicated writer thread, with retries.
  */
 @Service
 @RequiredArgsConstructor
@@ -33,19 +56,72 @@ public class AlertService {
 
     private final EmergencyAlertRepository alertRepository;
     private final SessionManager sessionManager;
+    private final PlatformTransactionManager transactionManager;
+    private final AlertAudioEngine audioEngine;
+    private final TalkServerClient serverClient;
+    private final AlertOutbox alertOutbox;
+    private final ActiveAlertRegistry activeAlertRegistry;
+    private final ExecutorRegistry executors;
+
+    private static final int MAX_PERSIST_ATTEMPTS = 3;
 
     @Getter
     private final ObservableList<EmergencyAlert> activeAlerts = FXCollections.observableArrayList();
 
     private Consumer<EmergencyAlert> alertReceivedCallback;
 
+    // Alerts already on screen this session; guards against server re-sends
+    private final Set<String> displayedAlertUuids = ConcurrentHashMap.newKeySet();
+
+    // Frame received -> banner shown, in milliseconds
+    private final LatencyHistogram alertLatency = new LatencyHistogram();
+    private final AtomicLong alertsPersisted = new AtomicLong();
+    private final AtomicLong persistFailures = new AtomicLong();
+
+    // Single thread keeps alert writes in arrival order
+    private ExecutorService persistExecutor;
+
+    @PostConstruct
+    public void initialize() {
+        persistExecutor = executors.bounded("alert-persist", 1, Integer.MAX_VALUE);
+        activeAlertRegistry.setExpiryListener(alert -> {
+            audioEngine.stop(alert.getAlertUuid());
+            Platform.runLater(() -> activeAlerts.removeIf(a -> a.getAlertUuid().equals(alert.getAlertUuid())));
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        // Let queued alert writes finish so nothing displayed is lost
+        persistExecutor.shutdown();
+        try {
+            if (!persistExecutor.awaitTermination(5, TimeUnit.SECONDS)) {
+                log.warn("Alert persistence did not finish before shutdown");
+                persistExecutor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            persistExecutor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
     public void setAlertReceivedCallback(Consumer<EmergencyAlert> callback) {
         this.alertReceivedCallback = callback;
     }
 
+    /**
+     * Publish the active alerts to the UI. H2 is only queried until the first
+     * load completes; the rows are merged into the registry, so alerts received
+     * meanwhile keep their state. Afterwards the registry is authoritative.
+     */
     @Transactional
     public void loadActiveAlerts() {
-        List<EmergencyAlert> alerts = alertRepository.findActiveAlerts(LocalDateTime.now());
+        if (!activeAlertRegistry.isLoaded()) {
+            List<EmergencyAlert> stored = alertRepository.findActiveAlerts(LocalDateTime.now());
+            stored.forEach(a -> displayedAlertUuids.add(a.getAlertUuid()));
+            activeAlertRegistry.load(stored);
+        }
+        List<EmergencyAlert> alerts = activeAlertRegistry.snapshot();
         Platform.runLater(() -> {
             activeAlerts.clear();
             activeAlerts.addAll(alerts);
@@ -83,13 +159,16 @@ public class AlertService {
         }
 
         alertRepository.save(alert);
+        displayedAlertUuids.add(alert.getAlertUuid());
+        activeAlertRegistry.add(alert);
+        alertOutbox.submit(alert);
         Platform.runLater(() -> activeAlerts.add(0, alert));
 
         log.info("Created {} alert: {}", level, title);
 
         // Play alert sound if enabled
         if (playSound) {
-            playAlertSound(level);
+            audioEngine.play(alert);
         }
 
         return alert;
@@ -112,101 +191,235 @@ public class AlertService {
         return createAlert(title, message, null, AlertLevel.NORMAL, AlertType.ANNOUNCEMENT, false, false);
     }
 
-    @Transactional
     public void acknowledgeAlert(Long alertId) {
-        alertRepository.findById(alertId).ifPresent(alert -> {
-            alert.acknowledge();
-            alertRepository.save(alert);
-            log.info("Alert acknowledged: {}", alert.getTitle());
-        });
+        alertRepository.findById(alertId).ifPresent(alert -> acknowledgeAlerts(List.of(alert.getAlertUuid())));
     }
 
-    @Transactional
     public void cancelAlert(Long alertId) {
-        alertRepository.findById(alertId).ifPresent(alert -> {
-            alert.cancel();
-            alertRepository.save(alert);
-            Platform.runLater(() -> activeAlerts.remove(alert));
-            log.info("Alert cancelled: {}", alert.getTitle());
-        });
+        alertRepository.findById(alertId).ifPresent(alert -> cancelAlerts(List.of(alert.getAlertUuid())));
     }
 
-    @Transactional
     public void issueAllClear() {
-        // Cancel all active emergency alerts
-        List<EmergencyAlert> emergencies = alertRepository.findActiveEmergencyAlerts(LocalDateTime.now());
-        for (EmergencyAlert alert : emergencies) {
-            alert.cancel();
-            alertRepository.save(alert);
-        }
+        // Cancel all active emergency alerts, including any not yet persisted
+        Set<String> emergencies = new LinkedHashSet<>(alertRepository.findActiveEmergencyUuids(LocalDateTime.now()));
+        activeAlertRegistry.snapshot().stream()
+                .filter(a -> a.getAlertLevel() == AlertLevel.EMERGENCY || a.getAlertLevel() == AlertLevel.URGENT)
+                .forEach(a -> emergencies.add(a.getAlertUuid()));
+        cancelAlerts(emergencies);
 
         // Create all-clear alert
         createAlert("ALL CLEAR", "The emergency has ended. Normal operations may resume.",
                 "Please return to your normal activities.",
                 AlertLevel.HIGH, AlertType.ALL_CLEAR, false, true);
 
+        log.info("All clear issued");
+    }
+
+    /**
+     * Acknowledge every alert still waiting for acknowledgment, e.g. after a drill.
+     */
+    public CompletableFuture<Integer> acknowledgeAllPending() {
+        return acknowledgeAlerts(alertRepository.findUnacknowledgedUuids());
+    }
+
+    // ===================== Bulk State Changes =====================
+    // Updates run on the alert writer thread, after any alert writes already
+    // queued there, so an alert shown but not yet stored is still updated.
+
+    /**
+     * Cancel many alerts: one UPDATE, one UI change, one sync request.
+     * Completes with the number of rows updated.
+     */
+    public CompletableFuture<Integer> cancelAlerts(Collection<String> alertUuids) {
+        if (alertUuids.isEmpty()) return CompletableFuture.completedFuture(0);
+        Set<String> uuids = new HashSet<>(alertUuids);
+        LocalDateTime now = LocalDateTime.now();
+
+        uuids.forEach(uuid -> {
+            audioEngine.stop(uuid);
+            activeAlertRegistry.remove(uuid);
+        });
+        Platform.runLater(() -> activeAlerts.removeIf(a -> uuids.contains(a.getAlertUuid())));
+
+        return updateStates(AlertStateChangeDTO.ACTION_CANCEL, uuids, now,
+                status -> alertRepository.cancelByUuids(uuids, now, status));
+    }
+
+    /**
+     * Acknowledge many alerts: one UPDATE, one UI change, one sync request.
+     * Completes with the number of rows updated.
+     */
+    public CompletableFuture<Integer> acknowledgeAlerts(Collection<String> alertUuids) {
+        if (alertUuids.isEmpty()) return CompletableFuture.completedFuture(0);
+        Set<String> uuids = new HashSet<>(alertUuids);
+        LocalDateTime now = LocalDateTime.now();
+
+        uuids.forEach(audioEngine::stop);
+        activeAlertRegistry.acknowledge(uuids, now);
         Platform.runLater(() -> {
-            activeAlerts.removeIf(a -> a.getAlertLevel() == AlertLevel.EMERGENCY
-                    || a.getAlertLevel() == AlertLevel.URGENT);
+            List<EmergencyAlert> updated = new ArrayList<>(activeAlerts);
+            for (EmergencyAlert alert : updated) {
+                if (uuids.contains(alert.getAlertUuid()) && !alert.isAcknowledged()) {
+                    alert.setAcknowledged(true);
+                    alert.setAcknowledgedAt(now);
+                }
+            }
+            // One replacement change so list cells re-render
+            activeAlerts.setAll(updated);
         });
 
-        log.info("All clear issued");
+        return updateStates(AlertStateChangeDTO.ACTION_ACKNOWLEDGE, uuids, now,
+                status -> alertRepository.acknowledgeByUuids(uuids, now, status));
     }
 
-    public void receiveAlert(EmergencyAlertDTO dto) {
-        // Handle incoming alert from WebSocket
-        if (alertRepository.findByAlertUuid(dto.getAlertUuid()).isEmpty()) {
-            EmergencyAlert alert = EmergencyAlert.builder()
-                    .serverId(dto.getId())
-                    .alertUuid(dto.getAlertUuid())
-                    .title(dto.getTitle())
-                    .message(dto.getMessage())
-                    .instructions(dto.getInstructions())
-                    .alertLevel(dto.getAlertLevel())
-                    .alertType(dto.getAlertType())
-                    .issuedById(dto.getIssuedById())
-                    .issuedByName(dto.getIssuedByName())
-                    .issuedAt(dto.getIssuedAt())
-                    .expiresAt(dto.getExpiresAt())
-                    .requiresAcknowledgment(dto.isRequiresAcknowledgment())
-                    .playSound(dto.isPlaySound())
-                    .campusWide(dto.isCampusWide())
-                    .syncStatus(SyncStatus.SYNCED)
-                    .build();
-
-            alertRepository.save(alert);
-            Platform.runLater(() -> activeAlerts.add(0, alert));
-
-            // Play sound
-            if (alert.isPlaySound()) {
-                playAlertSound(alert.getAlertLevel());
+    private CompletableFuture<Integer> updateStates(String action, Set<String> uuids, LocalDateTime now,
+                                                    Function<SyncStatus, Integer> update) {
+        SyncStatus status = pendingOrLocal();
+        return CompletableFuture.supplyAsync(() -> new TransactionTemplate(transactionManager)
+                        .execute(tx -> update.apply(status)), persistExecutor)
+                .whenComplete((updated, e) -> {
+                    if (e != null) {
+                        log.error("Alert {} for {} alerts not stored", action, uuids.size(), e);
+                        return;
+                    }
+                    log.info("Alert {} applied to {} alerts", action, updated);
+                    syncStateChange(action, uuids, now);
+                })
+                .thenApply(updated -> updated != null ? updated : 0);
+    }
+
+    private SyncStatus pendingOrLocal() {
+        return sessionManager.isConnected() ? SyncStatus.PENDING : SyncStatus.LOCAL_ONLY;
+    }
+
+    private void syncStateChange(String action, Set<String> uuids, LocalDateTime changedAt) {
+        if (!sessionManager.isConnected()) return;
+        AlertStateChangeDTO change = AlertStateChangeDTO.builder()
+                .action(action)
+                .alertUuids(List.copyOf(uuids))
+                .changedAt(changedAt)
+                .build();
+        CompletableFuture.runAsync(() -> {
+            if (serverClient.syncAlertStates(change)) {
+                new TransactionTemplate(transactionManager).executeWithoutResult(tx ->
+                        alertRepository.updateSyncStatus(uuids, SyncStatus.SYNCED, LocalDateTime.now()));
+            } else {
+                log.warn("Alert {} for {} alerts not synced; left pending", action, uuids.size());
             }
+        }, executors.io("alerts"));
+    }
 
-            // Notify callback
-            if (alertReceivedCallback != null) {
-                Platform.runLater(() -> alertReceivedCallback.accept(alert));
+    // ===================== Incoming Alerts =====================
+
+    public CompletableFuture<EmergencyAlert> receiveAlert(EmergencyAlertDTO dto) {
+        return receiveAlert(dto, System.nanoTime());
+    }
+
+    /**
+     * Show an incoming alert right away, then persist it in the background.
+     * Safe to call from any thread. The returned future completes once the row
+     * is committed (with the stored row if it already existed), or with null
+     * for an alert that was already displayed.
+     */
+    public CompletableFuture<EmergencyAlert> receiveAlert(EmergencyAlertDTO dto, long receivedNanos) {
+        String alertUuid = dto.getAlertUuid();
+        if (alertUuid != null) {
+            if (!displayedAlertUuids.add(alertUuid)) {
+                return CompletableFuture.completedFuture(null);
+            }
+        } else {
+            // Never drop an alert for a missing UUID; derive a stable one from the server id when there is one
+            alertUuid = dto.getId() != null
+                    ? UUID.nameUUIDFromBytes(("alert-" + dto.getId()).getBytes(StandardCharsets.UTF_8)).toString()
+                    : UUID.randomUUID().toString();
+            if (dto.getId() != null && !displayedAlertUuids.add(alertUuid)) {
+                return CompletableFuture.completedFuture(null);
             }
+            log.warn("Alert {} arrived without a UUID; assigned {}", dto.getId(), alertUuid);
+        }
+
+        EmergencyAlert alert = EmergencyAlert.builder()
+                .serverId(dto.getId())
+                .alertUuid(alertUuid)
+                .title(dto.getTitle())
+                .message(dto.getMessage())
+                .instructions(dto.getInstructions())
+                .alertLevel(dto.getAlertLevel())
+                .alertType(dto.getAlertType())
+                .issuedById(dto.getIssuedById())
+                .issuedByName(dto.getIssuedByName())
+                .issuedAt(dto.getIssuedAt())
+                .expiresAt(dto.getExpiresAt())
+                .requiresAcknowledgment(dto.isRequiresAcknowledgment())
+                .playSound(dto.isPlaySound())
+                .campusWide(dto.isCampusWide())
+                .soundFile(dto.getSoundFile())
+                .syncStatus(SyncStatus.SYNCED)
+                .build();
+        if (dto.getRepeatCount() != null) {
+            alert.setRepeatCount(dto.getRepeatCount());
+        }
+
+        activeAlertRegistry.add(alert);
+
+        // Sound and banner first; neither waits on the database
+        if (alert.isPlaySound()) {
+            audioEngine.play(alert);
         }
+        Platform.runLater(() -> {
+            activeAlerts.add(0, alert);
+            if (alertReceivedCallback != null) {
+                alertReceivedCallback.accept(alert);
+            }
+            long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - receivedNanos);
+            alertLatency.record(millis);
+            log.info("Alert {} on screen {} ms after receipt", alert.getAlertUuid(), millis);
+        });
+
+        return CompletableFuture.supplyAsync(() -> persist(alert), persistExecutor)
+                .whenComplete((saved, e) -> {
+                    if (e != null) {
+                        persistFailures.incrementAndGet();
+                        log.error("Alert {} shown but not persisted", alert.getAlertUuid(), e);
+                    } else {
+                        alertsPersisted.incrementAndGet();
+                        log.debug("Alert {} persisted as {}", alert.getAlertUuid(), saved.getLocalId());
+                    }
+                });
     }
 
-    private void playAlertSound(AlertLevel level) {
-        try {
-            String soundFile = switch (level) {
-                case EMERGENCY -> "/sounds/emergency.wav";
-                case URGENT -> "/sounds/urgent.wav";
-                default -> "/sounds/notification.wav";
-            };
-
-            var resource = getClass().getResource(soundFile);
-            if (resource != null) {
-                AudioClip clip = new AudioClip(resource.toExternalForm());
-                clip.play();
+    private EmergencyAlert persist(EmergencyAlert alert) {
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return tx.execute(status -> alertRepository.findByAlertUuid(alert.getAlertUuid())
+                        .orElseGet(() -> alertRepository.save(alert)));
+            } catch (RuntimeException e) {
+                if (attempt >= MAX_PERSIST_ATTEMPTS) throw e;
+                log.warn("Persisting alert {} failed (attempt {}): {}", alert.getAlertUuid(), attempt, e.getMessage());
+                try {
+                    Thread.sleep(200L * attempt);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    throw e;
+                }
             }
-        } catch (Exception e) {
-            log.debug("Could not play alert sound: {}", e.getMessage());
         }
     }
 
+    /**
+     * Milliseconds from an ALERT frame arriving to its banner being shown.
+     */
+    public LatencyHistogram getAlertLatency() {
+        return alertLatency;
+    }
+
+    public AlertIngestStats getIngestStats() {
+        return new AlertIngestStats(alertLatency.snapshot(), alertsPersisted.get(), persistFailures.get());
+    }
+
+    public record AlertIngestStats(LatencyHistogram.Snapshot displayLatency, long persisted, long persistFailures) {}
+
     private String getDefaultInstructions(AlertType type) {
         return switch (type) {
             case LOCKDOWN -> "Remain in your current location. Lock doors. Stay away from windows. Await further instructions.";
@@ -224,11 +437,15 @@ public class AlertService {
     }
 
     public long getActiveAlertCount() {
-        return alertRepository.countActiveAlerts(LocalDateTime.now());
+        return activeAlertRegistry.count();
     }
 
     public long getActiveEmergencyCount() {
-        return alertRepository.countActiveEmergencies();
+        return activeAlertRegistry.count(AlertLevel.EMERGENCY);
+    }
+
+    public Map<AlertLevel, Integer> getActiveAlertCountsByLevel() {
+        return activeAlertRegistry.countsByLevel();
     }
 
     public List<EmergencyAlert> getAlertHistory() {
@@ -0,0 +1,301 @@
+package com.heronix.talkmodule.service;
+
+import com.heronix.talkmodule.config.ExecutorRegistry;
+import com.heronix.talkmodule.model.dto.AttachmentUploadDTO;
+import com.heronix.talkmodule.network.TalkServerClient;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.http.HttpResponse;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.function.Consumer;
+
+/**
+ * Uploads, downloads and caches message attachments.
+ *
+ * Files move in fixed-size chunks straight between the network and the
+ * {@link BlobStore}, so a large PDF is never held in memory. Interrupted
+ * transfers resume: uploads from the byte count the server reports, downloads
+ * from the length of the local partial file. At most
+ * {@code heronix.attachments.max-concurrent-transfers} run at once.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class AttachmentService {
+
+    private static final int MAX_RETRIES = 3;
+    // SHA-256 of the whole attachment, when the server supplies it
+    private static final String CONTENT_HASH_HEADER = "X-Content-SHA256";
+
+    private final TalkServerClient serverClient;
+    private final BlobStore blobStore;
+    private final ExecutorRegistry executors;
+
+    @Value("${heronix.attachments.chunk-size-kb:1024}")
+    private int chunkSizeKb;
+
+    @Value("${heronix.attachments.max-concurrent-transfers:3}")
+    private int maxConcurrentTransfers;
+
+    private ExecutorService transferExecutor;
+
+    private final Map<String, CompletableFuture<Path>> downloadsInFlight = new ConcurrentHashMap<>();
+    private final List<Consumer<TransferProgress>> progressListeners = new CopyOnWriteArrayList<>();
+
+    @PostConstruct
+    public void initialize() {
+        transferExecutor = executors.bounded("attachment", Math.max(1, maxConcurrentTransfers), Integer.MAX_VALUE);
+    }
+
+    // ===================== Progress =====================
+
+    /**
+     * Listeners are called on transfer threads; UI code must hop to the FX thread.
+     */
+    public void addProgressListener(Consumer<TransferProgress> listener) {
+        progressListeners.add(listener);
+    }
+
+    public void removeProgressListener(Consumer<TransferProgress> listener) {
+        progressListeners.remove(listener);
+    }
+
+    private void publish(TransferProgress progress) {
+        for (Consumer<TransferProgress> listener : progressListeners) {
+            try {
+                listener.accept(progress);
+            } catch (Exception e) {
+                log.error("Error in transfer progress listener", e);
+            }
+        }
+    }
+
+    // ===================== Upload =====================
+
+    /**
+     * Upload a local file and return the server session, whose
+     * {@code attachmentPath} goes into the outgoing message.
+     */
+    public CompletableFuture<AttachmentUploadDTO> upload(Path file, String contentType) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return doUpload(file, contentType);
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            }
+        }, transferExecutor);
+    }
+
+    private AttachmentUploadDTO doUpload(Path file, String contentType) throws IOException {
+        String fileName = file.getFileName().toString();
+        BlobStore.BlobRef blob = blobStore.importFile(file);
+        long size = blob.size();
+
+        AttachmentUploadDTO session = serverClient.startUpload(AttachmentUploadDTO.builder()
+                        .fileName(fileName)
+                        .contentType(contentType)
+                        .sha256(blob.hash())
+                        .totalBytes(size)
+                        .build())
+                .orElseThrow(() -> new IOException("Server rejected upload of " + fileName));
+
+        String uploadId = session.getUploadId();
+        long offset = Math.max(0, session.getReceivedBytes());
+        publish(new TransferProgress(blob.hash(), Direction.UPLOAD, fileName, offset, size, State.STARTED));
+
+        if (!session.isComplete()) {
+            long chunkSize = chunkSizeBytes();
+            int failures = 0;
+
+            try (FileChannel channel = FileChannel.open(blob.path(), StandardOpenOption.READ)) {
+                while (offset < size) {
+                    long length = Math.min(chunkSize, size - offset);
+                    MappedByteBuffer chunk = channel.map(FileChannel.MapMode.READ_ONLY, offset, length);
+
+                    if (serverClient.uploadChunk(uploadId, offset, chunk)) {
+                        offset += length;
+                        failures = 0;
+                        publish(new TransferProgress(blob.hash(), Direction.UPLOAD, fileName, offset, size, State.IN_PROGRESS));
+                        continue;
+                    }
+
+                    if (++failures > MAX_RETRIES) {
+                        publish(new TransferProgress(blob.hash(), Direction.UPLOAD, fileName, offset, size, State.FAILED));
+                        throw new IOException("Upload of " + fileName + " failed at byte " + offset);
+                    }
+                    // Re-sync with what the server actually has before retrying
+                    long resumeAt = offset;
+                    offset = serverClient.getUpload(uploadId).map(AttachmentUploadDTO::getReceivedBytes).orElse(resumeAt);
+                    backoff(failures);
+                }
+            }
+
+            session = serverClient.completeUpload(uploadId)
+                    .orElseThrow(() -> new IOException("Server did not confirm upload of " + fileName));
+        }
+
+        blobStore.recordRemotePath(session.getAttachmentPath(), blob.hash());
+        publish(new TransferProgress(blob.hash(), Direction.UPLOAD, fileName, size, size, State.COMPLETED));
+        log.info("Uploaded {} ({} bytes) as {}", fileName, size, session.getAttachmentPath());
+        return session;
+    }
+
+    // ===================== Download =====================
+
+    /**
+     * Local file for an attachment if it is already in the blob store.
+     */
+    public Optional<Path> getCachedFile(String attachmentPath) {
+        return blobStore.findByRemotePath(attachmentPath).map(BlobStore.BlobRef::path);
+    }
+
+    /**
+     * Resolve an attachment to a local file, downloading it at most once.
+     * Concurrent requests for the same attachment share one transfer.
+     */
+    public CompletableFuture<Path> download(String attachmentPath, String fileName, long expectedSize) {
+        Optional<Path> cached = getCachedFile(attachmentPath);
+        if (cached.isPresent()) {
+            return CompletableFuture.completedFuture(cached.get());
+        }
+
+        CompletableFuture<Path> created = new CompletableFuture<>();
+        CompletableFuture<Path> existing = downloadsInFlight.putIfAbsent(attachmentPath, created);
+        if (existing != null) {
+            return existing;
+        }
+
+        transferExecutor.execute(() -> {
+            try {
+                created.complete(doDownload(attachmentPath, fileName, expectedSize));
+            } catch (Exception e) {
+                publish(new TransferProgress(attachmentPath, Direction.DOWNLOAD, fileName, 0, expectedSize, State.FAILED));
+                created.completeExceptionally(e);
+            } finally {
+                downloadsInFlight.remove(attachmentPath, created);
+            }
+        });
+        return created;
+    }
+
+    private Path doDownload(String attachmentPath, String fileName, long expectedSize) throws IOException {
+        Path part = blobStore.partialFile(attachmentPath);
+        publish(new TransferProgress(attachmentPath, Direction.DOWNLOAD, fileName, 0, expectedSize, State.STARTED));
+
+        BlobStore.BlobRef blob = null;
+        IOException lastError = null;
+        for (int attempt = 0; attempt <= MAX_RETRIES; attempt++) {
+            try {
+                String expectedHash = transferToPartial(attachmentPath, fileName, expectedSize, part);
+                // A mismatch deletes the partial file, so the next attempt starts over
+                blob = blobStore.commitVerified(part, expectedSize > 0 ? expectedSize : -1, expectedHash);
+                lastError = null;
+                break;
+            } catch (IOException e) {
+                lastError = e;
+                log.debug("Download {} interrupted (attempt {}): {}", attachmentPath, attempt + 1, e.getMessage());
+                backoff(attempt + 1);
+            }
+        }
+        if (lastError != null) {
+            throw lastError;
+        }
+
+        blobStore.recordRemotePath(attachmentPath, blob.hash());
+        publish(new TransferProgress(attachmentPath, Direction.DOWNLOAD, fileName, blob.size(), blob.size(), State.COMPLETED));
+        log.info("Downloaded {} ({} bytes)", fileName, blob.size());
+        return blob.path();
+    }
+
+    /**
+     * Append the remaining bytes of the attachment to its partial file and
+     * return the server's SHA-256 of the whole file, or {@code null} if it sent none.
+     */
+    private String transferToPartial(String attachmentPath, String fileName, long expectedSize, Path part) throws IOException {
+        long offset = Files.exists(part) ? Files.size(part) : 0;
+
+        HttpResponse<InputStream> response = serverClient.openDownload(attachmentPath, offset)
+                .orElseThrow(() -> new IOException("Server refused download of " + attachmentPath));
+        if (response.statusCode() == 416) {
+            response.body().close();
+            if (expectedSize > 0 && offset == expectedSize) {
+                // The previous attempt wrote every byte but was cut off before committing
+                return null;
+            }
+            Files.deleteIfExists(part);
+            return transferToPartial(attachmentPath, fileName, expectedSize, part);
+        }
+        if (response.statusCode() != 206) {
+            offset = 0;
+        }
+        String expectedHash = response.headers().firstValue(CONTENT_HASH_HEADER).orElse(null);
+
+        long remaining = response.headers().firstValueAsLong("Content-Length").orElse(-1L);
+        long total = expectedSize > 0 ? expectedSize : (remaining >= 0 ? offset + remaining : -1L);
+        long chunkSize = chunkSizeBytes();
+
+        try (InputStream body = response.body();
+             ReadableByteChannel source = Channels.newChannel(body);
+             FileChannel target = FileChannel.open(part, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            target.truncate(offset);
+
+            long position = offset;
+            long transferred;
+            while ((transferred = target.transferFrom(source, position, chunkSize)) > 0) {
+                position += transferred;
+                publish(new TransferProgress(attachmentPath, Direction.DOWNLOAD, fileName, position, total, State.IN_PROGRESS));
+            }
+            target.force(false);
+        }
+        return expectedHash;
+    }
+
+    private long chunkSizeBytes() {
+        return Math.max(64, chunkSizeKb) * 1024L;
+    }
+
+    private void backoff(int attempt) {
+        try {
+            Thread.sleep(Math.min(8000L, 500L << Math.min(attempt, 4)));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // ===================== Types =====================
+
+    public enum Direction { UPLOAD, DOWNLOAD }
+
+    public enum State { STARTED, IN_PROGRESS, COMPLETED, FAILED }
+
+    /**
+     * Transfer progress; {@code totalBytes} is -1 when the size is unknown.
+     */
+    public record TransferProgress(String transferId, Direction direction, String fileName,
+                                   long transferredBytes, long totalBytes, State state) {
+
+        public double fraction() {
+            return totalBytes > 0 ? Math.min(1.0, (double) transferredBytes / totalBytes) : -1;
+        }
+    }
+}
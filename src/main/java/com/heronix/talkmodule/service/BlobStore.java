@@ -0,0 +1,247 @@
+package com.heronix.talkmodule.service;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.stream.Stream;
+
+/**
+ * Content-addressed file store for attachments under {@code heronix.database.data-dir/blobs}.
+ *
+ * Blobs are named by their SHA-256 and never held in memory: hashing uses
+ * memory-mapped reads and copies use {@link FileChannel#transferTo}. The store
+ * is bounded by {@code heronix.attachments.cache-max-mb}; least recently used
+ * blobs (by modification time, refreshed on every hit) are evicted first.
+ */
+@Component
+@Slf4j
+public class BlobStore {
+
+    private static final long MAP_WINDOW = 64L * 1024 * 1024;
+
+    @Value("${heronix.database.data-dir:./data}")
+    private String dataDirectory;
+
+    @Value("${heronix.attachments.cache-max-mb:1024}")
+    private long cacheMaxMb;
+
+    private Path root;
+    private Path tempDir;
+    private Path indexFile;
+
+    // Remote attachment path -> content hash
+    private final Properties index = new Properties();
+
+    @PostConstruct
+    public void initialize() {
+        root = Paths.get(dataDirectory, "blobs");
+        tempDir = root.resolve("tmp");
+        indexFile = root.resolve("index.properties");
+        try {
+            Files.createDirectories(tempDir);
+            if (Files.exists(indexFile)) {
+                try (InputStream in = Files.newInputStream(indexFile)) {
+                    index.load(in);
+                }
+            }
+            log.info("Blob store at {} ({} indexed attachments)", root.toAbsolutePath(), index.size());
+        } catch (IOException e) {
+            log.error("Failed to initialize blob store", e);
+        }
+    }
+
+    // ===================== Lookup =====================
+
+    public Optional<BlobRef> find(String hash) {
+        if (hash == null) return Optional.empty();
+        Path path = pathFor(hash);
+        if (!Files.exists(path)) return Optional.empty();
+        try {
+            Files.setLastModifiedTime(path, FileTime.fromMillis(System.currentTimeMillis()));
+            return Optional.of(new BlobRef(hash, path, Files.size(path)));
+        } catch (IOException e) {
+            return Optional.empty();
+        }
+    }
+
+    public Optional<BlobRef> findByRemotePath(String remotePath) {
+        return find(hashForRemotePath(remotePath));
+    }
+
+    public synchronized String hashForRemotePath(String remotePath) {
+        return remotePath != null ? index.getProperty(remotePath) : null;
+    }
+
+    public synchronized void recordRemotePath(String remotePath, String hash) {
+        if (remotePath == null || hash == null) return;
+        index.setProperty(remotePath, hash);
+        try (OutputStream out = Files.newOutputStream(indexFile)) {
+            index.store(out, "Remote attachment path -> blob hash");
+        } catch (IOException e) {
+            log.warn("Failed to persist blob index: {}", e.getMessage());
+        }
+    }
+
+    // ===================== Ingest =====================
+
+    /**
+     * Copy a local file into the store (zero-copy) and return its reference.
+     */
+    public BlobRef importFile(Path source) throws IOException {
+        String hash = sha256(source);
+        Optional<BlobRef> existing = find(hash);
+        if (existing.isPresent()) return existing.get();
+
+        Path temp = newTempFile(hash);
+        try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(temp, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            long size = in.size();
+            long position = 0;
+            while (position < size) {
+                position += in.transferTo(position, size - position, out);
+            }
+        }
+        return commit(temp, hash);
+    }
+
+    /**
+     * Move a fully written download into the store under its content hash, only
+     * if it has the expected size and hash; pass -1 or {@code null} for a value
+     * the server did not supply. A mismatching file is deleted, since resuming it
+     * would only extend the corruption.
+     */
+    public BlobRef commitVerified(Path completed, long expectedSize, String expectedHash) throws IOException {
+        long size = Files.size(completed);
+        if (expectedSize >= 0 && size != expectedSize) {
+            Files.deleteIfExists(completed);
+            throw new IOException("Downloaded " + size + " bytes, expected " + expectedSize);
+        }
+        String hash = sha256(completed);
+        if (expectedHash != null && !expectedHash.equalsIgnoreCase(hash)) {
+            Files.deleteIfExists(completed);
+            throw new IOException("Downloaded content hash " + hash + " does not match " + expectedHash);
+        }
+        return commit(completed, hash);
+    }
+
+    private BlobRef commit(Path temp, String hash) throws IOException {
+        Path target = pathFor(hash);
+        Files.createDirectories(target.getParent());
+        if (Files.exists(target)) {
+            Files.deleteIfExists(temp);
+        } else {
+            try {
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+        evictIfNeeded(hash);
+        return new BlobRef(hash, target, Files.size(target));
+    }
+
+    /**
+     * Stable partial-file location for a resumable download.
+     */
+    public Path partialFile(String key) {
+        return tempDir.resolve(key.replaceAll("[^A-Za-z0-9._-]", "_") + ".part");
+    }
+
+    private Path newTempFile(String hint) throws IOException {
+        return Files.createTempFile(tempDir, hint.substring(0, Math.min(8, hint.length())), ".tmp");
+    }
+
+    private Path pathFor(String hash) {
+        return root.resolve(hash.substring(0, 2)).resolve(hash);
+    }
+
+    // ===================== Hashing =====================
+
+    /**
+     * SHA-256 of a file using memory-mapped windows, so large PDFs never land on the heap.
+     */
+    public static String sha256(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            long size = channel.size();
+            for (long position = 0; position < size; position += MAP_WINDOW) {
+                MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, position,
+                        Math.min(MAP_WINDOW, size - position));
+                digest.update(window);
+            }
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (java.security.NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    // ===================== Eviction =====================
+
+    /**
+     * Delete least recently used blobs until the store fits its budget.
+     */
+    public synchronized void evictIfNeeded(String keepHash) {
+        long budget = cacheMaxMb * 1024 * 1024;
+        List<Path> blobs = new ArrayList<>();
+        long total = 0;
+
+        try (Stream<Path> files = Files.walk(root, 2)) {
+            for (Path p : (Iterable<Path>) files::iterator) {
+                if (Files.isRegularFile(p) && !p.startsWith(tempDir) && !p.equals(indexFile)) {
+                    blobs.add(p);
+                    total += Files.size(p);
+                }
+            }
+        } catch (IOException e) {
+            log.debug("Blob store scan failed: {}", e.getMessage());
+            return;
+        }
+
+        if (total <= budget) return;
+
+        blobs.sort(Comparator.comparingLong(BlobStore::lastModified));
+        for (Path blob : blobs) {
+            if (total <= budget) break;
+            if (blob.getFileName().toString().equals(keepHash)) continue;
+            try {
+                long size = Files.size(blob);
+                Files.delete(blob);
+                total -= size;
+                log.debug("Evicted blob {} ({} bytes)", blob.getFileName(), size);
+            } catch (IOException e) {
+                log.debug("Failed to evict {}: {}", blob, e.getMessage());
+            }
+        }
+    }
+
+    private static long lastModified(Path path) {
+        try {
+            return Files.getLastModifiedTime(path).toMillis();
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    public record BlobRef(String hash, Path path, long size) {}
+}
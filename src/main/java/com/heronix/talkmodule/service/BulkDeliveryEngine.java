@@ -0,0 +1,257 @@
+package com.heronix.talkmodule.service;
+
+import com.heronix.talkmodule.config.ExecutorRegistry;
+import com.heronix.talkmodule.model.dto.ParentMessageDTO;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+
+/**
+ * Fans a bulk send out over many small requests.
+ *
+ * Recipients are split into chunks that are sent concurrently, at most
+ * {@code max-concurrent} at a time and {@code chunks-per-second} started per
+ * second. A chunk that fails outright is retried on its own with backoff;
+ * chunks that succeeded are never resent. Each chunk carries an idempotency
+ * key that stays the same across its retries. Per-chunk
+ * {@link ParentMessageDTO.BulkResponse}s are merged into one result, and
+ * progress is reported after every chunk.
+ *
+ * Urgent jobs (emergency broadcasts) run in their own lane with their own
+ * rate, so they never wait behind routine announcements.
+ */
+@Component
+@Slf4j
+public class BulkDeliveryEngine {
+
+    @Value("${heronix.parent-portal.bulk.chunk-size:200}")
+    private int chunkSize;
+
+    @Value("${heronix.parent-portal.bulk.max-concurrent:4}")
+    private int maxConcurrent;
+
+    @Value("${heronix.parent-portal.bulk.chunks-per-second:5}")
+    private double chunksPerSecond;
+
+    @Value("${heronix.parent-portal.bulk.urgent-chunks-per-second:20}")
+    private double urgentChunksPerSecond;
+
+    @Value("${heronix.parent-portal.bulk.max-attempts:3}")
+    private int maxAttempts;
+
+    private final ExecutorRegistry executors;
+
+    private Lane routine;
+    private Lane urgent;
+    private ExecutorService workers;
+
+    public BulkDeliveryEngine(ExecutorRegistry executors) {
+        this.executors = executors;
+    }
+
+    @PostConstruct
+    public void start() {
+        // One job at a time per lane; chunk requests are blocking I/O and already capped by the coordinator
+        routine = new Lane(executors.bounded("bulk-coordinator", 1, Integer.MAX_VALUE), chunksPerSecond);
+        urgent = new Lane(executors.bounded("bulk-urgent", 1, Integer.MAX_VALUE), urgentChunksPerSecond);
+        workers = executors.io("bulk");
+    }
+
+    /**
+     * Deliver to every recipient using {@code sendChunk} for each slice, which
+     * receives the recipients and the chunk's idempotency key. Jobs in a lane
+     * run one at a time, in submission order; {@code urgent} jobs use a lane of
+     * their own. {@code progress} may be null and is called on a background thread.
+     */
+    public CompletableFuture<ParentMessageDTO.BulkResponse> deliver(
+            List<String> recipients,
+            BiFunction<List<String>, String, ParentMessageDTO.BulkResponse> sendChunk,
+            Consumer<BulkProgress> progress,
+            boolean urgent) {
+        Lane lane = urgent ? this.urgent : routine;
+        return CompletableFuture.supplyAsync(() -> run(lane, recipients, sendChunk, progress), lane.coordinator());
+    }
+
+    private ParentMessageDTO.BulkResponse run(Lane lane, List<String> recipients,
+                                              BiFunction<List<String>, String, ParentMessageDTO.BulkResponse> sendChunk,
+                                              Consumer<BulkProgress> progress) {
+        int size = Math.max(1, chunkSize);
+        Deque<Chunk> pending = new ArrayDeque<>();
+        for (int i = 0; i < recipients.size(); i += size) {
+            pending.add(new Chunk(List.copyOf(recipients.subList(i, Math.min(recipients.size(), i + size))),
+                    UUID.randomUUID().toString(), 1));
+        }
+        int chunksTotal = pending.size();
+        Tally tally = new Tally(recipients.size(), chunksTotal);
+        report(progress, tally);
+
+        ExecutorCompletionService<ChunkResult> completion = new ExecutorCompletionService<>(workers);
+        int inFlight = 0;
+        try {
+            while (!pending.isEmpty() || inFlight > 0) {
+                while (inFlight < Math.max(1, maxConcurrent) && !pending.isEmpty()) {
+                    Chunk chunk = pending.poll();
+                    lane.pace();
+                    completion.submit(() -> send(chunk, sendChunk));
+                    inFlight++;
+                }
+
+                ChunkResult result = completion.take().get();
+                inFlight--;
+                if (result.response() != null && result.response().isSuccess()) {
+                    tally.add(result.chunk(), result.response());
+                } else if (result.chunk().attempt() < maxAttempts) {
+                    tally.retries++;
+                    pending.add(result.chunk().retry());
+                } else {
+                    tally.fail(result.chunk(), result.response());
+                }
+                report(progress, tally);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            tally.lastError = "Interrupted";
+        } catch (ExecutionException e) {
+            tally.lastError = e.getCause() != null ? e.getCause().getMessage() : e.getMessage();
+        }
+
+        int unsent = recipients.size() - tally.sent - tally.failed;
+        int failures = tally.failed + Math.max(0, unsent);
+        log.info("Bulk delivery finished: {} of {} recipients, {} chunks, {} retries",
+                tally.sent, recipients.size(), chunksTotal, tally.retries);
+        return ParentMessageDTO.BulkResponse.builder()
+                .success(failures == 0 && !recipients.isEmpty())
+                .message(recipients.isEmpty() ? "No recipients"
+                        : failures == 0 ? "Sent to " + tally.sent + " recipients"
+                        : "Sent to " + tally.sent + " of " + recipients.size() + " recipients"
+                                + (tally.lastError != null ? ": " + tally.lastError : ""))
+                .totalRecipients(recipients.size())
+                .successCount(tally.sent)
+                .failureCount(failures)
+                .messageRefs(tally.messageRefs)
+                .build();
+    }
+
+    private ChunkResult send(Chunk chunk, BiFunction<List<String>, String, ParentMessageDTO.BulkResponse> sendChunk)
+            throws InterruptedException {
+        if (chunk.attempt() > 1) {
+            Thread.sleep(Math.min(4000L, 500L << (chunk.attempt() - 2)));
+        }
+        try {
+            return new ChunkResult(chunk, sendChunk.apply(chunk.recipients(), chunk.idempotencyKey()));
+        } catch (Exception e) {
+            log.warn("Bulk chunk of {} failed (attempt {}): {}", chunk.recipients().size(), chunk.attempt(), e.getMessage());
+            return new ChunkResult(chunk, ParentMessageDTO.BulkResponse.builder()
+                    .success(false).message(e.getMessage()).build());
+        }
+    }
+
+    /**
+     * A coordinator thread and its chunk rate.
+     */
+    private static final class Lane {
+        private final ExecutorService coordinator;
+        private final double chunksPerSecond;
+
+        // Coordinator thread only
+        private long nextStartNanos;
+
+        Lane(ExecutorService coordinator, double chunksPerSecond) {
+            this.coordinator = coordinator;
+            this.chunksPerSecond = chunksPerSecond;
+        }
+
+        ExecutorService coordinator() {
+            return coordinator;
+        }
+
+        /**
+         * Space chunk starts to stay under the lane's rate.
+         */
+        void pace() throws InterruptedException {
+            if (chunksPerSecond <= 0) return;
+            long interval = (long) (TimeUnit.SECONDS.toNanos(1) / chunksPerSecond);
+            long now = System.nanoTime();
+            long wait = nextStartNanos - now;
+            if (wait > 0) {
+                TimeUnit.NANOSECONDS.sleep(wait);
+                now = nextStartNanos;
+            }
+            nextStartNanos = now + interval;
+        }
+    }
+
+    private static void report(Consumer<BulkProgress> progress, Tally tally) {
+        if (progress == null) return;
+        try {
+            progress.accept(new BulkProgress(tally.total, tally.sent, tally.failed,
+                    tally.chunksDone, tally.chunksTotal, tally.retries));
+        } catch (Exception e) {
+            log.error("Error in bulk progress listener", e);
+        }
+    }
+
+    private record Chunk(List<String> recipients, String idempotencyKey, int attempt) {
+        Chunk retry() {
+            return new Chunk(recipients, idempotencyKey, attempt + 1);
+        }
+    }
+
+    private record ChunkResult(Chunk chunk, ParentMessageDTO.BulkResponse response) {}
+
+    private static final class Tally {
+        final int total;
+        final int chunksTotal;
+        int sent;
+        int failed;
+        int chunksDone;
+        int retries;
+        String lastError;
+        final List<String> messageRefs = new ArrayList<>();
+
+        Tally(int total, int chunksTotal) {
+            this.total = total;
+            this.chunksTotal = chunksTotal;
+        }
+
+        void add(Chunk chunk, ParentMessageDTO.BulkResponse response) {
+            chunksDone++;
+            // Servers that omit counts are taken to have accepted the whole chunk
+            boolean counted = response.getSuccessCount() > 0 || response.getFailureCount() > 0;
+            sent += counted ? response.getSuccessCount() : chunk.recipients().size();
+            failed += counted ? response.getFailureCount() : 0;
+            if (response.getMessageRefs() != null) {
+                messageRefs.addAll(response.getMessageRefs());
+            }
+        }
+
+        void fail(Chunk chunk, ParentMessageDTO.BulkResponse response) {
+            chunksDone++;
+            failed += chunk.recipients().size();
+            if (response != null && response.getMessage() != null) {
+                lastError = response.getMessage();
+            }
+        }
+    }
+
+    public record BulkProgress(int totalRecipients, int sent, int failed, int chunksDone, int chunksTotal,
+                               int retries) {
+        public double fraction() {
+            return chunksTotal == 0 ? 1.0 : (double) chunksDone / chunksTotal;
+        }
+    }
+}
@@ -0,0 +1,274 @@
+package com.heronix.talkmodule.service;
+
+import com.heronix.talkmodule.config.RetentionProperties;
+import com.heronix.talkmodule.repository.EmergencyAlertRepository;
+import com.heronix.talkmodule.repository.LocalMessageRepository;
+import com.heronix.talkmodule.repository.LocalNewsItemRepository;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.Statement;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+
+/**
+ * Prunes the local H2 cache so it does not grow without bound on shared machines.
+ *
+ * Messages are pruned per channel by age and count. Pinned, important and
+ * unsynced rows are always kept. Deletes run in small transactions so the UI
+ * never waits on a long table lock. Once anything has been pruned, the
+ * database file is compacted after the application context has closed.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class CacheRetentionService {
+
+    private final RetentionProperties properties;
+    private final LocalMessageRepository messageRepository;
+    private final LocalNewsItemRepository newsRepository;
+    private final EmergencyAlertRepository alertRepository;
+    private final PlatformTransactionManager transactionManager;
+    private final JdbcTemplate jdbcTemplate;
+
+    @Value("${spring.datasource.url:}")
+    private String datasourceUrl;
+
+    @Value("${spring.datasource.username:}")
+    private String datasourceUsername;
+
+    @Value("${spring.datasource.password:}")
+    private String datasourcePassword;
+
+    private final AtomicBoolean running = new AtomicBoolean(false);
+    private volatile boolean compactionPending = false;
+
+    @Getter
+    private volatile RetentionReport lastReport;
+
+    @Scheduled(initialDelayString = "${heronix.retention.initial-delay-minutes:5}",
+            fixedDelayString = "${heronix.retention.interval-minutes:60}",
+            timeUnit = TimeUnit.MINUTES)
+    public void runScheduledRetention() {
+        if (!properties.isEnabled()) return;
+        runRetention(false);
+    }
+
+    /**
+     * Remove every cached message that can be re-downloaded from the server.
+     * Pinned, important and unsynced messages are kept.
+     */
+    public RetentionReport clearMessageCache() {
+        return runRetention(true);
+    }
+
+    private RetentionReport runRetention(boolean purgeMessages) {
+        if (!running.compareAndSet(false, true)) {
+            log.debug("Retention pass already running, skipping");
+            return RetentionReport.alreadyRunning();
+        }
+
+        long started = System.currentTimeMillis();
+        long bytesBefore = databaseFileSize();
+
+        try {
+            int messages = pruneMessages(purgeMessages);
+            int news = purgeMessages ? 0 : pruneBatches(cutoff -> newsRepository.findPrunableIds(cutoff, firstBatch()),
+                    newsRepository::deleteByLocalIdIn, daysAgo(properties.getNewsMaxAgeDays()));
+            int alerts = purgeMessages ? 0 : pruneBatches(cutoff -> alertRepository.findPrunableIds(cutoff, firstBatch()),
+                    alertRepository::deleteByLocalIdIn, daysAgo(properties.getAlertMaxAgeDays()));
+
+            if (messages + news + alerts > 0) {
+                checkpoint();
+                compactionPending = true;
+            }
+
+            RetentionReport report = new RetentionReport(messages, news, alerts, bytesBefore, databaseFileSize(),
+                    Duration.ofMillis(System.currentTimeMillis() - started), false);
+            lastReport = report;
+
+            log.info("Retention pass: pruned {} messages, {} news items, {} alerts; {} bytes reclaimed online in {}ms",
+                    messages, news, alerts, report.bytesReclaimed(), report.duration().toMillis());
+            return report;
+
+        } catch (Exception e) {
+            log.error("Retention pass failed", e);
+            return RetentionReport.empty();
+        } finally {
+            running.set(false);
+        }
+    }
+
+    private int pruneMessages(boolean purge) {
+        int total = 0;
+        for (Long channelId : messageRepository.findDistinctChannelIds()) {
+            LocalDateTime cutoff = purge ? LocalDateTime.now() : messageCutoff(channelId);
+            if (cutoff == null) continue;
+
+            int pruned = pruneBatches(c -> messageRepository.findPrunableIds(channelId, c, firstBatch()),
+                    messageRepository::deleteByLocalIdIn, cutoff);
+            if (pruned > 0) {
+                log.debug("Pruned {} messages from channel {}", pruned, channelId);
+            }
+            total += pruned;
+        }
+        return total;
+    }
+
+    /**
+     * Everything older than the returned instant is eligible for pruning.
+     * The later of the age cutoff and the count cutoff wins.
+     */
+    private LocalDateTime messageCutoff(Long channelId) {
+        RetentionProperties.Policy policy = properties.policyFor(channelId);
+        LocalDateTime cutoff = null;
+
+        if (policy.getMaxAgeDays() != null && policy.getMaxAgeDays() > 0) {
+            cutoff = daysAgo(policy.getMaxAgeDays());
+        }
+
+        if (policy.getMaxMessages() != null && policy.getMaxMessages() > 0) {
+            // Timestamp of the first message beyond the limit, newest first
+            List<LocalDateTime> overflow = messageRepository.findTimestampsNewestFirst(
+                    channelId, PageRequest.of(policy.getMaxMessages(), 1));
+            if (!overflow.isEmpty() && overflow.get(0) != null) {
+                LocalDateTime countCutoff = overflow.get(0).plusNanos(1);
+                if (cutoff == null || countCutoff.isAfter(cutoff)) {
+                    cutoff = countCutoff;
+                }
+            }
+        }
+        return cutoff;
+    }
+
+    private int pruneBatches(Function<LocalDateTime, List<Long>> finder,
+                             Function<List<Long>, Integer> deleter,
+                             LocalDateTime cutoff) {
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        int total = 0;
+
+        while (true) {
+            List<Long> ids = finder.apply(cutoff);
+            if (ids.isEmpty()) break;
+
+            Integer deleted = tx.execute(status -> deleter.apply(ids));
+            total += deleted != null ? deleted : 0;
+
+            if (ids.size() < properties.getBatchSize()) break;
+            Thread.yield();
+        }
+        return total;
+    }
+
+    private PageRequest firstBatch() {
+        return PageRequest.of(0, Math.max(1, properties.getBatchSize()));
+    }
+
+    private LocalDateTime daysAgo(int days) {
+        return LocalDateTime.now().minusDays(Math.max(0, days));
+    }
+
+    // ===================== H2 Compaction =====================
+
+    private boolean isH2() {
+        return datasourceUrl != null && datasourceUrl.startsWith("jdbc:h2:");
+    }
+
+    /**
+     * Flush the pruned pages so the MVStore can rewrite sparse chunks in the background.
+     */
+    private void checkpoint() {
+        if (!isH2()) return;
+        try {
+            jdbcTemplate.execute("CHECKPOINT SYNC");
+        } catch (Exception e) {
+            log.debug("Checkpoint failed: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Compaction to run once the application context is closed, or a no-op if
+     * nothing needs compacting. {@code SHUTDOWN COMPACT} closes the database,
+     * so it must not run while the pool or any bean's shutdown work still
+     * needs it; the returned task opens its own connection instead.
+     */
+    public Runnable compactionAfterClose() {
+        if (!isH2() || !compactionPending || !properties.isCompactOnShutdown()) {
+            return () -> {};
+        }
+        return this::compact;
+    }
+
+    private void compact() {
+        long before = databaseFileSize();
+        try (Connection connection = DriverManager.getConnection(datasourceUrl, datasourceUsername, datasourcePassword);
+             Statement statement = connection.createStatement()) {
+            log.info("Compacting local database...");
+            statement.execute("SHUTDOWN COMPACT");
+            long after = databaseFileSize();
+            log.info("Local database compacted: {} bytes reclaimed ({} -> {})",
+                    Math.max(0, before - after), before, after);
+        } catch (Exception e) {
+            log.warn("Database compaction failed: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Size of the H2 file backing the datasource, or 0 for non-file databases.
+     */
+    public long databaseFileSize() {
+        File file = databaseFile();
+        return file != null && file.exists() ? file.length() : 0;
+    }
+
+    private File databaseFile() {
+        String prefix = "jdbc:h2:file:";
+        if (datasourceUrl == null || !datasourceUrl.startsWith(prefix)) return null;
+
+        String path = datasourceUrl.substring(prefix.length());
+        int options = path.indexOf(';');
+        if (options >= 0) {
+            path = path.substring(0, options);
+        }
+        return new File(path + ".mv.db");
+    }
+
+    /**
+     * Outcome of one retention pass; {@code skipped} when another pass was
+     * already running and nothing was done.
+     */
+    public record RetentionReport(int messagesPruned, int newsPruned, int alertsPruned,
+                                  long bytesBefore, long bytesAfter, Duration duration, boolean skipped) {
+
+        static RetentionReport empty() {
+            return new RetentionReport(0, 0, 0, 0, 0, Duration.ZERO, false);
+        }
+
+        static RetentionReport alreadyRunning() {
+            return new RetentionReport(0, 0, 0, 0, 0, Duration.ZERO, true);
+        }
+
+        public int totalPruned() {
+            return messagesPruned + newsPruned + alertsPruned;
+        }
+
+        public long bytesReclaimed() {
+            return Math.max(0, bytesBefore - bytesAfter);
+        }
+    }
+}
@@ -1,30 +1,47 @@
 package com.heronix.talkmodule.service;
 
+import com.heronix.talkmodule.config.ExecutorRegistry;
 import com.heronix.talkmodule.model.domain.LocalChannel;
 import com.heronix.talkmodule.model.domain.LocalMessage;
 import com.heronix.talkmodule.model.dto.*;
 import com.heronix.talkmodule.model.enums.ConnectionMode;
 import com.heronix.talkmodule.model.enums.MessageType;
 import com.heronix.talkmodule.model.enums.SyncStatus;
+import com.heronix.talkmodule.model.timeline.CompactTimeline;
+import com.heronix.talkmodule.model.timeline.StringPool;
+import com.heronix.talkmodule.model.timeline.TimelineList;
+import com.heronix.talkmodule.network.OutboundWriter;
 import com.heronix.talkmodule.network.TalkServerClient;
 import com.heronix.talkmodule.repository.LocalChannelRepository;
 import com.heronix.talkmodule.repository.LocalMessageRepository;
+import jakarta.annotation.PostConstruct;
 import javafx.application.Platform;
+import javafx.beans.property.BooleanProperty;
+import javafx.beans.property.SimpleBooleanProperty;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import lombok.Getter;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.context.annotation.Lazy;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
 /**
@@ -40,21 +57,50 @@ public class ChatService {
     private final LocalMessageRepository messageRepository;
     private final TalkServerClient serverClient;
     private final SessionManager sessionManager;
-
-    // Use @Lazy to break circular dependency (WebSocketService -> ChatService -> WebSocketService)
-    @Autowired
-    @Lazy
-    private WebSocketService webSocketService;
+    private final ExecutorRegistry executors;
+    private final OutboundWriter outboundWriter;
+    private final ActivityAggregator activityAggregator;
+    private final SubscriptionManager subscriptionManager;
 
     @Getter
     private final ObservableList<LocalChannel> channels = FXCollections.observableArrayList();
 
     @Getter
-    private final ObservableList<LocalMessage> currentMessages = FXCollections.observableArrayList();
+    private final TimelineList currentMessages = new TimelineList();
+
+    // True while the outbound WebSocket queue is full or spilling to the outbox
+    @Getter
+    private final BooleanProperty outboundBackpressure = new SimpleBooleanProperty(false);
 
     @Getter
     private LocalChannel selectedChannel;
 
+    @Value("${heronix.timeline.cached-channels:8}")
+    private int cachedTimelineCount;
+
+    @Value("${heronix.timeline.off-heap:false}")
+    private boolean offHeapTimelines;
+
+    // Sender/channel names shared by every cached timeline
+    private final StringPool timelineNames = new StringPool();
+
+    // Recently viewed channel timelines, LRU; only touched on the FX thread
+    private final Map<Long, CompactTimeline> timelineCache = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, CompactTimeline> eldest) {
+            return size() > Math.max(1, cachedTimelineCount);
+        }
+    };
+
+    // Highest server message id seen per channel; the resume point after a reconnect
+    private final Map<Long, Long> lastServerIds = new ConcurrentHashMap<>();
+    private volatile boolean resumePointsSeeded;
+
+    @PostConstruct
+    public void watchOutboundQueue() {
+        outboundWriter.addBackpressureListener(on -> Platform.runLater(() -> outboundBackpressure.set(on)));
+    }
+
     // ===================== Channels =====================
 
     @Transactional
@@ -80,6 +126,7 @@ public class ChatService {
 
         // Load from local cache
         List<LocalChannel> localChannels = channelRepository.findByActiveTrueOrderByLastMessageTimeDesc();
+        subscriptionManager.setChannels(localChannels.stream().map(LocalChannel::getId).toList());
         Platform.runLater(() -> {
             channels.clear();
             channels.addAll(localChannels);
@@ -91,12 +138,17 @@ public class ChatService {
     public void selectChannel(LocalChannel channel) {
         this.selectedChannel = channel;
 
-        // Subscribe to channel via WebSocket for real-time updates
-        // This is critical for DMs and private channels
-        if (sessionManager.isConnected() && webSocketService != null) {
-            webSocketService.joinChannel(channel.getId());
-            log.debug("Subscribed to channel {} for real-time updates", channel.getId());
-        }
+        // Make sure the channel is subscribed for real-time updates (critical for
+        // DMs and private channels); a no-op when it already is
+        subscriptionManager.subscribe(channel.getId());
+
+        // Show the cached timeline immediately while the refresh runs
+        Platform.runLater(() -> {
+            CompactTimeline cached = timelineCache.get(channel.getId());
+            if (cached != null && isSelected(channel.getId())) {
+                currentMessages.show(cached);
+            }
+        });
 
         loadChannelMessages(channel.getId());
     }
@@ -142,6 +194,7 @@ public class ChatService {
         if (sessionManager.isConnected()) {
             // Fetch from server
             List<MessageDTO> serverMessages = serverClient.getChannelMessages(channelId, 0, 50);
+            serverMessages.forEach(this::trackServerId);
             for (MessageDTO dto : serverMessages) {
                 LocalMessage local = convertToLocalMessage(dto);
                 if (messageRepository.findByMessageUuid(local.getMessageUuid()).isEmpty()) {
@@ -150,14 +203,46 @@ public class ChatService {
             }
         }
 
-        // Load from local cache
+        // Load from local cache into a compact timeline; the entities are dropped afterwards
         List<LocalMessage> messages = messageRepository.findByChannelIdOrderByTimestampAsc(channelId);
+        CompactTimeline timeline = new CompactTimeline(channelId, timelineNames, messages.size(),
+                offHeapTimelines, messageRepository::findById);
+        for (LocalMessage message : messages) {
+            timeline.append(message);
+        }
+
+        log.debug("Timeline for channel {}: {} messages, ~{} heap bytes estimated ({} per message, target {}), {} content bytes",
+                channelId, timeline.size(), timeline.estimatedHeapBytes(),
+                String.format("%.1f", timeline.estimatedHeapBytesPerMessage()),
+                CompactTimeline.TARGET_HEAP_BYTES_PER_MESSAGE, timeline.contentBytes());
+
         Platform.runLater(() -> {
-            currentMessages.clear();
-            currentMessages.addAll(messages);
+            timelineCache.put(channelId, timeline);
+            if (isSelected(channelId)) {
+                currentMessages.show(timeline);
+                activityAggregator.markRead(channelId, timeline.lastServerId());
+            }
         });
     }
 
+    private boolean isSelected(Long channelId) {
+        return selectedChannel != null && selectedChannel.getId().equals(channelId);
+    }
+
+    /**
+     * Append a persisted message to its channel's cached timeline, if any.
+     * Must run on the FX thread.
+     */
+    private void appendToTimeline(LocalMessage message) {
+        CompactTimeline timeline = timelineCache.get(message.getChannelId());
+        if (timeline == null) return;
+
+        int row = timeline.append(message);
+        if (currentMessages.getTimeline() == timeline) {
+            currentMessages.appended(row);
+        }
+    }
+
     @Transactional
     public Optional<LocalMessage> sendMessage(Long channelId, String content) {
         String clientId = UUID.randomUUID().toString();
@@ -174,9 +259,12 @@ public class ChatService {
                 .build();
 
         messageRepository.save(localMessage);
-        Platform.runLater(() -> currentMessages.add(localMessage));
+        Platform.runLater(() -> appendToTimeline(localMessage));
 
-        if (sessionManager.isConnected()) {
+        if (sessionManager.isConnected() && outboundWriter.isConnected()) {
+            // Durable WebSocket path; marked SYNCED when the server echoes the client id
+            outboundWriter.enqueue(WebSocketMessageDTO.chatMessage(channelId, content, clientId));
+        } else if (sessionManager.isConnected()) {
             SendMessageRequestDTO request = SendMessageRequestDTO.builder()
                     .channelId(channelId)
                     .content(content)
@@ -215,6 +303,23 @@ public class ChatService {
             exists = messageRepository.findByServerId(messageDto.getId()).isPresent();
         }
 
+        trackServerId(messageDto);
+
+        // Echo of a message sent from here: confirm the local copy instead of adding a second one
+        if (!exists && messageDto.getClientId() != null) {
+            Optional<LocalMessage> own = messageRepository.findFirstByClientId(messageDto.getClientId());
+            if (own.isPresent()) {
+                LocalMessage local = own.get();
+                if (local.getSyncStatus() != SyncStatus.SYNCED) {
+                    local.setServerId(messageDto.getId());
+                    local.setSyncStatus(SyncStatus.SYNCED);
+                    local.setLastSyncTime(LocalDateTime.now());
+                    messageRepository.save(local);
+                }
+                exists = true;
+            }
+        }
+
         if (!exists) {
             LocalMessage local = convertToLocalMessage(messageDto);
             local.setSyncStatus(SyncStatus.SYNCED);
@@ -225,8 +330,10 @@ public class ChatService {
                     messageDto.getContent() != null ?
                             messageDto.getContent().substring(0, Math.min(50, messageDto.getContent().length())) : "null");
 
-            if (selectedChannel != null && selectedChannel.getId().equals(messageDto.getChannelId())) {
-                Platform.runLater(() -> currentMessages.add(local));
+            Platform.runLater(() -> appendToTimeline(local));
+
+            if (isSelected(messageDto.getChannelId())) {
+                activityAggregator.markRead(messageDto.getChannelId(), messageDto.getId());
             } else {
                 // Update unread count for other channels
                 channelRepository.findById(messageDto.getChannelId()).ifPresent(channel -> {
@@ -242,6 +349,122 @@ public class ChatService {
         }
     }
 
+    // ===================== Session Resume =====================
+
+    /**
+     * Last server message id per active channel, for replay after a reconnect.
+     * Channels without any synced message are left out; they load normally
+     * when opened instead of replaying their whole history.
+     */
+    public Map<Long, Long> getResumePoints() {
+        if (!resumePointsSeeded) {
+            for (Object[] row : messageRepository.findLastServerIdPerChannel()) {
+                if (row[0] != null && row[1] != null) {
+                    lastServerIds.merge((Long) row[0], (Long) row[1], Math::max);
+                }
+            }
+            resumePointsSeeded = true;
+        }
+
+        Map<Long, Long> points = new LinkedHashMap<>();
+        for (LocalChannel channel : channelRepository.findByActiveTrue()) {
+            Long lastId = lastServerIds.get(channel.getId());
+            if (lastId != null) {
+                points.put(channel.getId(), lastId);
+            }
+        }
+        return points;
+    }
+
+    private void trackServerId(MessageDTO dto) {
+        if (dto.getChannelId() != null && dto.getId() != null) {
+            lastServerIds.merge(dto.getChannelId(), dto.getId(), Math::max);
+        }
+    }
+
+    /**
+     * Persist a replayed HISTORY batch: one existence query per key type, one saveAll.
+     * Messages sent from here come back with their {@code clientId}; those confirm
+     * the local copy, as in {@link #receiveMessage}, instead of adding a second one.
+     * Channels in {@code truncatedChannels} hit the replay limit and may have a gap,
+     * so their timelines are reloaded; the rest are appended to. Unread counts are
+     * left to the server's channel list, which already covers replayed messages.
+     */
+    @Transactional
+    public int ingestHistory(List<MessageDTO> history, Set<Long> truncatedChannels) {
+        if (history.isEmpty()) return 0;
+
+        Set<String> uuids = new HashSet<>();
+        Set<Long> serverIds = new HashSet<>();
+        for (MessageDTO dto : history) {
+            if (dto.getMessageUuid() != null && !dto.getMessageUuid().isEmpty()) {
+                uuids.add(dto.getMessageUuid());
+            } else if (dto.getId() != null) {
+                serverIds.add(dto.getId());
+            }
+        }
+        Set<String> knownUuids = uuids.isEmpty() ? Set.of() : new HashSet<>(messageRepository.findExistingUuids(uuids));
+        Set<Long> knownServerIds = serverIds.isEmpty() ? Set.of() : new HashSet<>(messageRepository.findExistingServerIds(serverIds));
+
+        Set<String> clientIds = history.stream().map(MessageDTO::getClientId).filter(Objects::nonNull)
+                .collect(Collectors.toSet());
+        Map<String, LocalMessage> own = new HashMap<>();
+        if (!clientIds.isEmpty()) {
+            messageRepository.findByClientIdIn(clientIds).forEach(m -> own.putIfAbsent(m.getClientId(), m));
+        }
+
+        List<LocalMessage> fresh = new ArrayList<>();
+        List<LocalMessage> confirmed = new ArrayList<>();
+        LocalDateTime now = LocalDateTime.now();
+        Set<Object> seen = new HashSet<>();
+        for (MessageDTO dto : history) {
+            trackServerId(dto);
+            boolean hasUuid = dto.getMessageUuid() != null && !dto.getMessageUuid().isEmpty();
+            Object key = hasUuid ? dto.getMessageUuid() : dto.getId();
+            if (key == null || !seen.add(key)) continue;
+
+            boolean exists = hasUuid ? knownUuids.contains(dto.getMessageUuid()) : knownServerIds.contains(dto.getId());
+            LocalMessage local = !exists && dto.getClientId() != null ? own.get(dto.getClientId()) : null;
+            if (local != null) {
+                if (local.getSyncStatus() != SyncStatus.SYNCED) {
+                    local.setServerId(dto.getId());
+                    local.setSyncStatus(SyncStatus.SYNCED);
+                    local.setLastSyncTime(now);
+                    confirmed.add(local);
+                }
+            } else if (!exists) {
+                fresh.add(convertToLocalMessage(dto));
+            }
+        }
+        if (!confirmed.isEmpty()) {
+            messageRepository.saveAll(confirmed);
+            log.info("Replay confirmed {} messages sent from this client", confirmed.size());
+        }
+        if (fresh.isEmpty()) return 0;
+
+        fresh.sort(Comparator.comparing(LocalMessage::getTimestamp, Comparator.nullsFirst(Comparator.naturalOrder())));
+        messageRepository.saveAll(fresh);
+
+        Set<Long> channelIds = fresh.stream().map(LocalMessage::getChannelId).collect(Collectors.toSet());
+        if (selectedChannel != null && channelIds.contains(selectedChannel.getId())) {
+            activityAggregator.markRead(selectedChannel.getId(), lastServerIds.get(selectedChannel.getId()));
+        }
+
+        Platform.runLater(() -> {
+            // Gap between the cache and the replay: rebuild from the database on next view
+            truncatedChannels.forEach(timelineCache::remove);
+            fresh.stream().filter(m -> !truncatedChannels.contains(m.getChannelId())).forEach(this::appendToTimeline);
+            if (selectedChannel != null && truncatedChannels.contains(selectedChannel.getId())) {
+                Long channelId = selectedChannel.getId();
+                CompletableFuture.runAsync(() -> loadChannelMessages(channelId), executors.io("chat"));
+            }
+        });
+
+        log.info("Ingested {} replayed messages across {} channels ({} truncated)", fresh.size(), channelIds.size(),
+                truncatedChannels.size());
+        return fresh.size();
+    }
+
     @Transactional
     public boolean deleteMessage(Long localId) {
         return messageRepository.findById(localId).map(message -> {
@@ -249,6 +472,17 @@ public class ChatService {
             message.setContent("[Message deleted]");
             messageRepository.save(message);
 
+            Platform.runLater(() -> {
+                CompactTimeline timeline = timelineCache.get(message.getChannelId());
+                int row = timeline != null ? timeline.indexOfLocalId(localId) : -1;
+                if (row >= 0) {
+                    timeline.markDeleted(row);
+                    if (currentMessages.getTimeline() == timeline) {
+                        currentMessages.updated(row);
+                    }
+                }
+            });
+
             if (sessionManager.isConnected() && message.getServerId() != null) {
                 serverClient.deleteMessage(message.getServerId());
             }
@@ -267,6 +501,9 @@ public class ChatService {
         int synced = 0;
 
         for (LocalMessage message : pending) {
+            // Still queued on the WebSocket outbox; it is replayed there
+            if (outboundWriter.isPending(message.getClientId())) continue;
+
             SendMessageRequestDTO request = SendMessageRequestDTO.builder()
                     .channelId(message.getChannelId())
                     .content(message.getContent())
@@ -0,0 +1,289 @@
+package com.heronix.talkmodule.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.heronix.talkmodule.config.ExecutorRegistry;
+import com.heronix.talkmodule.model.domain.ParentOutboxMessage;
+import com.heronix.talkmodule.model.dto.ParentMessageDTO;
+import com.heronix.talkmodule.model.enums.SyncStatus;
+import com.heronix.talkmodule.repository.ParentOutboxRepository;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Durable outbox for one-to-one Parent Portal requests.
+ *
+ * Each request is written to H2 with an idempotency key before it is sent,
+ * and deleted once the server accepts it. Network errors and 5xx/408/429
+ * responses are retried with capped exponential backoff, including across
+ * restarts and while offline; other 4xx responses mark the row CONFLICT.
+ * Sending runs on a small bounded pool rather than the common pool. A row is
+ * claimed before it is queued for a sender and re-read when its turn comes, so
+ * it is never sent twice at once or from a stale copy.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ParentMessageOutbox {
+
+    private final ParentOutboxRepository outboxRepository;
+    private final SessionManager sessionManager;
+    private final ObjectMapper objectMapper;
+    private final ExecutorRegistry executors;
+
+    @Value("${heronix.parent-portal.outbox.senders:2}")
+    private int senders;
+
+    @Value("${heronix.parent-portal.outbox.retry-base-seconds:5}")
+    private long retryBaseSeconds;
+
+    @Value("${heronix.parent-portal.outbox.retry-max-seconds:300}")
+    private long retryMaxSeconds;
+
+    @Value("${heronix.parent-portal.outbox.max-attempts:12}")
+    private int maxAttempts;
+
+    private static final int QUEUE_CAPACITY = 256;
+    private static final int DRAIN_BATCH = 50;
+
+    private ExecutorService sender;
+    private volatile Transport transport;
+
+    // Ids claimed for sending, from the moment they are queued until the attempt ends
+    private final Set<Long> inFlight = ConcurrentHashMap.newKeySet();
+    private final AtomicLong sent = new AtomicLong();
+    private final AtomicLong retries = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+
+    /**
+     * Posts one stored request. Returns the HTTP status, or -1 if it never got
+     * a response; {@code response} is only set for a 200.
+     */
+    @FunctionalInterface
+    public interface Transport {
+        Attempt post(String path, String payloadJson, String idempotencyKey);
+    }
+
+    public record Attempt(int status, ParentMessageDTO.Response response) {}
+
+    @PostConstruct
+    public void start() {
+        sender = executors.bounded("parent-outbox", senders, QUEUE_CAPACITY);
+    }
+
+    public void setTransport(Transport transport) {
+        this.transport = transport;
+    }
+
+    // ===================== Enqueue =====================
+
+    /**
+     * Store a request and try it straight away. The row is saved before any
+     * send is queued, so a busy sender pool or a restart cannot lose it. The
+     * future completes with the server's response, or with a "queued" response
+     * if it will be retried.
+     */
+    public CompletableFuture<ParentMessageDTO.Response> enqueue(String kind, String path, Map<String, Object> body) {
+        String payload;
+        try {
+            payload = objectMapper.writeValueAsString(body);
+        } catch (JsonProcessingException e) {
+            log.error("Could not serialize {} request", kind, e);
+            return CompletableFuture.completedFuture(failure("Failed to send " + kind.toLowerCase() + ": " + e.getMessage()));
+        }
+
+        ParentOutboxMessage row = ParentOutboxMessage.builder()
+                .idempotencyKey(UUID.randomUUID().toString())
+                .kind(kind)
+                .path(path)
+                .payloadJson(payload)
+                .build();
+
+        ParentOutboxMessage saved;
+        try {
+            saved = outboxRepository.save(row);
+        } catch (Exception e) {
+            log.error("Could not store {} request", kind, e);
+            return CompletableFuture.completedFuture(failure("Failed to send " + kind.toLowerCase() + ": " + e.getMessage()));
+        }
+
+        Long id = saved.getId();
+        if (!inFlight.add(id)) {
+            // A drain claimed it first and will deliver it
+            return CompletableFuture.completedFuture(queued(saved));
+        }
+        CompletableFuture<ParentMessageDTO.Response> result = new CompletableFuture<>();
+        try {
+            sender.execute(() -> attempt(id, result));
+        } catch (RejectedExecutionException e) {
+            // Senders are saturated: the row is stored, so let the drain deliver it
+            inFlight.remove(id);
+            result.complete(queued(saved));
+        }
+        return result;
+    }
+
+    // ===================== Delivery =====================
+
+    /**
+     * Retry requests whose backoff has elapsed, including ones left over from
+     * a previous run.
+     */
+    @Scheduled(fixedDelayString = "${heronix.parent-portal.outbox.retry-poll-seconds:5}", timeUnit = TimeUnit.SECONDS)
+    public void drain() {
+        if (transport == null || !sessionManager.isConnected()) return;
+        List<ParentOutboxMessage> due = outboxRepository.findDue(SyncStatus.PENDING, LocalDateTime.now(),
+                PageRequest.of(0, DRAIN_BATCH));
+        for (ParentOutboxMessage row : due) {
+            Long id = row.getId();
+            if (!inFlight.add(id)) continue;
+            try {
+                sender.execute(() -> attempt(id, null));
+            } catch (RejectedExecutionException e) {
+                inFlight.remove(id);
+                break;
+            }
+        }
+    }
+
+    /**
+     * Send a claimed row and release the claim. The row is read afresh, since
+     * the copy that was queued may have been delivered or updated meanwhile.
+     */
+    private void attempt(Long id, CompletableFuture<ParentMessageDTO.Response> first) {
+        try {
+            ParentOutboxMessage row = outboxRepository.findById(id).orElse(null);
+            if (row == null || row.getSyncStatus() != SyncStatus.PENDING) {
+                complete(first, failure("Request is no longer pending"));
+                return;
+            }
+            attempt(row, first);
+        } catch (Exception e) {
+            log.error("Parent outbox delivery failed for row {}", id, e);
+            complete(first, failure("Failed to send: " + e.getMessage()));
+        } finally {
+            inFlight.remove(id);
+        }
+    }
+
+    private void attempt(ParentOutboxMessage row, CompletableFuture<ParentMessageDTO.Response> first) {
+        try {
+            Transport current = transport;
+            if (current == null || !sessionManager.isConnected()) {
+                // Offline time does not count against the retry budget
+                complete(first, queued(row));
+                return;
+            }
+
+            Attempt attempt = current.post(row.getPath(), row.getPayloadJson(), row.getIdempotencyKey());
+            if (attempt.status() == 200) {
+                outboxRepository.deleteById(row.getId());
+                sent.incrementAndGet();
+                if (row.getAttempts() > 0) {
+                    log.info("Parent {} delivered after {} retries", row.getKind().toLowerCase(), row.getAttempts());
+                }
+                complete(first, attempt.response() != null ? attempt.response() : ParentMessageDTO.Response.builder()
+                        .success(true).timestamp(LocalDateTime.now()).build());
+                return;
+            }
+
+            if (isPermanent(attempt.status())) {
+                reject(row, "Rejected with status: " + attempt.status());
+                complete(first, failure("Request failed with status: " + attempt.status()));
+                return;
+            }
+
+            row.setAttempts(row.getAttempts() + 1);
+            row.setLastError(attempt.status() < 0 ? "No response" : "Status " + attempt.status());
+            if (row.getAttempts() >= maxAttempts) {
+                reject(row, "Gave up after " + row.getAttempts() + " attempts (" + row.getLastError() + ")");
+                complete(first, failure("Request failed: " + row.getLastError()));
+                return;
+            }
+            row.setNextAttemptAt(LocalDateTime.now().plus(backoff(row.getAttempts())));
+            outboxRepository.save(row);
+            retries.incrementAndGet();
+            log.warn("Parent {} not delivered ({}); retry {} at {}", row.getKind().toLowerCase(),
+                    row.getLastError(), row.getAttempts(), row.getNextAttemptAt());
+            complete(first, queued(row));
+
+        } catch (Exception e) {
+            log.error("Parent outbox delivery failed for {}", row.getIdempotencyKey(), e);
+            complete(first, queued(row));
+        }
+    }
+
+    private void reject(ParentOutboxMessage row, String reason) {
+        row.setSyncStatus(SyncStatus.CONFLICT);
+        row.setLastError(reason);
+        outboxRepository.save(row);
+        rejected.incrementAndGet();
+        log.error("Parent {} {} dropped: {}", row.getKind().toLowerCase(), row.getIdempotencyKey(), reason);
+    }
+
+    private static boolean isPermanent(int status) {
+        return status >= 400 && status < 500 && status != 408 && status != 429;
+    }
+
+    private Duration backoff(int attempts) {
+        long seconds = retryBaseSeconds << Math.min(attempts - 1, 20);
+        return Duration.ofSeconds(Math.min(retryMaxSeconds, seconds));
+    }
+
+    private static void complete(CompletableFuture<ParentMessageDTO.Response> future,
+                                 ParentMessageDTO.Response response) {
+        if (future != null) {
+            future.complete(response);
+        }
+    }
+
+    private static ParentMessageDTO.Response queued(ParentOutboxMessage row) {
+        return ParentMessageDTO.Response.builder()
+                .success(true)
+                .message("Queued; will be delivered when the server is reachable")
+                .timestamp(LocalDateTime.now())
+                .metadata(Map.of("queued", true, "idempotencyKey", row.getIdempotencyKey()))
+                .build();
+    }
+
+    private static ParentMessageDTO.Response failure(String message) {
+        return ParentMessageDTO.Response.builder()
+                .success(false)
+                .message(message)
+                .timestamp(LocalDateTime.now())
+                .build();
+    }
+
+    // ===================== Metrics =====================
+
+    public OutboxStats getStats() {
+        LocalDateTime oldest = outboxRepository.findOldestCreatedAt(SyncStatus.PENDING);
+        long oldestAgeSeconds = oldest != null ? Duration.between(oldest, LocalDateTime.now()).toSeconds() : 0;
+        return new OutboxStats(outboxRepository.countBySyncStatus(SyncStatus.PENDING), oldestAgeSeconds,
+                inFlight.size(), sent.get(), retries.get(), rejected.get());
+    }
+
+    /**
+     * Queue depth and age of the oldest undelivered request, plus totals since startup.
+     */
+    public record OutboxStats(long pending, long oldestPendingAgeSeconds, int inFlight, long sent, long retries,
+                              long rejected) {}
+}
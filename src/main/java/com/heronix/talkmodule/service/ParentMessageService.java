@@ -1,13 +1,15 @@
 package com.heronix.talkmodule.service;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.heronix.talkmodule.config.ExecutorRegistry;
 import com.heronix.talkmodule.model.dto.ParentMessageDTO;
+import com.heronix.talkmodule.network.HttpTransport;
+import jakarta.annotation.PostConstruct;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.net.URI;
-import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.time.Duration;
@@ -16,6 +18,8 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Consumer;
 
 /**
  * Parent Message Service for TalkModule
@@ -30,6 +34,7 @@ import java.util.concurrent.CompletableFuture;
  * - School announcements
  * - Emergency broadcasts
  * - Async message delivery
+ * - Durable outbox with retry for one-to-one messages
  *
  * Note: All student data is tokenized by Heronix-Talk before
  * being sent to the external Parent Portal application.
@@ -41,8 +46,12 @@ import java.util.concurrent.CompletableFuture;
 @Service
 public class ParentMessageService {
 
-    private final HttpClient httpClient;
+    private final HttpTransport transport;
     private final ObjectMapper objectMapper;
+    private final BulkDeliveryEngine bulkDeliveryEngine;
+    private final RecipientResolver recipientResolver;
+    private final ParentMessageOutbox outbox;
+    private final ExecutorRegistry executors;
 
     @Value("${heronix.server.url:http://localhost:9680}")
     private String serverUrl;
@@ -54,11 +63,20 @@ public class ParentMessageService {
 
     private static final String PARENT_PORTAL_API_PATH = "/api/parent-portal/messages";
 
-    public ParentMessageService(ObjectMapper objectMapper) {
+    public ParentMessageService(ObjectMapper objectMapper, BulkDeliveryEngine bulkDeliveryEngine,
+                                RecipientResolver recipientResolver, ParentMessageOutbox outbox,
+                                ExecutorRegistry executors, HttpTransport transport) {
         this.objectMapper = objectMapper;
-        this.httpClient = HttpClient.newBuilder()
-                .connectTimeout(Duration.ofSeconds(10))
-                .build();
+        this.bulkDeliveryEngine = bulkDeliveryEngine;
+        this.recipientResolver = recipientResolver;
+        this.outbox = outbox;
+        this.executors = executors;
+        this.transport = transport;
+    }
+
+    @PostConstruct
+    public void registerOutboxTransport() {
+        outbox.setTransport(this::postOutboxEntry);
     }
 
     /**
@@ -80,52 +98,36 @@ public class ParentMessageService {
     // ========================================================================
 
     /**
-     * Send a message to a parent
+     * Send a message to a parent. Queued and retried if the server is unreachable.
      */
     public CompletableFuture<ParentMessageDTO.Response> sendMessage(ParentMessageDTO message) {
-        return CompletableFuture.supplyAsync(() -> {
-            if (!parentPortalEnabled) {
-                return ParentMessageDTO.Response.builder()
-                        .success(false)
-                        .message("Parent Portal messaging is disabled")
-                        .timestamp(LocalDateTime.now())
-                        .build();
-            }
-
-            try {
-                Map<String, Object> requestBody = new HashMap<>();
-                requestBody.put("studentId", message.getStudentId());
-                requestBody.put("category", message.getCategory());
-                requestBody.put("priority", message.getPriority());
-                requestBody.put("subject", message.getSubject());
-                requestBody.put("content", message.getContent());
-                requestBody.put("parentToken", message.getParentToken());
-                requestBody.put("requiresAcknowledgment", message.isRequiresAcknowledgment());
-
-                if (message.getDeliveryOptions() != null) {
-                    Map<String, Boolean> delivery = new HashMap<>();
-                    delivery.put("inApp", message.getDeliveryOptions().isInApp());
-                    delivery.put("pushNotification", message.getDeliveryOptions().isPushNotification());
-                    delivery.put("email", message.getDeliveryOptions().isEmail());
-                    delivery.put("sms", message.getDeliveryOptions().isSms());
-                    requestBody.put("deliveryChannels", delivery);
-                }
+        if (!parentPortalEnabled) {
+            return CompletableFuture.completedFuture(disabledResponse());
+        }
 
-                if (message.getMetadata() != null) {
-                    requestBody.put("metadata", message.getMetadata());
-                }
+        Map<String, Object> requestBody = new HashMap<>();
+        requestBody.put("studentId", message.getStudentId());
+        requestBody.put("category", message.getCategory());
+        requestBody.put("priority", message.getPriority());
+        requestBody.put("subject", message.getSubject());
+        requestBody.put("content", message.getContent());
+        requestBody.put("parentToken", message.getParentToken());
+        requestBody.put("requiresAcknowledgment", message.isRequiresAcknowledgment());
+
+        if (message.getDeliveryOptions() != null) {
+            Map<String, Boolean> delivery = new HashMap<>();
+            delivery.put("inApp", message.getDeliveryOptions().isInApp());
+            delivery.put("pushNotification", message.getDeliveryOptions().isPushNotification());
+            delivery.put("email", message.getDeliveryOptions().isEmail());
+            delivery.put("sms", message.getDeliveryOptions().isSms());
+            requestBody.put("deliveryChannels", delivery);
+        }
 
-                return executePost(PARENT_PORTAL_API_PATH + "/send", requestBody);
+        if (message.getMetadata() != null) {
+            requestBody.put("metadata", message.getMetadata());
+        }
 
-            } catch (Exception e) {
-                log.error("Failed to send parent message", e);
-                return ParentMessageDTO.Response.builder()
-                        .success(false)
-                        .message("Failed to send message: " + e.getMessage())
-                        .timestamp(LocalDateTime.now())
-                        .build();
-            }
-        });
+        return outbox.enqueue("MESSAGE", PARENT_PORTAL_API_PATH + "/send", requestBody);
     }
 
     /**
@@ -133,54 +135,38 @@ public class ParentMessageService {
      */
     public CompletableFuture<ParentMessageDTO.Response> sendNotification(
             ParentMessageDTO.Notification notification) {
-        return CompletableFuture.supplyAsync(() -> {
-            if (!parentPortalEnabled) {
-                return disabledResponse();
-            }
-
-            try {
-                Map<String, Object> requestBody = new HashMap<>();
-                requestBody.put("studentId", notification.getStudentId());
-                requestBody.put("category", notification.getCategory());
-                requestBody.put("title", notification.getTitle());
-                requestBody.put("message", notification.getMessage());
-                requestBody.put("parentToken", notification.getParentToken());
+        if (!parentPortalEnabled) {
+            return CompletableFuture.completedFuture(disabledResponse());
+        }
 
-                return executePost(PARENT_PORTAL_API_PATH + "/notify", requestBody);
+        Map<String, Object> requestBody = new HashMap<>();
+        requestBody.put("studentId", notification.getStudentId());
+        requestBody.put("category", notification.getCategory());
+        requestBody.put("title", notification.getTitle());
+        requestBody.put("message", notification.getMessage());
+        requestBody.put("parentToken", notification.getParentToken());
 
-            } catch (Exception e) {
-                log.error("Failed to send notification", e);
-                return errorResponse("notification", e);
-            }
-        });
+        return outbox.enqueue("NOTIFICATION", PARENT_PORTAL_API_PATH + "/notify", requestBody);
     }
 
     /**
      * Send an urgent alert to a parent
      */
     public CompletableFuture<ParentMessageDTO.Response> sendAlert(ParentMessageDTO.Alert alert) {
-        return CompletableFuture.supplyAsync(() -> {
-            if (!parentPortalEnabled) {
-                return disabledResponse();
-            }
-
-            try {
-                Map<String, Object> requestBody = new HashMap<>();
-                requestBody.put("studentId", alert.getStudentId());
-                requestBody.put("alertType", alert.getAlertType());
-                requestBody.put("title", alert.getTitle());
-                requestBody.put("message", alert.getMessage());
-                requestBody.put("parentToken", alert.getParentToken());
-                requestBody.put("requiresImmediateAction", alert.isRequiresImmediateAction());
-                requestBody.put("actionUrl", alert.getActionUrl());
+        if (!parentPortalEnabled) {
+            return CompletableFuture.completedFuture(disabledResponse());
+        }
 
-                return executePost(PARENT_PORTAL_API_PATH + "/alert", requestBody);
+        Map<String, Object> requestBody = new HashMap<>();
+        requestBody.put("studentId", alert.getStudentId());
+        requestBody.put("alertType", alert.getAlertType());
+        requestBody.put("title", alert.getTitle());
+        requestBody.put("message", alert.getMessage());
+        requestBody.put("parentToken", alert.getParentToken());
+        requestBody.put("requiresImmediateAction", alert.isRequiresImmediateAction());
+        requestBody.put("actionUrl", alert.getActionUrl());
 
-            } catch (Exception e) {
-                log.error("Failed to send alert", e);
-                return errorResponse("alert", e);
-            }
-        });
+        return outbox.enqueue("ALERT", PARENT_PORTAL_API_PATH + "/alert", requestBody);
     }
 
     /**
@@ -188,35 +174,27 @@ public class ParentMessageService {
      */
     public CompletableFuture<ParentMessageDTO.Response> sendHallPassNotification(
             ParentMessageDTO.HallPassNotification notification) {
-        return CompletableFuture.supplyAsync(() -> {
-            if (!parentPortalEnabled) {
-                return disabledResponse();
-            }
+        if (!parentPortalEnabled) {
+            return CompletableFuture.completedFuture(disabledResponse());
+        }
 
-            try {
-                Map<String, Object> requestBody = new HashMap<>();
-                requestBody.put("studentId", notification.getStudentId());
-                requestBody.put("passType", notification.getPassType());
-                requestBody.put("destination", notification.getDestination());
-                requestBody.put("parentToken", notification.getParentToken());
-
-                if (notification.getDepartureTime() != null) {
-                    requestBody.put("departureTime", notification.getDepartureTime().toString());
-                }
-                if (notification.getReturnTime() != null) {
-                    requestBody.put("returnTime", notification.getReturnTime().toString());
-                }
-                if (notification.getDurationMinutes() != null) {
-                    requestBody.put("durationMinutes", notification.getDurationMinutes());
-                }
+        Map<String, Object> requestBody = new HashMap<>();
+        requestBody.put("studentId", notification.getStudentId());
+        requestBody.put("passType", notification.getPassType());
+        requestBody.put("destination", notification.getDestination());
+        requestBody.put("parentToken", notification.getParentToken());
 
-                return executePost(PARENT_PORTAL_API_PATH + "/hall-pass", requestBody);
+        if (notification.getDepartureTime() != null) {
+            requestBody.put("departureTime", notification.getDepartureTime().toString());
+        }
+        if (notification.getReturnTime() != null) {
+            requestBody.put("returnTime", notification.getReturnTime().toString());
+        }
+        if (notification.getDurationMinutes() != null) {
+            requestBody.put("durationMinutes", notification.getDurationMinutes());
+        }
 
-            } catch (Exception e) {
-                log.error("Failed to send hall pass notification", e);
-                return errorResponse("hall pass notification", e);
-            }
-        });
+        return outbox.enqueue("HALL_PASS", PARENT_PORTAL_API_PATH + "/hall-pass", requestBody);
     }
 
     /**
@@ -224,59 +202,112 @@ public class ParentMessageService {
      */
     public CompletableFuture<ParentMessageDTO.BulkResponse> sendAnnouncement(
             ParentMessageDTO.Announcement announcement) {
-        return CompletableFuture.supplyAsync(() -> {
-            if (!parentPortalEnabled) {
-                return ParentMessageDTO.BulkResponse.builder()
-                        .success(false)
-                        .message("Parent Portal messaging is disabled")
-                        .build();
-            }
-
-            try {
-                Map<String, Object> requestBody = new HashMap<>();
-                requestBody.put("subject", announcement.getSubject());
-                requestBody.put("content", announcement.getContent());
-                requestBody.put("category", announcement.getCategory());
-                requestBody.put("parentTokens", announcement.getParentTokens());
-
-                if (announcement.getEffectiveDate() != null) {
-                    requestBody.put("effectiveDate", announcement.getEffectiveDate().toString());
-                }
-                if (announcement.getExpirationDate() != null) {
-                    requestBody.put("expirationDate", announcement.getExpirationDate().toString());
-                }
-
-                String jsonBody = objectMapper.writeValueAsString(requestBody);
+        return sendAnnouncement(announcement, null);
+    }
 
-                HttpRequest httpRequest = HttpRequest.newBuilder()
-                        .uri(URI.create(serverUrl + PARENT_PORTAL_API_PATH + "/announcement"))
-                        .header("Content-Type", "application/json")
-                        .header("X-Session-Token", sessionToken != null ? sessionToken : "")
-                        .POST(HttpRequest.BodyPublishers.ofString(jsonBody))
-                        .timeout(Duration.ofSeconds(30))
-                        .build();
+    /**
+     * Send a school announcement in chunks, reporting progress after each one.
+     * Only chunks that fail are resent; the result aggregates every chunk.
+     * Emergency announcements go ahead of any routine bulk send.
+     */
+    public CompletableFuture<ParentMessageDTO.BulkResponse> sendAnnouncement(
+            ParentMessageDTO.Announcement announcement,
+            Consumer<BulkDeliveryEngine.BulkProgress> progress) {
+        if (!parentPortalEnabled) {
+            return CompletableFuture.completedFuture(ParentMessageDTO.BulkResponse.builder()
+                    .success(false)
+                    .message("Parent Portal messaging is disabled")
+                    .build());
+        }
 
-                HttpResponse<String> response = httpClient.send(httpRequest,
-                        HttpResponse.BodyHandlers.ofString());
+        List<String> parentTokens = announcement.getParentTokens() != null
+                ? announcement.getParentTokens() : List.of();
+        boolean urgent = "EMERGENCY".equals(announcement.getCategory());
+        return bulkDeliveryEngine.deliver(parentTokens,
+                (chunk, idempotencyKey) -> sendAnnouncementChunk(announcement, chunk, idempotencyKey), progress, urgent);
+    }
 
-                if (response.statusCode() == 200) {
-                    return objectMapper.readValue(response.body(), ParentMessageDTO.BulkResponse.class);
-                } else {
-                    log.error("Announcement send failed with status: {}", response.statusCode());
+    /**
+     * Send a school announcement to everyone matching {@code audience}. The
+     * parent tokens are resolved from the SIS here, not by the caller; any
+     * tokens already set on the announcement are ignored.
+     */
+    public CompletableFuture<ParentMessageDTO.BulkResponse> sendAnnouncement(
+            ParentMessageDTO.Announcement announcement,
+            RecipientResolver.Selector audience,
+            Consumer<BulkDeliveryEngine.BulkProgress> progress) {
+        if (!parentPortalEnabled) {
+            return sendAnnouncement(announcement, progress);
+        }
+        return recipientResolver.resolve(audience)
+                .thenCompose(parentTokens -> {
+                    announcement.setParentTokens(parentTokens);
+                    return sendAnnouncement(announcement, progress);
+                })
+                .exceptionally(e -> {
+                    Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+                    log.error("Could not resolve announcement recipients: {}", cause.getMessage());
                     return ParentMessageDTO.BulkResponse.builder()
                             .success(false)
-                            .message("Failed with status: " + response.statusCode())
+                            .message(cause.getMessage())
                             .build();
-                }
+                });
+    }
 
-            } catch (Exception e) {
-                log.error("Failed to send announcement", e);
+    private ParentMessageDTO.BulkResponse sendAnnouncementChunk(
+            ParentMessageDTO.Announcement announcement, List<String> parentTokens, String idempotencyKey) {
+        try {
+            Map<String, Object> requestBody = new HashMap<>();
+            requestBody.put("subject", announcement.getSubject());
+            requestBody.put("content", announcement.getContent());
+            requestBody.put("category", announcement.getCategory());
+            requestBody.put("parentTokens", parentTokens);
+
+            if (announcement.getEffectiveDate() != null) {
+                requestBody.put("effectiveDate", announcement.getEffectiveDate().toString());
+            }
+            if (announcement.getExpirationDate() != null) {
+                requestBody.put("expirationDate", announcement.getExpirationDate().toString());
+            }
+
+            String jsonBody = objectMapper.writeValueAsString(requestBody);
+
+            HttpRequest httpRequest = HttpRequest.newBuilder()
+                    .uri(URI.create(serverUrl + PARENT_PORTAL_API_PATH + "/announcement"))
+                    .header("Content-Type", "application/json")
+                    .header("X-Session-Token", sessionToken != null ? sessionToken : "")
+                    .header("Idempotency-Key", idempotencyKey)
+                    .POST(HttpRequest.BodyPublishers.ofString(jsonBody))
+                    .timeout(Duration.ofSeconds(15))
+                    .build();
+
+            HttpResponse<String> response = transport.send(httpRequest,
+                    HttpResponse.BodyHandlers.ofString());
+
+            if (response.statusCode() == 200) {
+                return objectMapper.readValue(response.body(), ParentMessageDTO.BulkResponse.class);
+            } else {
+                log.error("Announcement chunk failed with status: {}", response.statusCode());
                 return ParentMessageDTO.BulkResponse.builder()
                         .success(false)
-                        .message("Failed to send announcement: " + e.getMessage())
+                        .message("Failed with status: " + response.statusCode())
                         .build();
             }
-        });
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return chunkErrorResponse(e);
+        } catch (Exception e) {
+            log.error("Failed to send announcement chunk", e);
+            return chunkErrorResponse(e);
+        }
+    }
+
+    private static ParentMessageDTO.BulkResponse chunkErrorResponse(Exception e) {
+        return ParentMessageDTO.BulkResponse.builder()
+                .success(false)
+                .message("Failed to send announcement: " + e.getMessage())
+                .build();
     }
 
     /**
@@ -312,7 +343,7 @@ public class ParentMessageService {
                         .timeout(Duration.ofSeconds(10))
                         .build();
 
-                HttpResponse<String> response = httpClient.send(request,
+                HttpResponse<String> response = transport.send(request,
                         HttpResponse.BodyHandlers.ofString());
 
                 if (response.statusCode() == 200) {
@@ -331,7 +362,7 @@ public class ParentMessageService {
                         .message("Service unavailable: " + e.getMessage())
                         .build();
             }
-        });
+        }, executors.io("parent-portal"));
     }
 
     /**
@@ -346,7 +377,7 @@ public class ParentMessageService {
                     .timeout(Duration.ofSeconds(5))
                     .build();
 
-            HttpResponse<String> response = httpClient.send(request,
+            HttpResponse<String> response = transport.send(request,
                     HttpResponse.BodyHandlers.ofString());
 
             return response.statusCode() == 200;
@@ -458,39 +489,36 @@ public class ParentMessageService {
     // INTERNAL HELPERS
     // ========================================================================
 
-    private ParentMessageDTO.Response executePost(String path, Map<String, Object> body) {
+    /**
+     * Outbox transport: post a stored request with its idempotency key.
+     */
+    private ParentMessageOutbox.Attempt postOutboxEntry(String path, String jsonBody, String idempotencyKey) {
         try {
-            String jsonBody = objectMapper.writeValueAsString(body);
-
             HttpRequest request = HttpRequest.newBuilder()
                     .uri(URI.create(serverUrl + path))
                     .header("Content-Type", "application/json")
                     .header("X-Session-Token", sessionToken != null ? sessionToken : "")
+                    .header("Idempotency-Key", idempotencyKey)
                     .POST(HttpRequest.BodyPublishers.ofString(jsonBody))
                     .timeout(Duration.ofSeconds(15))
                     .build();
 
-            HttpResponse<String> response = httpClient.send(request,
+            HttpResponse<String> response = transport.send(request,
                     HttpResponse.BodyHandlers.ofString());
 
             if (response.statusCode() == 200) {
-                return objectMapper.readValue(response.body(), ParentMessageDTO.Response.class);
-            } else {
-                log.error("Request to {} failed with status: {}", path, response.statusCode());
-                return ParentMessageDTO.Response.builder()
-                        .success(false)
-                        .message("Request failed with status: " + response.statusCode())
-                        .timestamp(LocalDateTime.now())
-                        .build();
+                return new ParentMessageOutbox.Attempt(200,
+                        objectMapper.readValue(response.body(), ParentMessageDTO.Response.class));
             }
+            log.error("Request to {} failed with status: {}", path, response.statusCode());
+            return new ParentMessageOutbox.Attempt(response.statusCode(), null);
 
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return new ParentMessageOutbox.Attempt(-1, null);
         } catch (Exception e) {
-            log.error("Request to {} failed", path, e);
-            return ParentMessageDTO.Response.builder()
-                    .success(false)
-                    .message("Request failed: " + e.getMessage())
-                    .timestamp(LocalDateTime.now())
-                    .build();
+            log.error("Request to {} failed: {}", path, e.getMessage());
+            return new ParentMessageOutbox.Attempt(-1, null);
         }
     }
 
@@ -501,12 +529,4 @@ public class ParentMessageService {
                 .timestamp(LocalDateTime.now())
                 .build();
     }
-
-    private ParentMessageDTO.Response errorResponse(String operation, Exception e) {
-        return ParentMessageDTO.Response.builder()
-                .success(false)
-                .message("Failed to send " + operation + ": " + e.getMessage())
-                .timestamp(LocalDateTime.now())
-                .build();
-    }
 }
@@ -0,0 +1,247 @@
+package com.heronix.talkmodule.service;
+
+import com.heronix.talkmodule.model.dto.WebSocketMessageDTO;
+import com.heronix.talkmodule.model.enums.UserStatus;
+import com.heronix.talkmodule.repository.LocalUserRepository;
+import com.heronix.talkmodule.util.TimerWheel;
+import jakarta.annotation.PreDestroy;
+import javafx.application.Platform;
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableSet;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * In-memory presence table fed by PRESENCE and TYPING WebSocket events.
+ *
+ * Status lookups never touch the network. Typing indicators expire on a
+ * shared {@link TimerWheel} if the matching stop frame never arrives.
+ * Status changes are written back to {@code LocalUser.status} periodically,
+ * one bulk UPDATE per status rather than one row at a time.
+ *
+ * Event handlers run on the FX thread (WebSocketClient dispatches there), so
+ * the observable sets are only mutated on the FX thread.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class PresenceService {
+
+    private final LocalUserRepository userRepository;
+    private final PlatformTransactionManager transactionManager;
+    private final TimerWheel timerWheel;
+
+    @Value("${heronix.presence.typing-ttl-seconds:6}")
+    private int typingTtlSeconds;
+
+    private final Map<Long, UserStatus> statuses = new ConcurrentHashMap<>();
+    private final Map<Long, String> statusMessages = new ConcurrentHashMap<>();
+    private final Set<Long> dirty = ConcurrentHashMap.newKeySet();
+
+    // FX thread only
+    private final ObservableSet<Long> onlineUsers = FXCollections.observableSet();
+    private final Map<Long, ObservableSet<String>> typingByChannel = new HashMap<>();
+    private final Map<String, TimerWheel.Timeout> typingTimeouts = new HashMap<>();
+
+    @PreDestroy
+    public void shutdown() {
+        flushToDatabase();
+    }
+
+    // ===================== Events =====================
+
+    public void handlePresenceEvent(WebSocketMessageDTO event) {
+        if (event.getPayload() instanceof List<?> snapshot) {
+            // Bulk snapshot: list of {userId, status}
+            for (Object item : snapshot) {
+                if (item instanceof Map<?, ?> entry) {
+                    applyPresence(entry);
+                }
+            }
+        } else if (event.getPayload() instanceof Map<?, ?> payload) {
+            applyPresence(payload);
+        } else if (event.getUserId() != null && event.getAction() != null) {
+            updateStatus(event.getUserId(), parseStatus(event.getAction()), null);
+        }
+    }
+
+    private void applyPresence(Map<?, ?> payload) {
+        Long userId = asLong(payload.get("userId"));
+        if (userId == null) return;
+        Object statusMessage = payload.get("statusMessage");
+        updateStatus(userId, parseStatus(payload.get("status")),
+                statusMessage != null ? statusMessage.toString() : null);
+    }
+
+    public void handleTypingEvent(WebSocketMessageDTO event) {
+        Map<?, ?> payload = event.getPayload() instanceof Map<?, ?> m ? m : Map.of();
+        Long channelId = event.getChannelId() != null ? event.getChannelId() : asLong(payload.get("channelId"));
+        Long userId = event.getUserId() != null ? event.getUserId() : asLong(payload.get("userId"));
+        if (channelId == null || userId == null) return;
+
+        Object name = payload.get("userName");
+        String displayName = name != null ? name.toString() : String.valueOf(userId);
+        boolean isTyping = payload.get("isTyping") instanceof Boolean b ? b : "TYPING_START".equals(event.getAction());
+
+        if (isTyping) {
+            startTyping(channelId, userId, displayName);
+        } else {
+            stopTyping(channelId, userId, displayName);
+        }
+    }
+
+    /**
+     * Connection dropped: typing and online state are meaningless until events
+     * resume. Everyone is shown offline until the snapshot requested on
+     * reconnect arrives.
+     */
+    public void connectionLost() {
+        typingTimeouts.values().forEach(TimerWheel.Timeout::cancel);
+        typingTimeouts.clear();
+        typingByChannel.values().forEach(Set::clear);
+        for (Long userId : List.copyOf(onlineUsers)) {
+            updateStatus(userId, UserStatus.OFFLINE, null);
+        }
+    }
+
+    // ===================== Status =====================
+
+    private void updateStatus(Long userId, UserStatus status, String statusMessage) {
+        UserStatus previous = statuses.put(userId, status);
+        if (statusMessage != null) {
+            statusMessages.put(userId, statusMessage);
+        }
+        if (previous != status) {
+            dirty.add(userId);
+            if (status == UserStatus.OFFLINE) {
+                onlineUsers.remove(userId);
+            } else {
+                onlineUsers.add(userId);
+            }
+        }
+    }
+
+    public UserStatus getStatus(Long userId) {
+        return statuses.getOrDefault(userId, UserStatus.OFFLINE);
+    }
+
+    public String getStatusMessage(Long userId) {
+        return statusMessages.get(userId);
+    }
+
+    public boolean isOnline(Long userId) {
+        return getStatus(userId) != UserStatus.OFFLINE;
+    }
+
+    /**
+     * Ids of users currently not OFFLINE. Observable; FX thread only.
+     */
+    public ObservableSet<Long> getOnlineUsers() {
+        return onlineUsers;
+    }
+
+    public int getOnlineCount() {
+        return onlineUsers.size();
+    }
+
+    // ===================== Typing =====================
+
+    /**
+     * Display names of users typing in a channel. Observable; FX thread only.
+     */
+    public ObservableSet<String> getTypingUsers(Long channelId) {
+        return typingByChannel.computeIfAbsent(channelId, id -> FXCollections.observableSet());
+    }
+
+    private void startTyping(Long channelId, Long userId, String displayName) {
+        getTypingUsers(channelId).add(displayName);
+
+        String key = channelId + ":" + userId;
+        TimerWheel.Timeout previous = typingTimeouts.put(key, timerWheel.schedule(
+                () -> Platform.runLater(() -> expireTyping(key, channelId, displayName)),
+                typingTtlSeconds, TimeUnit.SECONDS));
+        if (previous != null) {
+            previous.cancel();
+        }
+    }
+
+    private void stopTyping(Long channelId, Long userId, String displayName) {
+        TimerWheel.Timeout timeout = typingTimeouts.remove(channelId + ":" + userId);
+        if (timeout != null) {
+            timeout.cancel();
+        }
+        getTypingUsers(channelId).remove(displayName);
+    }
+
+    private void expireTyping(String key, Long channelId, String displayName) {
+        TimerWheel.Timeout current = typingTimeouts.get(key);
+        // A newer TYPING_START replaced the timeout that just fired
+        if (current != null && !current.isCancelled()) return;
+        typingTimeouts.remove(key);
+        getTypingUsers(channelId).remove(displayName);
+    }
+
+    // ===================== Persistence =====================
+
+    @Scheduled(fixedDelayString = "${heronix.presence.persist-interval-seconds:60}", timeUnit = TimeUnit.SECONDS)
+    public void flushToDatabase() {
+        if (dirty.isEmpty()) return;
+
+        Map<UserStatus, List<Long>> byStatus = new EnumMap<>(UserStatus.class);
+        for (Long userId : new ArrayList<>(dirty)) {
+            dirty.remove(userId);
+            byStatus.computeIfAbsent(getStatus(userId), s -> new ArrayList<>()).add(userId);
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        Integer updated = new TransactionTemplate(transactionManager).execute(tx -> {
+            int rows = 0;
+            for (Map.Entry<UserStatus, List<Long>> entry : byStatus.entrySet()) {
+                rows += userRepository.updateStatusForIds(entry.getValue(), entry.getKey(), now);
+            }
+            return rows;
+        });
+        log.debug("Persisted presence for {} users in {} statements", updated, byStatus.size());
+    }
+
+    // ===================== Parsing =====================
+
+    private static UserStatus parseStatus(Object value) {
+        if (value == null) return UserStatus.ONLINE;
+        String text = value.toString().toUpperCase();
+        if (text.equals("DISCONNECT") || text.equals("LEAVE")) return UserStatus.OFFLINE;
+        if (text.equals("CONNECT") || text.equals("JOIN")) return UserStatus.ONLINE;
+        try {
+            return UserStatus.valueOf(text);
+        } catch (IllegalArgumentException e) {
+            return UserStatus.ONLINE;
+        }
+    }
+
+    private static Long asLong(Object value) {
+        if (value instanceof Number n) return n.longValue();
+        if (value instanceof String s && !s.isBlank()) {
+            try {
+                return Long.parseLong(s);
+            } catch (NumberFormatException ignored) {
+                return null;
+            }
+        }
+        return null;
+    }
+}
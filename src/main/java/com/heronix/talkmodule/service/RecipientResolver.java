@@ -0,0 +1,162 @@
+package com.heronix.talkmodule.service;
+
+import com.heronix.talkmodule.config.ExecutorRegistry;
+import com.heronix.talkmodule.model.dto.ParentContactDTO;
+import com.heronix.talkmodule.util.ExpiringLruCache;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Expands bulk audience selectors (everyone, a grade, a homeroom or a class
+ * roster) into the parent tokens to send to.
+ *
+ * The SIS is read in pages, {@code parallel-pages} at a time, until a short
+ * page comes back. Tokens are deduplicated across students, so a parent with
+ * several children in the selection is messaged once. Resolved sets are
+ * cached; a resolution that fails part way is not cached and fails as a
+ * whole rather than yielding a partial audience.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class RecipientResolver {
+
+    private final SisApiClient sisApiClient;
+    private final ExecutorRegistry executors;
+
+    @Value("${heronix.sis.recipients.page-size:500}")
+    private int pageSize;
+
+    @Value("${heronix.sis.recipients.parallel-pages:4}")
+    private int parallelPages;
+
+    @Value("${heronix.sis.recipients.max-recipients:50000}")
+    private int maxRecipients;
+
+    @Value("${heronix.sis.recipients.cache-ttl-seconds:600}")
+    private long cacheTtlSeconds;
+
+    @Value("${heronix.sis.cache.negative-ttl-seconds:15}")
+    private long negativeTtlSeconds;
+
+    private static final int CACHE_ENTRIES = 64;
+
+    private ExpiringLruCache<Selector, List<String>> cache;
+
+    public enum Scope { ALL, GRADE, HOMEROOM, ROSTER }
+
+    /**
+     * Who an announcement goes to. {@code value} is the grade level,
+     * homeroom or course section id, and is ignored for {@link Scope#ALL}.
+     */
+    public record Selector(Scope scope, String value) {
+
+        public Selector {
+            value = scope == Scope.ALL || value == null ? null : value.trim();
+        }
+
+        public static Selector all() {
+            return new Selector(Scope.ALL, null);
+        }
+
+        public static Selector grade(String gradeLevel) {
+            return new Selector(Scope.GRADE, gradeLevel);
+        }
+
+        public static Selector homeroom(String homeroom) {
+            return new Selector(Scope.HOMEROOM, homeroom);
+        }
+
+        public static Selector roster(String sectionId) {
+            return new Selector(Scope.ROSTER, sectionId);
+        }
+
+        String filter() {
+            return switch (scope) {
+                case ALL -> null;
+                case GRADE -> "grade";
+                case HOMEROOM -> "homeroom";
+                case ROSTER -> "section";
+            };
+        }
+    }
+
+    @PostConstruct
+    public void initialize() {
+        cache = new ExpiringLruCache<>(CACHE_ENTRIES, Duration.ofSeconds(cacheTtlSeconds),
+                Duration.ofSeconds(negativeTtlSeconds), List::isEmpty);
+    }
+
+    // ===================== Resolution =====================
+
+    /**
+     * Parent tokens for {@code selector}, in SIS order without duplicates.
+     * Completes exceptionally if the SIS could not be read.
+     */
+    public CompletableFuture<List<String>> resolve(Selector selector) {
+        if (selector.scope() != Scope.ALL && (selector.value() == null || selector.value().isEmpty())) {
+            return CompletableFuture.failedFuture(
+                    new IllegalArgumentException("No " + selector.scope().name().toLowerCase() + " selected"));
+        }
+        return CompletableFuture.supplyAsync(() -> cache.get(selector, this::load), executors.io("recipients"));
+    }
+
+    public void invalidate(Selector selector) {
+        cache.invalidate(selector);
+    }
+
+    public ExpiringLruCache.Stats getCacheStats() {
+        return cache.stats();
+    }
+
+    private List<String> load(Selector selector) {
+        long start = System.nanoTime();
+        int size = Math.max(1, pageSize);
+        int wave = Math.max(1, parallelPages);
+        Set<String> tokens = new LinkedHashSet<>();
+
+        for (int first = 0; ; first += wave) {
+            List<CompletableFuture<List<ParentContactDTO>>> pages = new ArrayList<>(wave);
+            for (int page = first; page < first + wave; page++) {
+                int p = page;
+                pages.add(CompletableFuture.supplyAsync(
+                        () -> sisApiClient.fetchRecipients(selector.filter(), selector.value(), p, size),
+                        executors.io("sis")));
+            }
+
+            // Pages are merged in order so the result does not depend on timing
+            boolean done = false;
+            for (CompletableFuture<List<ParentContactDTO>> page : pages) {
+                List<ParentContactDTO> contacts = page.join();
+                if (contacts == null) {
+                    throw new IllegalStateException("Could not load recipients from the SIS");
+                }
+                for (ParentContactDTO contact : contacts) {
+                    if (contact.getParentToken() != null && !contact.getParentToken().isEmpty()) {
+                        tokens.add(contact.getParentToken());
+                    }
+                }
+                done |= contacts.size() < size;
+            }
+            if (done) break;
+            if (tokens.size() >= maxRecipients) {
+                throw new IllegalStateException("Selection exceeds " + maxRecipients + " recipients");
+            }
+        }
+
+        log.info("Resolved {} {} to {} parents in {} ms", selector.scope(), selector.value() != null ? selector.value() : "",
+                tokens.size(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        return List.copyOf(tokens);
+    }
+}
@@ -1,111 +1,365 @@
 package com.heronix.talkmodule.service;
 
-import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.heronix.talkmodule.config.ExecutorRegistry;
+import com.heronix.talkmodule.model.dto.ParentContactDTO;
+import com.heronix.talkmodule.model.dto.SisMessageHistoryDTO;
+import com.heronix.talkmodule.model.dto.SisStudentDTO;
+import com.heronix.talkmodule.network.HttpTransport;
+import com.heronix.talkmodule.util.ExpiringLruCache;
+import jakarta.annotation.PostConstruct;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.net.URI;
-import java.net.http.HttpClient;
+import java.net.URLEncoder;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
 import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
 
 /**
  * REST client for Heronix SIS Server API.
  * Used by TalkModule to search students and load parent contacts.
+ *
+ * Responses are cached (TTL plus LRU bound) so repeat lookups at the front
+ * desk are instant; empty results and failures are cached briefly, and
+ * concurrent identical lookups share one request. Parent contacts for search
+ * hits can be prefetched in the background. Responses are decoded into DTOs
+ * element by element straight from the response stream.
+ *
+ * When the SIS cannot be reached, searches and contact lookups are answered
+ * by the registered {@link OfflineDirectory}, if any, and those answers are
+ * cached only for the negative TTL.
  */
 @Slf4j
 @Service
 public class SisApiClient {
 
-    private final HttpClient httpClient;
+    private final HttpTransport transport;
     private final ObjectMapper objectMapper;
+    private final ExecutorRegistry executors;
 
     @Value("${heronix.sis.url:http://localhost:9590}")
     private String sisBaseUrl;
 
-    public SisApiClient(ObjectMapper objectMapper) {
+    @Value("${heronix.sis.search-page-size:25}")
+    private int searchPageSize;
+
+    @Value("${heronix.sis.history-limit:200}")
+    private int historyLimit;
+
+    @Value("${heronix.sis.cache.max-entries:500}")
+    private int cacheMaxEntries;
+
+    @Value("${heronix.sis.cache.ttl-seconds:300}")
+    private long cacheTtlSeconds;
+
+    @Value("${heronix.sis.cache.history-ttl-seconds:30}")
+    private long historyTtlSeconds;
+
+    @Value("${heronix.sis.cache.negative-ttl-seconds:15}")
+    private long negativeTtlSeconds;
+
+    @Value("${heronix.sis.cache.prefetch-contacts:true}")
+    private boolean prefetchContacts;
+
+    @Value("${heronix.sis.cache.prefetch-limit:10}")
+    private int prefetchLimit;
+
+    private ExpiringLruCache<SearchKey, List<SisStudentDTO>> searchCache;
+    private ExpiringLruCache<Long, List<ParentContactDTO>> contactsCache;
+    private ExpiringLruCache<Long, List<SisMessageHistoryDTO>> historyCache;
+
+    private volatile OfflineDirectory offlineDirectory;
+
+    private record SearchKey(String term, int page, int limit) {}
+
+    /**
+     * Local source of students and parent contacts used while the SIS is down.
+     */
+    public interface OfflineDirectory {
+        List<SisStudentDTO> searchStudents(String term, int page, int limit);
+
+        List<ParentContactDTO> getParentContacts(Long studentId);
+    }
+
+    public SisApiClient(ObjectMapper objectMapper, HttpTransport transport, ExecutorRegistry executors) {
         this.objectMapper = objectMapper;
-        this.httpClient = HttpClient.newBuilder()
-                .connectTimeout(Duration.ofSeconds(10))
-                .build();
+        this.transport = transport;
+        this.executors = executors;
+    }
+
+    @PostConstruct
+    public void initialize() {
+        Duration ttl = Duration.ofSeconds(cacheTtlSeconds);
+        Duration negativeTtl = Duration.ofSeconds(negativeTtlSeconds);
+        searchCache = new ExpiringLruCache<>(cacheMaxEntries, ttl, negativeTtl, SisApiClient::isNegative);
+        contactsCache = new ExpiringLruCache<>(cacheMaxEntries, ttl, negativeTtl, SisApiClient::isNegative);
+        historyCache = new ExpiringLruCache<>(cacheMaxEntries, Duration.ofSeconds(historyTtlSeconds), negativeTtl,
+                SisApiClient::isNegative);
+    }
+
+    public void setOfflineDirectory(OfflineDirectory offlineDirectory) {
+        this.offlineDirectory = offlineDirectory;
+    }
+
+    /**
+     * Failed, empty and provisional results are cached only for the negative TTL.
+     */
+    private static boolean isNegative(List<?> result) {
+        return result == null || result.isEmpty() || result instanceof Provisional<?>;
+    }
+
+    /**
+     * A result not answered in full by the SIS: an offline fallback or the part
+     * of a page streamed before the request failed.
+     */
+    private static final class Provisional<T> extends ArrayList<T> {
+        Provisional(List<T> items) {
+            super(items);
+        }
+    }
+
+    private static <T> List<T> orEmpty(List<T> result) {
+        return result != null ? result : List.of();
+    }
+
+    // ===================== Lookups =====================
+
+    /**
+     * Search students by name or ID, first page.
+     */
+    public List<SisStudentDTO> searchStudents(String searchTerm) {
+        return searchStudents(searchTerm, null).students();
+    }
+
+    public SisStudentDTO.Page searchStudents(String searchTerm, Consumer<SisStudentDTO> onStudent) {
+        return searchStudents(searchTerm, 0, searchPageSize, onStudent);
+    }
+
+    /**
+     * Search students by name or ID, one page at a time. {@code onStudent} (may
+     * be null) is called for each hit as it is decoded, on the calling thread,
+     * so a long result list can be shown before the response has finished.
+     */
+    public SisStudentDTO.Page searchStudents(String searchTerm, int page, int limit,
+                                             Consumer<SisStudentDTO> onStudent) {
+        SearchKey key = new SearchKey(searchTerm.trim().toLowerCase(Locale.ROOT), Math.max(0, page), Math.max(1, limit));
+        AtomicBoolean streamed = new AtomicBoolean();
+        Consumer<SisStudentDTO> sink = onStudent == null ? null : student -> {
+            streamed.set(true);
+            onStudent.accept(student);
+        };
+
+        List<SisStudentDTO> students = orEmpty(searchCache.get(key, k -> searchOrOffline(k, sink)));
+        if (onStudent != null && !streamed.get()) {
+            // Served from the cache or by another caller's request
+            students.forEach(onStudent);
+        }
+
+        if (prefetchContacts) {
+            students.stream()
+                    .limit(prefetchLimit)
+                    .map(SisStudentDTO::getId)
+                    .filter(Objects::nonNull)
+                    .forEach(id -> contactsCache.prefetch(id, this::contactsOrOffline, executors.io("sis")));
+        }
+        return new SisStudentDTO.Page(students, key.page(), key.limit(), students.size() >= key.limit());
+    }
+
+    /**
+     * Get parent/guardian contacts for a student, in priority order.
+     */
+    public List<ParentContactDTO> getParentContacts(Long studentId) {
+        return orEmpty(contactsCache.get(studentId, this::contactsOrOffline));
+    }
+
+    /**
+     * Get message history for a parent, newest first as returned by the SIS.
+     */
+    public List<SisMessageHistoryDTO> getMessageHistory(Long parentId) {
+        return orEmpty(historyCache.get(parentId, this::fetchMessageHistory));
+    }
+
+    /**
+     * Drop cached history, e.g. after sending a message.
+     */
+    public void invalidateMessageHistory(Long parentId) {
+        historyCache.invalidate(parentId);
+    }
+
+    public void clearCache() {
+        searchCache.invalidateAll();
+        contactsCache.invalidateAll();
+        historyCache.invalidateAll();
+    }
+
+    public CacheStats getCacheStats() {
+        return new CacheStats(searchCache.stats(), contactsCache.stats(), historyCache.stats());
+    }
+
+    public record CacheStats(ExpiringLruCache.Stats search, ExpiringLruCache.Stats contacts,
+                             ExpiringLruCache.Stats history) {}
+
+    private List<SisStudentDTO> searchOrOffline(SearchKey key, Consumer<SisStudentDTO> onStudent) {
+        List<SisStudentDTO> received = new ArrayList<>();
+        List<SisStudentDTO> students = fetchStudents(key, student -> {
+            received.add(student);
+            if (onStudent != null) {
+                onStudent.accept(student);
+            }
+        });
+        if (students != null) return students;
+        if (!received.isEmpty()) {
+            // Hits already shown can't be swapped for offline ones; keep what arrived
+            return new Provisional<>(received);
+        }
+        OfflineDirectory offline = offlineDirectory;
+        if (offline == null) return null;
+        students = offline.searchStudents(key.term(), key.page(), key.limit());
+        if (onStudent != null) {
+            students.forEach(onStudent);
+        }
+        return new Provisional<>(students);
     }
 
+    private List<ParentContactDTO> contactsOrOffline(Long studentId) {
+        List<ParentContactDTO> contacts = fetchParentContacts(studentId);
+        OfflineDirectory offline = offlineDirectory;
+        if (contacts != null || offline == null) return contacts;
+        return new Provisional<>(offline.getParentContacts(studentId));
+    }
+
+    // ===================== SIS Requests =====================
+    // Each returns null on failure so the miss is cached only briefly
+
     /**
-     * Search students by name or ID.
+     * Students changed after {@code since} (all students if null), oldest
+     * change first. Uncached; used to refresh the offline mirror.
      */
-    @SuppressWarnings("unchecked")
-    public List<Map<String, Object>> searchStudents(String searchTerm) {
+    List<SisStudentDTO> fetchStudentChanges(LocalDateTime since, int page, int size) {
         try {
-            String url = sisBaseUrl + "/api/search/students?query=" + java.net.URLEncoder.encode(searchTerm, "UTF-8");
-            HttpRequest request = HttpRequest.newBuilder()
-                    .uri(URI.create(url))
-                    .timeout(Duration.ofSeconds(10))
-                    .GET()
-                    .build();
-
-            HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
-            if (response.statusCode() == 200) {
-                return objectMapper.readValue(response.body(), new TypeReference<>() {});
+            String url = sisBaseUrl + "/api/students/changes?page=" + page + "&size=" + size
+                    + (since != null ? "&since=" + URLEncoder.encode(since.toString(), StandardCharsets.UTF_8) : "");
+            return readArray(get(url), SisStudentDTO.class, size, null);
+        } catch (Exception e) {
+            log.error("Failed to load student changes: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    private List<SisStudentDTO> fetchStudents(SearchKey key, Consumer<SisStudentDTO> onStudent) {
+        try {
+            String url = sisBaseUrl + "/api/search/students?query=" + URLEncoder.encode(key.term(), StandardCharsets.UTF_8)
+                    + "&page=" + key.page() + "&size=" + key.limit();
+            List<SisStudentDTO> students = readArray(get(url), SisStudentDTO.class, key.limit(), onStudent);
+            if (students == null) {
+                log.warn("Student search for '{}' failed", key.term());
             }
-            log.warn("Student search returned status {}", response.statusCode());
-            return List.of();
+            return students;
         } catch (Exception e) {
             log.error("Failed to search students: {}", e.getMessage());
-            return List.of();
+            return null;
         }
     }
 
     /**
-     * Get parent/guardian contacts for a student.
+     * One page of parent contacts for every student matching {@code filter}
+     * (grade, homeroom or section), or for all students if null. Uncached;
+     * used to resolve bulk recipients.
      */
-    @SuppressWarnings("unchecked")
-    public List<Map<String, Object>> getParentContacts(Long studentId) {
+    List<ParentContactDTO> fetchRecipients(String filter, String value, int page, int size) {
+        try {
+            String url = sisBaseUrl + "/api/parent-guardian/recipients?page=" + page + "&size=" + size
+                    + (filter != null ? "&" + filter + "=" + URLEncoder.encode(value, StandardCharsets.UTF_8) : "");
+            return readArray(get(url), ParentContactDTO.class, size, null);
+        } catch (Exception e) {
+            log.error("Failed to load recipients: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    List<ParentContactDTO> fetchParentContacts(Long studentId) {
         try {
             String url = sisBaseUrl + "/api/parent-guardian/student/" + studentId + "/parents";
-            HttpRequest request = HttpRequest.newBuilder()
-                    .uri(URI.create(url))
-                    .timeout(Duration.ofSeconds(10))
-                    .GET()
-                    .build();
-
-            HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
-            if (response.statusCode() == 200) {
-                return objectMapper.readValue(response.body(), new TypeReference<>() {});
+            List<ParentContactDTO> contacts = readArray(get(url), ParentContactDTO.class, Integer.MAX_VALUE, null);
+            if (contacts == null) {
+                log.warn("Parent contacts for student {} failed", studentId);
+                return null;
+            }
+            int priority = 1;
+            for (ParentContactDTO contact : contacts) {
+                contact.setStudentId(studentId);
+                contact.setPriority(priority++);
+                if (contact.getPreferredContactMethod() == null) {
+                    contact.setPreferredContactMethod("EMAIL");
+                }
             }
-            log.warn("Parent contacts returned status {}", response.statusCode());
-            return List.of();
+            return contacts;
         } catch (Exception e) {
             log.error("Failed to load parent contacts: {}", e.getMessage());
-            return List.of();
+            return null;
         }
     }
 
-    /**
-     * Get message history for a parent.
-     */
-    @SuppressWarnings("unchecked")
-    public List<Map<String, Object>> getMessageHistory(Long parentId) {
+    private List<SisMessageHistoryDTO> fetchMessageHistory(Long parentId) {
         try {
             String url = sisBaseUrl + "/api/parent-communications/history?parentId=" + parentId;
-            HttpRequest request = HttpRequest.newBuilder()
-                    .uri(URI.create(url))
-                    .timeout(Duration.ofSeconds(10))
-                    .GET()
-                    .build();
-
-            HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
-            if (response.statusCode() == 200) {
-                return objectMapper.readValue(response.body(), new TypeReference<>() {});
-            }
-            return List.of();
+            return readArray(get(url), SisMessageHistoryDTO.class, historyLimit, null);
         } catch (Exception e) {
             log.error("Failed to load message history: {}", e.getMessage());
-            return List.of();
+            return null;
+        }
+    }
+
+    private static HttpRequest get(String url) {
+        return HttpRequest.newBuilder()
+                .uri(URI.create(url))
+                .timeout(Duration.ofSeconds(10))
+                .GET()
+                .build();
+    }
+
+    /**
+     * Decode a JSON array element by element straight from the response
+     * stream, stopping after {@code limit} items. Returns null unless the
+     * status is 200.
+     */
+    private <T> List<T> readArray(HttpRequest request, Class<T> type, int limit, Consumer<T> onItem)
+            throws IOException, InterruptedException {
+        HttpResponse<InputStream> response = transport.send(request, HttpResponse.BodyHandlers.ofInputStream());
+        try (InputStream body = response.body()) {
+            if (response.statusCode() != 200) {
+                log.warn("SIS {} returned status {}", request.uri().getPath(), response.statusCode());
+                return null;
+            }
+            try (JsonParser parser = objectMapper.createParser(body)) {
+                if (parser.nextToken() != JsonToken.START_ARRAY) {
+                    throw new IOException("Expected a JSON array from " + request.uri().getPath());
+                }
+                List<T> items = new ArrayList<>();
+                while (items.size() < limit && parser.nextToken() == JsonToken.START_OBJECT) {
+                    T item = objectMapper.readValue(parser, type);
+                    items.add(item);
+                    if (onItem != null) {
+                        onItem.accept(item);
+                    }
+                }
+                return items;
+            }
         }
     }
 }
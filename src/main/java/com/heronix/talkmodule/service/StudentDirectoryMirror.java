@@ -0,0 +1,420 @@
+package com.heronix.talkmodule.service;
+
+import com.heronix.talkmodule.config.ExecutorRegistry;
+import com.heronix.talkmodule.model.domain.MirroredParentContact;
+import com.heronix.talkmodule.model.domain.MirroredStudent;
+import com.heronix.talkmodule.model.dto.ParentContactDTO;
+import com.heronix.talkmodule.model.dto.SisStudentDTO;
+import com.heronix.talkmodule.repository.MirroredParentContactRepository;
+import com.heronix.talkmodule.repository.MirroredStudentRepository;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Optional local mirror of SIS students and parent contacts, so parent
+ * communication keeps working while the SIS is unreachable.
+ *
+ * Students are refreshed incrementally from the SIS change feed, using the
+ * newest change already mirrored as the watermark; parent contacts are
+ * reloaded in batches for students that changed. Parents are stored by token
+ * only (see {@link MirroredParentContact}).
+ *
+ * Searches are served from an immutable in-memory prefix index over names,
+ * student IDs and grades ({@code grade:9}), rebuilt after each refresh. The
+ * mirror is capped at {@code max-students} students and
+ * {@code max-contacts-per-student} contacts each.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class StudentDirectoryMirror implements SisApiClient.OfflineDirectory {
+
+    private final SisApiClient sisApiClient;
+    private final MirroredStudentRepository studentRepository;
+    private final MirroredParentContactRepository contactRepository;
+    private final PlatformTransactionManager transactionManager;
+    private final ExecutorRegistry executors;
+
+    @Value("${heronix.sis.mirror.enabled:false}")
+    private boolean enabled;
+
+    @Value("${heronix.sis.mirror.page-size:500}")
+    private int pageSize;
+
+    @Value("${heronix.sis.mirror.max-students:25000}")
+    private int maxStudents;
+
+    @Value("${heronix.sis.mirror.max-contacts-per-student:6}")
+    private int maxContactsPerStudent;
+
+    @Value("${heronix.sis.mirror.contacts-batch-size:500}")
+    private int contactsBatchSize;
+
+    private static final String GRADE_PREFIX = "grade:";
+    private static final int LOAD_BATCH = 2000;
+
+    private volatile DirectoryIndex index = DirectoryIndex.EMPTY;
+    private volatile LocalDateTime lastRefresh;
+    private final AtomicBoolean refreshing = new AtomicBoolean();
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) return;
+        sisApiClient.setOfflineDirectory(this);
+        executors.io("sis-mirror").execute(this::rebuildIndex);
+    }
+
+    // ===================== Offline Lookups =====================
+
+    /**
+     * Students whose name, student ID or grade match every word of
+     * {@code term} by prefix; {@code grade:} words must match exactly.
+     */
+    @Override
+    public List<SisStudentDTO> searchStudents(String term, int page, int limit) {
+        return index.search(tokenize(term), Math.max(0, page) * Math.max(1, limit), Math.max(1, limit));
+    }
+
+    @Override
+    public List<ParentContactDTO> getParentContacts(Long studentId) {
+        if (studentId == null) return List.of();
+        return contactRepository.findByStudentSisIdOrderByPriorityAsc(studentId).stream()
+                .map(StudentDirectoryMirror::toContact)
+                .toList();
+    }
+
+    private static ParentContactDTO toContact(MirroredParentContact row) {
+        return ParentContactDTO.builder()
+                .parentToken(row.getParentToken())
+                .firstName(row.getFirstName())
+                .lastName(row.getLastName())
+                .relationshipType(row.getRelationshipType())
+                .preferredContactMethod(row.getPreferredContactMethod())
+                .priority(row.getPriority())
+                .studentId(row.getStudentSisId())
+                .emergencyContact(row.isEmergencyContact())
+                .receiveSchoolCommunication(row.isReceiveSchoolCommunication())
+                .receiveEmergencyAlerts(row.isReceiveEmergencyAlerts())
+                .receiveEmailNotifications(row.isReceiveEmailNotifications())
+                .receiveTextNotifications(row.isReceiveTextNotifications())
+                .build();
+    }
+
+    // ===================== Refresh =====================
+
+    /**
+     * Hands the refresh to the mirror's own thread, so the shared scheduler
+     * thread is not held up by SIS round trips.
+     */
+    @Scheduled(fixedDelayString = "${heronix.sis.mirror.refresh-minutes:15}",
+               initialDelayString = "${heronix.sis.mirror.initial-delay-minutes:1}", timeUnit = TimeUnit.MINUTES)
+    public void refresh() {
+        if (!enabled || !refreshing.compareAndSet(false, true)) return;
+        try {
+            executors.io("sis-mirror").execute(this::runRefresh);
+        } catch (RejectedExecutionException e) {
+            refreshing.set(false);
+        }
+    }
+
+    private void runRefresh() {
+        long start = System.nanoTime();
+        try {
+            int changed = refreshStudents();
+            int contacts = refreshContacts();
+            if (changed > 0) {
+                rebuildIndex();
+            }
+            lastRefresh = LocalDateTime.now();
+            if (changed > 0 || contacts > 0) {
+                log.info("Student mirror refreshed: {} students changed, contacts reloaded for {} in {} ms",
+                        changed, contacts, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            }
+        } catch (Exception e) {
+            log.error("Student mirror refresh failed", e);
+        } finally {
+            refreshing.set(false);
+        }
+    }
+
+    /**
+     * Apply the SIS change feed page by page. Each page is committed on its
+     * own, so an interrupted refresh resumes from the last saved change.
+     */
+    private int refreshStudents() {
+        LocalDateTime since = studentRepository.findLatestSourceUpdate();
+        long size = studentRepository.count();
+        int changed = 0;
+        int skipped = 0;
+        for (int page = 0; ; page++) {
+            List<SisStudentDTO> batch = sisApiClient.fetchStudentChanges(since, page, pageSize);
+            if (batch == null) {
+                log.warn("SIS unreachable; student mirror left as of {}", since);
+                break;
+            }
+            long room = maxStudents - size;
+            int[] result = new TransactionTemplate(transactionManager).execute(tx -> applyChanges(batch, room));
+            size += result[1];
+            changed += result[0];
+            skipped += result[2];
+            if (batch.size() < pageSize) break;
+        }
+        if (skipped > 0) {
+            log.warn("Student mirror is full ({} students); {} new students not mirrored", maxStudents, skipped);
+        }
+        return changed;
+    }
+
+    /**
+     * Returns {changed, net students added, skipped}.
+     */
+    private int[] applyChanges(List<SisStudentDTO> batch, long room) {
+        List<Long> ids = batch.stream().map(SisStudentDTO::getId).filter(Objects::nonNull).toList();
+        Map<Long, MirroredStudent> existing = studentRepository.findAllById(ids).stream()
+                .collect(Collectors.toMap(MirroredStudent::getId, Function.identity()));
+
+        LocalDateTime now = LocalDateTime.now();
+        List<MirroredStudent> upserts = new ArrayList<>();
+        List<Long> removed = new ArrayList<>();
+        int added = 0;
+        int skipped = 0;
+        for (SisStudentDTO student : batch) {
+            if (student.getId() == null) continue;
+            MirroredStudent row = existing.get(student.getId());
+            if (Boolean.FALSE.equals(student.getActive())) {
+                if (row != null) removed.add(row.getId());
+                continue;
+            }
+            if (row == null) {
+                if (added >= room) {
+                    skipped++;
+                    continue;
+                }
+                row = MirroredStudent.builder().id(student.getId()).build();
+                added++;
+            }
+            row.setStudentId(student.getStudentId());
+            row.setFirstName(student.getFirstName());
+            row.setLastName(student.getLastName());
+            row.setGradeLevel(student.getGradeLevel());
+            row.setSourceUpdatedAt(student.getUpdatedAt());
+            row.setSyncedAt(now);
+            row.setContactsStale(true);
+            upserts.add(row);
+        }
+
+        studentRepository.saveAll(upserts);
+        if (!removed.isEmpty()) {
+            contactRepository.deleteByStudentSisIdIn(removed);
+            studentRepository.deleteAllByIdInBatch(removed);
+        }
+        return new int[] {upserts.size() + removed.size(), added - removed.size(), skipped};
+    }
+
+    /**
+     * Reload contacts for every changed student, in batches, so the first
+     * backfill completes in one refresh. Stops at the first failure, since
+     * the SIS is then likely down; the rest stay stale for the next refresh.
+     */
+    private int refreshContacts() {
+        int batchSize = Math.max(1, contactsBatchSize);
+        int reloaded = 0;
+        while (true) {
+            List<MirroredStudent> stale = studentRepository.findContactsStale(PageRequest.of(0, batchSize));
+            int done = refreshContacts(stale);
+            reloaded += done;
+            if (done < batchSize) return reloaded;
+        }
+    }
+
+    private int refreshContacts(List<MirroredStudent> stale) {
+        int reloaded = 0;
+        for (MirroredStudent student : stale) {
+            List<ParentContactDTO> contacts = sisApiClient.fetchParentContacts(student.getId());
+            if (contacts == null) break;
+            List<MirroredParentContact> rows = contacts.stream()
+                    .filter(c -> c.getParentToken() != null && !c.getParentToken().isEmpty())
+                    .limit(maxContactsPerStudent)
+                    .map(c -> toRow(student.getId(), c))
+                    .toList();
+            new TransactionTemplate(transactionManager).executeWithoutResult(tx -> {
+                contactRepository.deleteByStudentSisIdIn(List.of(student.getId()));
+                contactRepository.saveAll(rows);
+                student.setContactsStale(false);
+                studentRepository.save(student);
+            });
+            reloaded++;
+        }
+        return reloaded;
+    }
+
+    private static MirroredParentContact toRow(Long studentSisId, ParentContactDTO contact) {
+        return MirroredParentContact.builder()
+                .studentSisId(studentSisId)
+                .parentToken(contact.getParentToken())
+                .firstName(contact.getFirstName())
+                .lastName(contact.getLastName())
+                .relationshipType(contact.getRelationshipType())
+                .preferredContactMethod(contact.getPreferredContactMethod())
+                .priority(contact.getPriority())
+                .emergencyContact(contact.isEmergencyContact())
+                .receiveSchoolCommunication(contact.isReceiveSchoolCommunication())
+                .receiveEmergencyAlerts(contact.isReceiveEmergencyAlerts())
+                .receiveEmailNotifications(contact.isReceiveEmailNotifications())
+                .receiveTextNotifications(contact.isReceiveTextNotifications())
+                .build();
+    }
+
+    // ===================== Index =====================
+
+    private void rebuildIndex() {
+        try {
+            List<IndexedStudent> students = new ArrayList<>();
+            for (int page = 0; ; page++) {
+                List<MirroredStudent> batch = studentRepository.findAll(
+                        PageRequest.of(page, LOAD_BATCH, Sort.by("id"))).getContent();
+                batch.forEach(s -> students.add(IndexedStudent.of(s)));
+                if (batch.size() < LOAD_BATCH) break;
+            }
+            index = new DirectoryIndex(students);
+            log.debug("Student mirror index rebuilt: {} students, {} keys", students.size(), index.keys.length);
+        } catch (Exception e) {
+            log.error("Could not build student mirror index", e);
+        }
+    }
+
+    private static String[] tokenize(String text) {
+        if (text == null) return new String[0];
+        return Arrays.stream(text.toLowerCase(Locale.ROOT).trim().split("[\\s,]+"))
+                .filter(t -> !t.isEmpty())
+                .toArray(String[]::new);
+    }
+
+    private static boolean matches(String key, String token) {
+        return token.startsWith(GRADE_PREFIX) ? key.equals(token) : key.startsWith(token);
+    }
+
+    private record IndexedStudent(Long id, String studentId, String firstName, String lastName, String gradeLevel,
+                                  String[] keys) {
+
+        static IndexedStudent of(MirroredStudent s) {
+            List<String> keys = new ArrayList<>();
+            for (String name : new String[] {s.getFirstName(), s.getLastName()}) {
+                if (name == null) continue;
+                for (String part : name.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}']+")) {
+                    if (!part.isEmpty()) keys.add(part);
+                }
+            }
+            if (s.getStudentId() != null && !s.getStudentId().isBlank()) {
+                keys.add(s.getStudentId().toLowerCase(Locale.ROOT).trim());
+            }
+            if (s.getGradeLevel() != null && !s.getGradeLevel().isBlank()) {
+                keys.add(GRADE_PREFIX + s.getGradeLevel().toLowerCase(Locale.ROOT).trim());
+            }
+            return new IndexedStudent(s.getId(), s.getStudentId(), s.getFirstName(), s.getLastName(),
+                    s.getGradeLevel(), keys.stream().distinct().toArray(String[]::new));
+        }
+
+        boolean matchesAll(String[] tokens) {
+            for (String token : tokens) {
+                if (Arrays.stream(keys).noneMatch(key -> matches(key, token))) return false;
+            }
+            return true;
+        }
+
+        SisStudentDTO toDto() {
+            return SisStudentDTO.builder()
+                    .id(id).studentId(studentId).firstName(firstName).lastName(lastName).gradeLevel(gradeLevel)
+                    .build();
+        }
+    }
+
+    /**
+     * Sorted keys with the student each belongs to. A search binary-searches
+     * the first word's prefix range and filters those students by the rest,
+     * so it touches only the students sharing that prefix.
+     */
+    private static final class DirectoryIndex {
+        static final DirectoryIndex EMPTY = new DirectoryIndex(List.of());
+
+        final IndexedStudent[] students;
+        final String[] keys;
+        final int[] owners;
+
+        DirectoryIndex(List<IndexedStudent> list) {
+            students = list.toArray(IndexedStudent[]::new);
+            List<KeyRef> refs = new ArrayList<>();
+            for (int i = 0; i < students.length; i++) {
+                for (String key : students[i].keys()) {
+                    refs.add(new KeyRef(key, i));
+                }
+            }
+            refs.sort(Comparator.comparing(KeyRef::key));
+            keys = new String[refs.size()];
+            owners = new int[refs.size()];
+            for (int i = 0; i < keys.length; i++) {
+                keys[i] = refs.get(i).key();
+                owners[i] = refs.get(i).owner();
+            }
+        }
+
+        private record KeyRef(String key, int owner) {}
+
+        List<SisStudentDTO> search(String[] tokens, int offset, int limit) {
+            if (tokens.length == 0) return List.of();
+            String first = tokens[0];
+            int from = Arrays.binarySearch(keys, first);
+            if (from < 0) from = -from - 1;
+
+            BitSet seen = new BitSet(students.length);
+            List<SisStudentDTO> results = new ArrayList<>();
+            int skipped = 0;
+            for (int i = from; i < keys.length && keys[i].startsWith(first) && results.size() < limit; i++) {
+                if (!matches(keys[i], first) || seen.get(owners[i])) continue;
+                seen.set(owners[i]);
+                IndexedStudent student = students[owners[i]];
+                if (!student.matchesAll(tokens)) continue;
+                if (skipped++ < offset) continue;
+                results.add(student.toDto());
+            }
+            return results;
+        }
+    }
+
+    // ===================== Metrics =====================
+
+    public MirrorStats getStats() {
+        return new MirrorStats(enabled, studentRepository.count(), contactRepository.count(),
+                studentRepository.countByContactsStaleTrue(), index.students.length, lastRefresh);
+    }
+
+    /**
+     * {@code contactsPending} counts students whose contacts have not been
+     * loaded since they last changed.
+     */
+    public record MirrorStats(boolean enabled, long students, long contacts, long contactsPending, int indexed,
+                              LocalDateTime lastRefresh) {}
+}
@@ -0,0 +1,205 @@
+package com.heronix.talkmodule.service;
+
+import com.heronix.talkmodule.network.WebSocketClient;
+import com.heronix.talkmodule.util.LatencyHistogram;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps the set of channels this client wants real-time events for and keeps
+ * the server in step with it.
+ *
+ * Callers only change the desired set. Whenever a connection opens, every
+ * desired channel is joined with one batched JOIN frame; while connected,
+ * changes are diffed against what the server already has and sent as at most
+ * one JOIN and one LEAVE frame. JOIN events echoing channels this client
+ * joined are recognised as acknowledgements. The time from a reconnect to
+ * the server acknowledging every restored subscription is recorded in
+ * {@link #getRestoreLatency()}.
+ */
+@Service
+@Slf4j
+public class SubscriptionManager {
+
+    private final LatencyHistogram restoreLatency = new LatencyHistogram();
+
+    // Guarded by this
+    private final Set<Long> desired = new LinkedHashSet<>();
+    private final Set<Long> subscribed = new LinkedHashSet<>();
+    private final Set<Long> awaitingAck = new HashSet<>();
+    private final Set<Long> restoreBatch = new HashSet<>();
+    private WebSocketClient client;
+    private boolean reconnect;
+    private long restoreStartedNanos;
+
+    private final AtomicLong joinFramesSent = new AtomicLong();
+    private final AtomicLong leaveFramesSent = new AtomicLong();
+    private final AtomicLong framesSaved = new AtomicLong();
+
+    // ===================== Desired Set =====================
+
+    /**
+     * Replace the desired set, e.g. with the active channel list.
+     */
+    public void setChannels(Collection<Long> channelIds) {
+        synchronized (this) {
+            desired.clear();
+            for (Long id : channelIds) {
+                if (id != null) desired.add(id);
+            }
+        }
+        sync();
+    }
+
+    public void subscribe(Long channelId) {
+        if (channelId == null) return;
+        synchronized (this) {
+            if (!desired.add(channelId) && (client == null || subscribed.contains(channelId))) {
+                framesSaved.incrementAndGet();
+                return;
+            }
+        }
+        sync();
+    }
+
+    public void unsubscribe(Long channelId) {
+        if (channelId == null) return;
+        synchronized (this) {
+            if (!desired.remove(channelId)) return;
+        }
+        sync();
+    }
+
+    public synchronized boolean isSubscribed(Long channelId) {
+        return subscribed.contains(channelId);
+    }
+
+    // ===================== Connection =====================
+
+    /**
+     * A connection opened: the server holds no subscriptions for it yet.
+     */
+    public void connected(WebSocketClient webSocketClient) {
+        synchronized (this) {
+            client = webSocketClient;
+            subscribed.clear();
+            awaitingAck.clear();
+            restoreBatch.clear();
+            restoreStartedNanos = reconnect && !desired.isEmpty() ? System.nanoTime() : 0;
+            reconnect = true;
+        }
+        sync();
+    }
+
+    public synchronized void disconnected() {
+        client = null;
+        subscribed.clear();
+        awaitingAck.clear();
+        restoreBatch.clear();
+        restoreStartedNanos = 0;
+    }
+
+    /**
+     * A JOIN event arrived for {@code channelIds}. Returns true if it echoes a
+     * JOIN this client sent; anything else (e.g. being added to a channel) is
+     * news to the caller. The restore ends once every channel in the batch
+     * sent after a reconnect has been echoed.
+     */
+    public boolean joinAcknowledged(Collection<Long> channelIds) {
+        long started = 0;
+        int channels = 0;
+        synchronized (this) {
+            if (channelIds.isEmpty() || !awaitingAck.containsAll(channelIds)) {
+                return false;
+            }
+            awaitingAck.removeAll(channelIds);
+            if (restoreStartedNanos != 0 && restoreBatch.removeAll(channelIds) && restoreBatch.isEmpty()) {
+                started = restoreStartedNanos;
+                channels = subscribed.size();
+                restoreStartedNanos = 0;
+            }
+        }
+        if (started != 0) {
+            long millis = (System.nanoTime() - started) / 1_000_000;
+            restoreLatency.record(millis);
+            log.info("Restored {} channel subscriptions in {} ms", channels, millis);
+        }
+        return true;
+    }
+
+    /**
+     * Forget everything, e.g. on logout.
+     */
+    public synchronized void reset() {
+        desired.clear();
+        subscribed.clear();
+        awaitingAck.clear();
+        restoreBatch.clear();
+        reconnect = false;
+        restoreStartedNanos = 0;
+    }
+
+    // ===================== Diff =====================
+
+    private void sync() {
+        WebSocketClient target;
+        List<Long> joins = new ArrayList<>();
+        List<Long> leaves = new ArrayList<>();
+
+        synchronized (this) {
+            target = client;
+            if (target == null) return;
+            for (Long id : desired) {
+                if (!subscribed.contains(id)) joins.add(id);
+            }
+            for (Long id : subscribed) {
+                if (!desired.contains(id)) leaves.add(id);
+            }
+            subscribed.addAll(joins);
+            leaves.forEach(subscribed::remove);
+            awaitingAck.addAll(joins);
+            leaves.forEach(awaitingAck::remove);
+            if (restoreStartedNanos != 0 && restoreBatch.isEmpty()) {
+                restoreBatch.addAll(joins);
+            }
+        }
+
+        if (!joins.isEmpty()) {
+            target.updateSubscriptions("JOIN", joins);
+            joinFramesSent.incrementAndGet();
+            framesSaved.addAndGet(joins.size() - 1);
+            log.debug("Joined {} channels", joins.size());
+        }
+        if (!leaves.isEmpty()) {
+            target.updateSubscriptions("LEAVE", leaves);
+            leaveFramesSent.incrementAndGet();
+            framesSaved.addAndGet(leaves.size() - 1);
+            log.debug("Left {} channels", leaves.size());
+        }
+    }
+
+    // ===================== Metrics =====================
+
+    /**
+     * Time from a reconnect to the server acknowledging the batched JOIN, in milliseconds.
+     */
+    public LatencyHistogram getRestoreLatency() {
+        return restoreLatency;
+    }
+
+    public synchronized SubscriptionStats getStats() {
+        return new SubscriptionStats(desired.size(), subscribed.size(),
+                joinFramesSent.get(), leaveFramesSent.get(), framesSaved.get());
+    }
+
+    public record SubscriptionStats(int desiredChannels, int subscribedChannels,
+                                    long joinFramesSent, long leaveFramesSent, long framesSaved) {}
+}
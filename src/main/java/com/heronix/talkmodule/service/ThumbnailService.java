@@ -0,0 +1,317 @@
+package com.heronix.talkmodule.service;
+
+import com.heronix.talkmodule.config.ExecutorRegistry;
+import com.heronix.talkmodule.model.domain.LocalMessage;
+import com.heronix.talkmodule.repository.LocalMessageRepository;
+import jakarta.annotation.PostConstruct;
+import javafx.scene.image.Image;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritableImage;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Background thumbnail pipeline for image attachments.
+ *
+ * Images are decoded off the FX thread at thumbnail size, stored on disk under
+ * {@code data-dir/thumbnails} keyed by the attachment's content hash, and kept
+ * in an in-memory LRU bounded by total pixel count. The message list asks for
+ * thumbnails by local message id and prefetches rows just outside the viewport.
+ * Messages without a usable image are remembered for {@code failure-ttl-seconds}
+ * so repeated renders do not retry them.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ThumbnailService {
+
+    private static final int THUMBNAIL_MAGIC = 0x48544e31; // "HTN1"
+    private static final int MAX_PREFETCH_IN_FLIGHT = 32;
+    private static final int MAX_FAILURES_TRACKED = 1024;
+
+    private final LocalMessageRepository messageRepository;
+    private final AttachmentService attachmentService;
+    private final ExecutorRegistry executors;
+    private final BlobStore blobStore;
+
+    @Value("${heronix.database.data-dir:./data}")
+    private String dataDirectory;
+
+    @Value("${heronix.thumbnails.max-size:240}")
+    private int maxSize;
+
+    @Value("${heronix.thumbnails.memory-megapixels:16}")
+    private int memoryMegapixels;
+
+    @Value("${heronix.thumbnails.failure-ttl-seconds:30}")
+    private long failureTtlSeconds;
+
+    @Value("${heronix.thumbnails.prefetch-rows:10}")
+    @Getter
+    private int prefetchRows;
+
+    private Path thumbnailDir;
+    private ExecutorService decodeExecutor;
+
+    // Content hash -> decoded thumbnail, access ordered; guarded by this
+    private final LinkedHashMap<String, Image> memoryCache = new LinkedHashMap<>(64, 0.75f, true);
+    private long cachedPixels = 0;
+
+    // Local message id -> content hash, so repeat lookups skip the database
+    private final Map<Long, String> hashByMessage = new ConcurrentHashMap<>();
+    private final Map<Long, CompletableFuture<Image>> inFlight = new ConcurrentHashMap<>();
+
+    // Local message id -> System.nanoTime() until which a failed lookup is not retried
+    private final Map<Long, Long> failedUntil = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void initialize() {
+        thumbnailDir = Paths.get(dataDirectory, "thumbnails");
+        try {
+            Files.createDirectories(thumbnailDir);
+        } catch (IOException e) {
+            log.error("Failed to create thumbnail directory", e);
+        }
+
+        // Image decoding is CPU-bound
+        decodeExecutor = executors.cpu();
+    }
+
+    // ===================== Lookup =====================
+
+    /**
+     * Thumbnail already decoded in memory, or empty. Safe to call from cell rendering.
+     */
+    public Optional<Image> getCached(long localId) {
+        String hash = hashByMessage.get(localId);
+        if (hash == null) return Optional.empty();
+        synchronized (this) {
+            return Optional.ofNullable(memoryCache.get(hash));
+        }
+    }
+
+    /**
+     * Load the thumbnail for a message's image attachment. Completes with
+     * {@code null} when the message has no usable image.
+     */
+    public CompletableFuture<Image> load(long localId) {
+        if (localId < 0) {
+            return CompletableFuture.completedFuture(null);
+        }
+        Optional<Image> cached = getCached(localId);
+        if (cached.isPresent()) {
+            return CompletableFuture.completedFuture(cached.get());
+        }
+        if (recentlyFailed(localId)) {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        CompletableFuture<Image> created = new CompletableFuture<>();
+        CompletableFuture<Image> existing = inFlight.putIfAbsent(localId, created);
+        if (existing != null) {
+            return existing;
+        }
+
+        try {
+            decodeExecutor.execute(() -> {
+                CompletableFuture<Image> resolved;
+                try {
+                    resolved = resolve(localId);
+                } catch (RuntimeException e) {
+                    // e.g. the repository lookup failed before any future existed
+                    resolved = CompletableFuture.failedFuture(e);
+                }
+                resolved.whenComplete((image, error) -> finish(localId, created, image, error));
+            });
+        } catch (RejectedExecutionException e) {
+            finish(localId, created, null, e);
+        }
+        return created;
+    }
+
+    private void finish(long localId, CompletableFuture<Image> created, Image image, Throwable error) {
+        inFlight.remove(localId, created);
+        if (error != null) {
+            log.debug("Thumbnail for message {} failed: {}", localId, error.getMessage());
+        }
+        if (image == null) {
+            rememberFailure(localId);
+        }
+        created.complete(error != null ? null : image);
+    }
+
+    /**
+     * Warm the cache for a message that is about to scroll into view.
+     */
+    public void prefetch(long localId) {
+        if (inFlight.size() >= MAX_PREFETCH_IN_FLIGHT || getCached(localId).isPresent() || recentlyFailed(localId)) return;
+        load(localId);
+    }
+
+    private boolean recentlyFailed(long localId) {
+        Long until = failedUntil.get(localId);
+        if (until == null) return false;
+        if (System.nanoTime() - until < 0) return true;
+        failedUntil.remove(localId, until);
+        return false;
+    }
+
+    private void rememberFailure(long localId) {
+        long now = System.nanoTime();
+        if (failedUntil.size() >= MAX_FAILURES_TRACKED) {
+            failedUntil.values().removeIf(until -> now - until >= 0);
+        }
+        failedUntil.put(localId, now + TimeUnit.SECONDS.toNanos(failureTtlSeconds));
+    }
+
+    private CompletableFuture<Image> resolve(long localId) {
+        Optional<LocalMessage> message = messageRepository.findById(localId);
+        if (message.isEmpty() || !message.get().hasAttachment()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        LocalMessage m = message.get();
+
+        // A thumbnail on disk is enough, even if the full image was evicted
+        String knownHash = blobStore.hashForRemotePath(m.getAttachmentPath());
+        if (knownHash != null) {
+            Image fromDisk = readThumbnail(knownHash);
+            if (fromDisk != null) {
+                remember(localId, knownHash, fromDisk);
+                return CompletableFuture.completedFuture(fromDisk);
+            }
+        }
+
+        long size = m.getAttachmentSize() != null ? m.getAttachmentSize() : -1;
+        return attachmentService.download(m.getAttachmentPath(), m.getAttachmentName(), size)
+                .thenApplyAsync(blobPath -> {
+                    String hash = blobPath.getFileName().toString();
+                    Image image = readThumbnail(hash);
+                    if (image == null) {
+                        image = decode(blobPath);
+                        if (image == null) return null;
+                        writeThumbnail(hash, image);
+                    }
+                    remember(localId, hash, image);
+                    return image;
+                }, decodeExecutor);
+    }
+
+    // ===================== Decode =====================
+
+    /**
+     * Decode at thumbnail size so only the scaled bitmap is retained.
+     */
+    private Image decode(Path source) {
+        Image image = new Image(source.toUri().toString(), maxSize, maxSize, true, true, false);
+        if (image.isError()) {
+            log.debug("Could not decode image {}: {}", source.getFileName(),
+                    image.getException() != null ? image.getException().getMessage() : "unknown");
+            return null;
+        }
+        return image;
+    }
+
+    // ===================== Disk Cache =====================
+
+    private Path thumbnailFile(String hash) {
+        return thumbnailDir.resolve(hash + "-" + maxSize + ".thumb");
+    }
+
+    private Image readThumbnail(String hash) {
+        Path file = thumbnailFile(hash);
+        if (!Files.exists(file)) return null;
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new InflaterInputStream(Files.newInputStream(file))))) {
+            if (in.readInt() != THUMBNAIL_MAGIC) return null;
+            int width = in.readInt();
+            int height = in.readInt();
+            int[] pixels = new int[width * height];
+            for (int i = 0; i < pixels.length; i++) {
+                pixels[i] = in.readInt();
+            }
+            WritableImage image = new WritableImage(width, height);
+            image.getPixelWriter().setPixels(0, 0, width, height, PixelFormat.getIntArgbInstance(), pixels, 0, width);
+            return image;
+        } catch (IOException e) {
+            log.debug("Discarding unreadable thumbnail {}: {}", file.getFileName(), e.getMessage());
+            return null;
+        }
+    }
+
+    private void writeThumbnail(String hash, Image image) {
+        int width = (int) image.getWidth();
+        int height = (int) image.getHeight();
+        if (width <= 0 || height <= 0 || image.getPixelReader() == null) return;
+
+        int[] pixels = new int[width * height];
+        image.getPixelReader().getPixels(0, 0, width, height, PixelFormat.getIntArgbInstance(), pixels, 0, width);
+
+        Path target = thumbnailFile(hash);
+        try {
+            Path temp = Files.createTempFile(thumbnailDir, hash.substring(0, 8), ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                    new DeflaterOutputStream(Files.newOutputStream(temp))))) {
+                out.writeInt(THUMBNAIL_MAGIC);
+                out.writeInt(width);
+                out.writeInt(height);
+                for (int pixel : pixels) {
+                    out.writeInt(pixel);
+                }
+            }
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            log.debug("Failed to store thumbnail {}: {}", hash, e.getMessage());
+        }
+    }
+
+    // ===================== Memory Cache =====================
+
+    private void remember(long localId, String hash, Image image) {
+        hashByMessage.put(localId, hash);
+        long pixels = (long) image.getWidth() * (long) image.getHeight();
+        long budget = memoryMegapixels * 1_000_000L;
+
+        synchronized (this) {
+            Image previous = memoryCache.put(hash, image);
+            if (previous == null) {
+                cachedPixels += pixels;
+            }
+            Iterator<Map.Entry<String, Image>> it = memoryCache.entrySet().iterator();
+            while (cachedPixels > budget && it.hasNext()) {
+                Map.Entry<String, Image> eldest = it.next();
+                if (eldest.getKey().equals(hash)) continue;
+                cachedPixels -= (long) eldest.getValue().getWidth() * (long) eldest.getValue().getHeight();
+                it.remove();
+            }
+        }
+    }
+
+    public synchronized long getCachedPixels() {
+        return cachedPixels;
+    }
+}
@@ -1,25 +1,35 @@
 package com.heronix.talkmodule.service;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.heronix.talkmodule.config.ExecutorRegistry;
+import com.heronix.talkmodule.model.dto.AlertDeliveryDTO;
 import com.heronix.talkmodule.model.dto.EmergencyAlertDTO;
 import com.heronix.talkmodule.model.dto.MessageDTO;
 import com.heronix.talkmodule.model.dto.NewsItemDTO;
 import com.heronix.talkmodule.model.dto.WebSocketMessageDTO;
 import com.heronix.talkmodule.model.enums.ConnectionMode;
+import com.heronix.talkmodule.network.MeteredDeflateExtension;
+import com.heronix.talkmodule.network.OutboundWriter;
 import com.heronix.talkmodule.network.WebSocketClient;
+import com.heronix.talkmodule.network.WireCodec;
+import com.heronix.talkmodule.util.LatencyHistogram;
 import jakarta.annotation.PreDestroy;
 import javafx.application.Platform;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
 /**
  * Service for managing WebSocket connections to Heronix-Talk server.
@@ -31,14 +41,39 @@ import java.util.function.Consumer;
 public class WebSocketService {
 
     private final ObjectMapper objectMapper;
+    private final ExecutorRegistry executors;
     private final SessionManager sessionManager;
     private final ChatService chatService;
     private final AlertService alertService;
+    private final AlertOutbox alertOutbox;
     private final NewsManagementService newsService;
+    private final OutboundWriter outboundWriter;
+    private final PresenceService presenceService;
+    private final SubscriptionManager subscriptionManager;
+    private final ActivityAggregator activityAggregator;
 
     private WebSocketClient webSocketClient;
-    private final ScheduledExecutorService heartbeatScheduler = Executors.newSingleThreadScheduledExecutor();
+    // Round-trip times of protocol pings, kept across reconnects
+    private final LatencyHistogram rttHistogram = new LatencyHistogram();
     private boolean connected = false;
+    // Set after the first open; later opens are reconnects that need a replay
+    private boolean sessionEstablished = false;
+
+    @Value("${heronix.websocket.resume.max-replay:200}")
+    private int maxReplayPerChannel;
+
+    // json (default) or cbor; cbor is only used if the server accepts it at handshake
+    @Value("${heronix.websocket.wire-format:json}")
+    private String wireFormat;
+
+    @Value("${heronix.websocket.compression.enabled:false}")
+    private boolean compressionEnabled;
+
+    @Value("${heronix.websocket.compression.threshold-bytes:1024}")
+    private int compressionThresholdBytes;
+
+    // Created on first connect when compression is enabled; counters span reconnects
+    private MeteredDeflateExtension compression;
 
     // External callbacks
     private Consumer<Boolean> onConnectionStateChange;
@@ -57,7 +92,8 @@ public class WebSocketService {
 
                 log.info("Connecting to WebSocket: {}", wsUrl);
 
-                webSocketClient = new WebSocketClient(new URI(wsUrl), objectMapper);
+                webSocketClient = new WebSocketClient(new URI(wsUrl), objectMapper, outboundWriter, rttHistogram,
+                        WireCodec.forFormat(wireFormat, objectMapper), compressionExtension());
                 setupMessageHandlers();
 
                 // Connect with timeout
@@ -65,7 +101,6 @@ public class WebSocketService {
 
                 if (success) {
                     connected = true;
-                    startHeartbeat();
                     notifyConnectionState(true);
                     log.info("WebSocket connected successfully");
                 } else {
@@ -80,7 +115,7 @@ public class WebSocketService {
                 notifyConnectionState(false);
                 return false;
             }
-        });
+        }, executors.io("websocket"));
     }
 
     /**
@@ -93,22 +128,62 @@ public class WebSocketService {
             webSocketClient = null;
         }
         connected = false;
+        sessionEstablished = false;
+        subscriptionManager.reset();
         notifyConnectionState(false);
     }
 
+    private MeteredDeflateExtension compressionExtension() {
+        if (compressionEnabled && compression == null) {
+            compression = new MeteredDeflateExtension(compressionThresholdBytes);
+        }
+        return compressionEnabled ? compression : null;
+    }
+
     /**
      * Setup message handlers to route incoming WebSocket messages
      */
     private void setupMessageHandlers() {
-        webSocketClient.addMessageListener(this::handleMessage);
+        WebSocketClient client = webSocketClient;
+        client.addMessageListener(this::handleMessage);
+        // ALERT frames skip the chat lane and are handled on the socket thread
+        client.setPriorityListener(this::handleAlertEvent);
 
-        webSocketClient.addConnectionListener(isConnected -> {
+        client.addConnectionListener(isConnected -> {
             this.connected = isConnected;
+            if (!isConnected) {
+                subscriptionManager.disconnected();
+                presenceService.connectionLost();
+                activityAggregator.connectionLost();
+            } else {
+                // Batched JOIN for every desired channel, then replay what was missed
+                subscriptionManager.connected(client);
+                client.requestPresenceSnapshot();
+                if (sessionEstablished) {
+                    resumeSession();
+                } else {
+                    sessionEstablished = true;
+                }
+            }
             sessionManager.updateConnectionMode(isConnected ? ConnectionMode.CONNECTED : ConnectionMode.DISCONNECTED);
             notifyConnectionState(isConnected);
         });
     }
 
+    /**
+     * After a reconnect, rejoin every channel and replay what was missed in one request.
+     */
+    private void resumeSession() {
+        WebSocketClient client = webSocketClient;
+        if (client == null) return;
+        CompletableFuture.runAsync(() -> {
+            Map<Long, Long> resumePoints = chatService.getResumePoints();
+            if (resumePoints.isEmpty()) return;
+            log.info("Resuming session: {} channels, up to {} messages each", resumePoints.size(), maxReplayPerChannel);
+            client.resumeSession(resumePoints, maxReplayPerChannel);
+        }, executors.io("websocket"));
+    }
+
     /**
      * Handle incoming WebSocket message and route to appropriate service
      */
@@ -122,7 +197,7 @@ public class WebSocketService {
                 case "PRESENCE" -> handlePresenceEvent(wsMessage);
                 case "CHANNEL" -> handleChannelEvent(wsMessage);
                 case "NEWS" -> handleNewsEvent(wsMessage);
-                case "ALERT" -> handleAlertEvent(wsMessage);
+                case "ALERT" -> handleAlertEvent(wsMessage, System.nanoTime());
                 case "NOTIFICATION" -> handleNotificationEvent(wsMessage);
                 case "ERROR" -> handleErrorEvent(wsMessage);
                 default -> log.debug("Unhandled message type: {}", wsMessage.getType());
@@ -141,10 +216,31 @@ public class WebSocketService {
             // Handle HISTORY action - payload is a List
             if ("HISTORY".equals(action)) {
                 String payloadJson = objectMapper.writeValueAsString(wsMessage.getPayload());
-                java.util.List<MessageDTO> messages = objectMapper.readValue(payloadJson,
-                        objectMapper.getTypeFactory().constructCollectionType(java.util.List.class, MessageDTO.class));
-                log.info("Received {} history messages for channel {}", messages.size(), wsMessage.getChannelId());
-                // History is loaded via REST, this is a secondary path
+                List<MessageDTO> messages = objectMapper.readValue(payloadJson,
+                        objectMapper.getTypeFactory().constructCollectionType(List.class, MessageDTO.class));
+                log.info("Received {} history messages", messages.size());
+                // Our own messages in the replay confirm delivery of their outbox frames
+                List<String> clientIds = messages.stream().map(MessageDTO::getClientId)
+                        .filter(outboundWriter::isPending).toList();
+                messages.stream().filter(m -> m.getChannelId() == null)
+                        .forEach(m -> m.setChannelId(wsMessage.getChannelId()));
+
+                // A channel that filled its replay budget may have older gaps
+                Map<Long, Long> perChannel = messages.stream().filter(m -> m.getChannelId() != null)
+                        .collect(Collectors.groupingBy(MessageDTO::getChannelId, Collectors.counting()));
+                Set<Long> truncated = perChannel.entrySet().stream()
+                        .filter(e -> e.getValue() >= maxReplayPerChannel)
+                        .map(Map.Entry::getKey)
+                        .collect(Collectors.toSet());
+
+                CompletableFuture.runAsync(() -> {
+                            outboundWriter.acknowledge(clientIds);
+                            chatService.ingestHistory(messages, truncated);
+                        }, executors.io("websocket"))
+                        .exceptionally(e -> {
+                            log.error("Failed to ingest message history", e);
+                            return null;
+                        });
                 return;
             }
 
@@ -152,6 +248,14 @@ public class WebSocketService {
             String payloadJson = objectMapper.writeValueAsString(wsMessage.getPayload());
             MessageDTO message = objectMapper.readValue(payloadJson, MessageDTO.class);
             log.info("Received message: id={}, channelId={}", message.getId(), message.getChannelId());
+            if (outboundWriter.isPending(message.getClientId())) {
+                List<String> clientIds = List.of(message.getClientId());
+                CompletableFuture.runAsync(() -> outboundWriter.acknowledge(clientIds), executors.io("websocket"))
+                        .exceptionally(e -> {
+                            log.error("Failed to acknowledge outbound message", e);
+                            return null;
+                        });
+            }
 
             // Route to ChatService
             chatService.receiveMessage(message);
@@ -162,13 +266,13 @@ public class WebSocketService {
     }
 
     private void handleTypingEvent(WebSocketMessageDTO wsMessage) {
-        // Typing indicators - could be displayed in UI
         log.debug("Typing event: action={}, channelId={}", wsMessage.getAction(), wsMessage.getChannelId());
+        presenceService.handleTypingEvent(wsMessage);
     }
 
     private void handlePresenceEvent(WebSocketMessageDTO wsMessage) {
-        // User presence updates
         log.debug("Presence event: action={}", wsMessage.getAction());
+        presenceService.handlePresenceEvent(wsMessage);
     }
 
     private void handleChannelEvent(WebSocketMessageDTO wsMessage) {
@@ -176,12 +280,33 @@ public class WebSocketService {
         String action = wsMessage.getAction();
         log.debug("Channel event: action={}", action);
 
-        if ("UPDATE".equals(action) || "JOIN".equals(action)) {
+        // Echoes of our own JOIN batches change nothing; reloading would diff the subscriptions again
+        boolean echo = "JOIN".equals(action) && subscriptionManager.joinAcknowledged(channelIds(wsMessage));
+        if ("UPDATE".equals(action) || ("JOIN".equals(action) && !echo)) {
             // Refresh channels list
             chatService.loadChannels();
         }
     }
 
+    /**
+     * Channels a CHANNEL event refers to: the {@code channelIds} payload of a
+     * batched frame, or its single channel.
+     */
+    private static List<Long> channelIds(WebSocketMessageDTO wsMessage) {
+        List<Long> ids = new ArrayList<>();
+        if (wsMessage.getPayload() instanceof Map<?, ?> payload) {
+            if (payload.get("channelIds") instanceof Collection<?> batch) {
+                batch.stream().filter(Number.class::isInstance).forEach(id -> ids.add(((Number) id).longValue()));
+            } else if (payload.get("channelId") instanceof Number id) {
+                ids.add(id.longValue());
+            }
+        }
+        if (ids.isEmpty() && wsMessage.getChannelId() != null) {
+            ids.add(wsMessage.getChannelId());
+        }
+        return ids;
+    }
+
     private void handleNewsEvent(WebSocketMessageDTO wsMessage) {
         if (wsMessage.getPayload() == null) return;
 
@@ -198,10 +323,16 @@ public class WebSocketService {
         }
     }
 
-    private void handleAlertEvent(WebSocketMessageDTO wsMessage) {
+    private void handleAlertEvent(WebSocketMessageDTO wsMessage, long receivedNanos) {
         if (wsMessage.getPayload() == null) return;
 
         try {
+            // Fan-out progress for an alert we issued
+            if ("DELIVERY".equals(wsMessage.getAction())) {
+                alertOutbox.recordDelivery(objectMapper.convertValue(wsMessage.getPayload(), AlertDeliveryDTO.class));
+                return;
+            }
+
             // Parse the alert DTO from payload
             String payloadJson = objectMapper.writeValueAsString(wsMessage.getPayload());
             EmergencyAlertDTO alertDto = objectMapper.readValue(payloadJson, EmergencyAlertDTO.class);
@@ -209,8 +340,8 @@ public class WebSocketService {
             log.warn("ALERT received via WebSocket: [{}] {} - {}",
                     alertDto.getAlertLevel(), alertDto.getAlertType(), alertDto.getTitle());
 
-            // Route to AlertService - this handles saving, displaying, and playing sounds
-            alertService.receiveAlert(alertDto);
+            // Route to AlertService - banner and sound first, persistence in the background
+            alertService.receiveAlert(alertDto, receivedNanos);
 
         } catch (Exception e) {
             log.error("Error parsing alert payload", e);
@@ -233,29 +364,10 @@ public class WebSocketService {
     }
 
     /**
-     * Start heartbeat to keep connection alive
-     */
-    private void startHeartbeat() {
-        heartbeatScheduler.scheduleAtFixedRate(() -> {
-            if (connected && webSocketClient != null) {
-                try {
-                    WebSocketMessageDTO heartbeat = WebSocketMessageDTO.builder()
-                            .type("PING")
-                            .action("HEARTBEAT")
-                            .build();
-                    webSocketClient.sendMessage(heartbeat);
-                } catch (Exception e) {
-                    log.debug("Heartbeat failed: {}", e.getMessage());
-                }
-            }
-        }, 30, 30, TimeUnit.SECONDS);
-    }
-
-    /**
-     * Send a chat message via WebSocket
+     * Send a chat message via WebSocket. Queued durably while disconnected.
      */
     public void sendMessage(Long channelId, String content, String clientId) {
-        if (webSocketClient != null && connected) {
+        if (webSocketClient != null) {
             webSocketClient.sendChatMessage(channelId, content, clientId);
         }
     }
@@ -270,21 +382,15 @@ public class WebSocketService {
     }
 
     /**
-     * Join a channel via WebSocket
-     */
-    public void joinChannel(Long channelId) {
-        if (webSocketClient != null && connected) {
-            webSocketClient.joinChannel(channelId);
-        }
-    }
-
-    /**
-     * Mark messages as read
+     * Mark messages as read. Returns false if there is no open connection to
+     * send the receipt on.
      */
-    public void markAsRead(Long channelId, Long messageId) {
+    public boolean markAsRead(Long channelId, Long messageId) {
         if (webSocketClient != null && connected) {
             webSocketClient.markAsRead(channelId, messageId);
+            return true;
         }
+        return false;
     }
 
     private void notifyConnectionState(boolean isConnected) {
@@ -305,9 +411,22 @@ public class WebSocketService {
         return connected;
     }
 
+    /**
+     * Round-trip latency of WebSocket pings, in milliseconds.
+     */
+    public LatencyHistogram getRoundTripLatency() {
+        return rttHistogram;
+    }
+
+    /**
+     * Raw vs compressed payload bytes, or null when compression is disabled.
+     */
+    public MeteredDeflateExtension.CompressionStats getCompressionStats() {
+        return compression != null ? compression.getStats() : null;
+    }
+
     @PreDestroy
     public void shutdown() {
         disconnect();
-        heartbeatScheduler.shutdown();
     }
 }
@@ -54,9 +54,10 @@ public class AlertManagementController {
                 } else {
                     String time = alert.getIssuedAt() != null ?
                             alert.getIssuedAt().format(FORMAT) : "";
-                    setText(String.format("[%s] %s - %s: %s",
+                    setText(String.format("[%s] %s - %s: %s%s",
                             alert.getAlertLevel(), time,
-                            alert.getAlertType(), alert.getTitle()));
+                            alert.getAlertType(), alert.getTitle(),
+                            alert.isAcknowledged() ? " (acknowledged)" : ""));
 
                     String style = switch (alert.getAlertLevel()) {
                         case EMERGENCY -> "-fx-text-fill: #D32F2F; -fx-font-weight: bold;";
@@ -119,7 +119,7 @@ public class AnalyticsController {
         // Load news stats
         publishedNewsLabel.setText(String.valueOf(newsService.getNewsItems().size()));
         scheduledNewsLabel.setText(String.valueOf(newsService.getScheduledItems().size()));
-        urgentAlertsLabel.setText(String.valueOf(alertService.getActiveAlerts().size()));
+        urgentAlertsLabel.setText(String.valueOf(alertService.getActiveAlertCount()));
 
         // Update timestamp
         lastUpdatedLabel.setText("Last updated: " + LocalDateTime.now().format(TIME_FORMAT));
@@ -1,6 +1,7 @@
 package com.heronix.talkmodule.ui.controller;
 
 import com.heronix.talkmodule.HeronixTalkModuleApplication;
+import com.heronix.talkmodule.config.ExecutorRegistry;
 import com.heronix.talkmodule.model.dto.AuthResponseDTO;
 import com.heronix.talkmodule.network.TalkServerClient;
 import com.heronix.talkmodule.service.SessionManager;
@@ -32,6 +33,7 @@ public class LoginController {
     private final TalkServerClient serverClient;
     private final SessionManager sessionManager;
     private final WebSocketService webSocketService;
+    private final ExecutorRegistry executors;
 
     @Value("${heronix.server.url:http://localhost:9680}")
     private String defaultServerUrl;
@@ -90,7 +92,7 @@ public class LoginController {
         statusLabel.setText("Authenticating...");
 
         // Run authentication in background
-        new Thread(() -> {
+        executors.io("login").execute(() -> {
             try {
                 if (offlineMode) {
                     // Offline mode - create local session
@@ -133,7 +135,7 @@ public class LoginController {
                     setLoading(false);
                 });
             }
-        }).start();
+        });
     }
 
     @FXML
@@ -147,7 +149,7 @@ public class LoginController {
         setLoading(true);
         statusLabel.setText("Checking server...");
 
-        new Thread(() -> {
+        executors.io("login").execute(() -> {
             serverClient.setServerUrl(serverUrl);
             boolean reachable = serverClient.isServerReachable();
 
@@ -161,7 +163,7 @@ public class LoginController {
                     statusLabel.setStyle("-fx-text-fill: #f44336;");
                 }
             });
-        }).start();
+        });
     }
 
     private void openMainWindow() {
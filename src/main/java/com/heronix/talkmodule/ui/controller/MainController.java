@@ -3,15 +3,18 @@ package com.heronix.talkmodule.ui.controller;
 import com.heronix.talkmodule.HeronixTalkModuleApplication;
 import com.heronix.talkmodule.model.domain.EmergencyAlert;
 import com.heronix.talkmodule.model.domain.LocalChannel;
-import com.heronix.talkmodule.model.domain.LocalMessage;
 import com.heronix.talkmodule.model.enums.ConnectionMode;
+import com.heronix.talkmodule.model.timeline.TimelineEntry;
 import com.heronix.talkmodule.service.*;
 import javafx.application.Platform;
+import javafx.collections.ObservableSet;
+import javafx.collections.SetChangeListener;
 import javafx.fxml.FXML;
 import javafx.fxml.FXMLLoader;
 import javafx.scene.Parent;
 import javafx.scene.Scene;
 import javafx.scene.control.*;
+import javafx.scene.image.ImageView;
 import javafx.scene.layout.*;
 import javafx.stage.Modality;
 import javafx.stage.Stage;
@@ -34,13 +37,17 @@ public class MainController {
     private final ChatService chatService;
     private final AlertService alertService;
     private final NewsManagementService newsService;
+    private final ThumbnailService thumbnailService;
+    private final ActivityAggregator activityAggregator;
+    private final PresenceService presenceService;
 
     @FXML private Label userNameLabel;
     @FXML private Label connectionStatusLabel;
     @FXML private Label unreadCountLabel;
+    @FXML private Label onlineCountLabel;
 
     @FXML private ListView<LocalChannel> channelListView;
-    @FXML private ListView<LocalMessage> messageListView;
+    @FXML private ListView<TimelineEntry> messageListView;
     @FXML private TextArea messageInputArea;
     @FXML private Button sendButton;
 
@@ -56,15 +63,28 @@ public class MainController {
 
     @FXML private Label selectedChannelLabel;
     @FXML private Label memberCountLabel;
+    @FXML private Label typingLabel;
 
     private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("HH:mm");
 
+    // Rows rendered since the last prefetch pass, and the window last prefetched; FX thread only
+    private int renderedFrom = Integer.MAX_VALUE;
+    private int renderedTo = -1;
+    private boolean prefetchScheduled;
+    private int prefetchedFrom = -1;
+    private int prefetchedTo = -1;
+
+    // Typing set of the selected channel and its listener; FX thread only
+    private ObservableSet<String> typingUsers;
+    private final SetChangeListener<String> typingListener = change -> updateTypingLabel();
+
     @FXML
     public void initialize() {
         setupUserInfo();
         setupConnectionStatus();
         setupChannelList();
         setupMessageList();
+        setupPresence();
         setupAdminPanel();
         setupAlertBanner();
 
@@ -82,6 +102,15 @@ public class MainController {
                 handleSendMessage();
             }
         });
+        messageInputArea.textProperty().addListener((obs, oldText, newText) -> {
+            LocalChannel channel = chatService.getSelectedChannel();
+            if (channel == null) return;
+            if (newText == null || newText.isBlank()) {
+                activityAggregator.stoppedTyping(channel.getId());
+            } else {
+                activityAggregator.typing(channel.getId());
+            }
+        });
     }
 
     private void setupUserInfo() {
@@ -95,6 +124,15 @@ public class MainController {
             Platform.runLater(() -> updateConnectionStatus(newVal));
         });
         updateConnectionStatus(sessionManager.getConnectionMode().get());
+
+        chatService.getOutboundBackpressure().addListener((obs, oldVal, delayed) -> {
+            if (delayed) {
+                connectionStatusLabel.setText("◐ Sending delayed...");
+                connectionStatusLabel.setStyle("-fx-text-fill: #FFC107;");
+            } else {
+                updateConnectionStatus(sessionManager.getConnectionMode().get());
+            }
+        });
     }
 
     private void updateConnectionStatus(ConnectionMode mode) {
@@ -148,6 +186,7 @@ public class MainController {
                 chatService.selectChannel(newVal);
                 selectedChannelLabel.setText(newVal.getName());
                 memberCountLabel.setText(newVal.getMemberCount() + " members");
+                watchTyping(newVal.getId());
             }
         });
     }
@@ -155,23 +194,53 @@ public class MainController {
     private void setupMessageList() {
         messageListView.setItems(chatService.getCurrentMessages());
         messageListView.setCellFactory(lv -> new ListCell<>() {
+            private final ImageView thumbnailView = new ImageView();
+
             @Override
-            protected void updateItem(LocalMessage message, boolean empty) {
+            protected void updateItem(TimelineEntry message, boolean empty) {
                 super.updateItem(message, empty);
                 if (empty || message == null) {
                     setText(null);
+                    setGraphic(null);
                 } else {
                     String time = message.getTimestamp() != null ?
                             message.getTimestamp().format(TIME_FORMAT) : "";
                     setText(String.format("[%s] %s: %s",
                             time, message.getSenderName(), message.getContent()));
+                    showThumbnail(message);
+                    noteRenderedRow(getIndex());
+                }
+            }
+
+            private void showThumbnail(TimelineEntry message) {
+                if (!message.hasImageAttachment() || message.isDeleted()) {
+                    setGraphic(null);
+                    return;
                 }
+                long localId = message.getLocalId();
+                var cached = thumbnailService.getCached(localId);
+                if (cached.isPresent()) {
+                    thumbnailView.setImage(cached.get());
+                    setGraphic(thumbnailView);
+                    return;
+                }
+                setGraphic(null);
+                thumbnailService.load(localId).thenAccept(image -> Platform.runLater(() -> {
+                    // The cell may have been reused for another row meanwhile
+                    if (image != null && getItem() != null && getItem().getLocalId() == localId) {
+                        thumbnailView.setImage(image);
+                        setGraphic(thumbnailView);
+                    }
+                }));
             }
         });
 
         // Auto-scroll to bottom on new messages
         chatService.getCurrentMessages().addListener(
-                (javafx.collections.ListChangeListener<LocalMessage>) c -> {
+                (javafx.collections.ListChangeListener<TimelineEntry>) c -> {
+                    // Same indices may now hold other rows
+                    prefetchedFrom = -1;
+                    prefetchedTo = -1;
                     while (c.next()) {
                         if (c.wasAdded()) {
                             Platform.runLater(() ->
@@ -181,6 +250,82 @@ public class MainController {
                 });
     }
 
+    /**
+     * Collect the rows laid out in this pulse; one prefetch pass runs after them.
+     */
+    private void noteRenderedRow(int index) {
+        renderedFrom = Math.min(renderedFrom, index);
+        renderedTo = Math.max(renderedTo, index);
+        if (!prefetchScheduled) {
+            prefetchScheduled = true;
+            Platform.runLater(this::prefetchThumbnails);
+        }
+    }
+
+    /**
+     * Warm thumbnails for image rows just outside the rendered cells, only
+     * when that range has moved.
+     */
+    private void prefetchThumbnails() {
+        prefetchScheduled = false;
+        int first = renderedFrom;
+        int last = renderedTo;
+        renderedFrom = Integer.MAX_VALUE;
+        renderedTo = -1;
+        if (last < 0 || (first == prefetchedFrom && last == prefetchedTo)) return;
+        prefetchedFrom = first;
+        prefetchedTo = last;
+
+        var items = messageListView.getItems();
+        int range = thumbnailService.getPrefetchRows();
+        int from = Math.max(0, first - range);
+        int to = Math.min(items.size() - 1, last + range);
+        for (int i = from; i <= to; i++) {
+            TimelineEntry entry = items.get(i);
+            if (entry.hasImageAttachment() && !entry.isDeleted()) {
+                thumbnailService.prefetch(entry.getLocalId());
+            }
+        }
+    }
+
+    private void setupPresence() {
+        ObservableSet<Long> online = presenceService.getOnlineUsers();
+        online.addListener((SetChangeListener<Long>) change -> updateOnlineCount());
+        updateOnlineCount();
+    }
+
+    private void updateOnlineCount() {
+        int count = presenceService.getOnlineCount();
+        onlineCountLabel.setText(count > 0 ? count + " online" : "");
+    }
+
+    /**
+     * Follow the typing set of the newly selected channel.
+     */
+    private void watchTyping(Long channelId) {
+        if (typingUsers != null) {
+            typingUsers.removeListener(typingListener);
+        }
+        typingUsers = channelId != null ? presenceService.getTypingUsers(channelId) : null;
+        if (typingUsers != null) {
+            typingUsers.addListener(typingListener);
+        }
+        updateTypingLabel();
+    }
+
+    private void updateTypingLabel() {
+        int count = typingUsers != null ? typingUsers.size() : 0;
+        String text = switch (count) {
+            case 0 -> "";
+            case 1 -> typingUsers.iterator().next() + " is typing...";
+            case 2 -> String.join(" and ", typingUsers) + " are typing...";
+            default -> "Several people are typing...";
+        };
+        typingLabel.setText(text);
+        typingLabel.setVisible(count > 0);
+        typingLabel.setManaged(count > 0);
+    }
+
     private void setupAdminPanel() {
         // Show admin panel only for admins
         boolean isAdmin = sessionManager.isAdmin();
@@ -199,7 +344,8 @@ public class MainController {
         alertService.getActiveAlerts().addListener(
                 (javafx.collections.ListChangeListener<EmergencyAlert>) c -> {
                     while (c.next()) {
-                        if (c.wasAdded() && !c.getAddedSubList().isEmpty()) {
+                        // Replacements republish alerts already shown, e.g. after acknowledgement
+                        if (c.wasAdded() && !c.wasReplaced() && !c.getAddedSubList().isEmpty()) {
                             Platform.runLater(() ->
                                     showAlertBanner(c.getAddedSubList().get(0)));
                         }
@@ -1,8 +1,12 @@
 package com.heronix.talkmodule.ui.controller;
 
+import com.heronix.talkmodule.config.ExecutorRegistry;
 import com.heronix.talkmodule.model.dto.ParentContactDTO;
 import com.heronix.talkmodule.model.dto.ParentMessageDTO;
+import com.heronix.talkmodule.model.dto.SisStudentDTO;
+import com.heronix.talkmodule.service.BulkDeliveryEngine;
 import com.heronix.talkmodule.service.ParentMessageService;
+import com.heronix.talkmodule.service.RecipientResolver;
 import com.heronix.talkmodule.service.SessionManager;
 import com.heronix.talkmodule.service.SisApiClient;
 import javafx.application.Platform;
@@ -22,7 +26,10 @@ import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Objects;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
 
 /**
  * Controller for Parent Communication Center
@@ -44,6 +51,8 @@ public class ParentCommunicationController {
     private final ParentMessageService parentMessageService;
     private final SessionManager sessionManager;
     private final SisApiClient sisApiClient;
+    private final RecipientResolver recipientResolver;
+    private final ExecutorRegistry executors;
 
     @FXML private StackPane contentArea;
 
@@ -98,6 +107,8 @@ public class ParentCommunicationController {
     // Bulk Tab
     @FXML private ComboBox<String> audienceComboBox;
     @FXML private ComboBox<String> gradeLevelComboBox;
+    @FXML private VBox audienceValueBox;
+    @FXML private TextField audienceValueField;
     @FXML private Label recipientCountLabel;
     @FXML private TextField bulkSubjectField;
     @FXML private TextArea bulkContentArea;
@@ -108,6 +119,9 @@ public class ParentCommunicationController {
     @FXML private DatePicker scheduleDatePicker;
     @FXML private TextField scheduleTimeField;
     @FXML private Button sendBulkButton;
+    @FXML private HBox bulkProgressBox;
+    @FXML private ProgressBar bulkProgressBar;
+    @FXML private Label bulkProgressLabel;
 
     // Templates Tab
     @FXML private ListView<MessageTemplate> templateListView;
@@ -232,6 +246,7 @@ public class ParentCommunicationController {
         gradeLevelComboBox.valueProperty().addListener((obs, oldVal, newVal) -> {
             updateRecipientCount();
         });
+        audienceValueField.textProperty().addListener((obs, oldVal, newVal) -> updateRecipientCount());
 
         updateRecipientCount();
     }
@@ -335,62 +350,51 @@ public class ParentCommunicationController {
         setStatus("Searching for student...");
 
         CompletableFuture.runAsync(() -> {
-            List<java.util.Map<String, Object>> results = sisApiClient.searchStudents(searchTerm);
+            // Show the first hit as soon as it is decoded rather than after the whole page
+            AtomicBoolean shown = new AtomicBoolean();
+            SisStudentDTO.Page page = sisApiClient.searchStudents(searchTerm, student -> {
+                if (shown.compareAndSet(false, true)) {
+                    Platform.runLater(() -> showStudent(student));
+                }
+            });
             Platform.runLater(() -> {
-                if (results.isEmpty()) {
+                if (page.isEmpty()) {
                     showAlert(Alert.AlertType.INFORMATION, "No Results", "No students found matching: " + searchTerm);
                     setStatus("No students found");
                     return;
                 }
-                java.util.Map<String, Object> student = results.get(0);
-                selectedStudentId = student.get("id") instanceof Number ? ((Number) student.get("id")).longValue() : null;
-                String firstName = String.valueOf(student.getOrDefault("firstName", ""));
-                String lastName = String.valueOf(student.getOrDefault("lastName", ""));
-                studentNameLabel.setText(firstName + " " + lastName);
-                studentGradeLabel.setText("Grade: " + student.getOrDefault("gradeLevel", ""));
-                studentIdLabel.setText("ID: " + student.getOrDefault("studentId", ""));
-
-                studentInfoCard.setVisible(true);
-                studentInfoCard.setManaged(true);
-
-                loadParentsForStudent(selectedStudentId);
-                setStatus("Student found");
+                setStatus(page.students().size() == 1 ? "Student found"
+                        : page.students().size() + (page.hasMore() ? "+" : "") + " students found; showing the first");
             });
-        });
+        }, executors.io("parent-portal"));
+    }
+
+    private void showStudent(SisStudentDTO student) {
+        selectedStudentId = student.getId();
+        studentNameLabel.setText(student.getFullName());
+        studentGradeLabel.setText("Grade: " + (student.getGradeLevel() != null ? student.getGradeLevel() : ""));
+        studentIdLabel.setText("ID: " + (student.getStudentId() != null ? student.getStudentId() : ""));
+
+        studentInfoCard.setVisible(true);
+        studentInfoCard.setManaged(true);
+
+        loadParentsForStudent(selectedStudentId, student.getFullName());
     }
 
-    private void loadParentsForStudent(Long studentId) {
+    private void loadParentsForStudent(Long studentId, String studentName) {
         parentContacts.clear();
 
         CompletableFuture.runAsync(() -> {
-            List<java.util.Map<String, Object>> contacts = sisApiClient.getParentContacts(studentId);
-            List<ParentContactDTO> dtos = new ArrayList<>();
-            int priority = 1;
-            for (java.util.Map<String, Object> c : contacts) {
-                dtos.add(ParentContactDTO.builder()
-                        .id(c.get("id") instanceof Number ? ((Number) c.get("id")).longValue() : null)
-                        .parentToken(String.valueOf(c.getOrDefault("parentToken", "")))
-                        .firstName(String.valueOf(c.getOrDefault("firstName", "")))
-                        .lastName(String.valueOf(c.getOrDefault("lastName", "")))
-                        .relationshipType(String.valueOf(c.getOrDefault("relationshipType", "")))
-                        .email(String.valueOf(c.getOrDefault("email", "")))
-                        .cellPhone(String.valueOf(c.getOrDefault("cellPhone", "")))
-                        .preferredContactMethod(String.valueOf(c.getOrDefault("preferredContactMethod", "EMAIL")))
-                        .hasLegalCustody(Boolean.TRUE.equals(c.get("hasLegalCustody")))
-                        .canPickUp(Boolean.TRUE.equals(c.get("canPickUp")))
-                        .emergencyContact(Boolean.TRUE.equals(c.get("emergencyContact")))
-                        .receiveSchoolCommunication(Boolean.TRUE.equals(c.get("receiveSchoolCommunication")))
-                        .priority(priority)
-                        .studentId(studentId)
-                        .studentName(studentNameLabel.getText())
-                        .build());
-            }
+            // The client's cache shares these instances, so label copies
+            List<ParentContactDTO> contacts = sisApiClient.getParentContacts(studentId).stream()
+                    .map(contact -> contact.toBuilder().studentName(studentName).build())
+                    .toList();
             Platform.runLater(() -> {
-                parentContacts.addAll(dtos);
+                parentContacts.addAll(contacts);
                 parentSelectionBox.setVisible(true);
                 parentSelectionBox.setManaged(true);
             });
-        });
+        }, executors.io("parent-portal"));
     }
 
     @FXML
@@ -430,7 +434,16 @@ public class ParentCommunicationController {
         parentMessageService.sendMessage(message).thenAccept(response -> {
             Platform.runLater(() -> {
                 sendButton.setDisable(false);
-                if (response.isSuccess()) {
+                boolean queued = response.getMetadata() != null
+                        && Boolean.TRUE.equals(response.getMetadata().get("queued"));
+                if (response.isSuccess() && queued) {
+                    showAlert(Alert.AlertType.INFORMATION, "Message Queued",
+                            "The server is not reachable right now. Your message to " + selectedParent.getFullName()
+                                    + " is saved and will be sent automatically.");
+                    clearMessageForm();
+                    setStatus("Message queued for delivery");
+                } else if (response.isSuccess()) {
+                    sisApiClient.invalidateMessageHistory(selectedStudentId != null ? selectedStudentId : 0L);
                     showAlert(Alert.AlertType.INFORMATION, "Message Sent",
                             "Your message has been sent to " + selectedParent.getFullName());
                     clearMessageForm();
@@ -500,6 +513,8 @@ public class ParentCommunicationController {
 
     @FXML
     private void handleRefreshHistory() {
+        // An explicit refresh must not be served from the cache
+        sisApiClient.invalidateMessageHistory(selectedStudentId != null ? selectedStudentId : 0L);
         loadMessageHistory();
     }
 
@@ -508,46 +523,115 @@ public class ParentCommunicationController {
         messageHistory.clear();
 
         CompletableFuture.runAsync(() -> {
-            List<java.util.Map<String, Object>> history = sisApiClient.getMessageHistory(
-                    selectedStudentId != null ? selectedStudentId : 0L);
+            List<MessageHistoryItem> items = sisApiClient.getMessageHistory(
+                    selectedStudentId != null ? selectedStudentId : 0L).stream()
+                    .map(msg -> new MessageHistoryItem(
+                            Objects.toString(msg.getSentAt(), ""),
+                            Objects.toString(msg.getRecipient(), ""),
+                            Objects.toString(msg.getCategory(), ""),
+                            Objects.toString(msg.getSubject(), ""),
+                            Objects.toString(msg.getStatus(), "")))
+                    .toList();
             Platform.runLater(() -> {
-                if (history.isEmpty()) {
+                if (items.isEmpty()) {
                     setStatus("No message history found");
                     return;
                 }
-                for (java.util.Map<String, Object> msg : history) {
-                    messageHistory.add(new MessageHistoryItem(
-                            String.valueOf(msg.getOrDefault("sentAt", "")),
-                            String.valueOf(msg.getOrDefault("recipient", "")),
-                            String.valueOf(msg.getOrDefault("category", "")),
-                            String.valueOf(msg.getOrDefault("subject", "")),
-                            String.valueOf(msg.getOrDefault("status", ""))
-                    ));
-                }
-                setStatus("History loaded: " + history.size() + " messages");
+                messageHistory.addAll(items);
+                setStatus("History loaded: " + items.size() + " messages");
             });
-        });
+        }, executors.io("parent-portal"));
     }
 
     // ========================================================================
     // BULK TAB HANDLERS
     // ========================================================================
 
+    /**
+     * Reset the count when the audience changes. Selected audiences are only
+     * resolved when the user asks for a count (or sends), since resolving a
+     * whole school reads every parent token from the SIS.
+     */
     private void updateRecipientCount() {
         String audience = audienceComboBox.getValue();
-        String grade = gradeLevelComboBox.getValue();
+        boolean needsValue = "By Homeroom".equals(audience) || "By Class/Course".equals(audience);
+        audienceValueBox.setVisible(needsValue);
+        audienceValueBox.setManaged(needsValue);
 
-        // Calculate based on audience selection
-        int count;
-        if ("All Parents".equals(audience)) {
-            count = parentContacts.size() > 0 ? parentContacts.size() : 0;
-        } else if ("By Grade Level".equals(audience) && grade != null && !"All Grades".equals(grade)) {
-            count = parentContacts.size() > 0 ? parentContacts.size() : 0;
+        if (selectedAudience() == null) {
+            // Custom selection: the contacts loaded for the current student
+            recipientCountLabel.setText("Estimated recipients: " + loadedParentTokens().size());
         } else {
-            count = parentContacts.size();
+            recipientCountLabel.setText("Estimated recipients: --");
+        }
+    }
+
+    @FXML
+    private void handleCountRecipients() {
+        RecipientResolver.Selector selector = selectedAudience();
+        if (selector == null) {
+            updateRecipientCount();
+            return;
+        }
+        if (selector.scope() != RecipientResolver.Scope.ALL && (selector.value() == null || selector.value().isEmpty())) {
+            showAlert(Alert.AlertType.WARNING, "Missing Audience", "Please enter the homeroom or course section to count.");
+            return;
+        }
+
+        recipientCountLabel.setText("Estimated recipients: counting...");
+        recipientResolver.resolve(selector).whenComplete((tokens, error) -> Platform.runLater(() -> {
+            if (!selector.equals(selectedAudience())) return;
+            recipientCountLabel.setText("Estimated recipients: " + (error != null ? "unavailable" : tokens.size()));
+        }));
+    }
+
+    /**
+     * Who a send will reach, in words, for the confirmation dialog.
+     */
+    private String describeAudience(RecipientResolver.Selector selector) {
+        if (selector == null) {
+            return "the " + loadedParentTokens().size() + " parent contacts currently loaded";
         }
+        return switch (selector.scope()) {
+            case ALL -> "By Grade Level".equals(audienceComboBox.getValue())
+                    ? "ALL parents in every grade (no single grade is selected)"
+                    : "all parents";
+            case GRADE -> "parents of students in " + gradeLevelComboBox.getValue();
+            case HOMEROOM -> "parents of students in homeroom " + selector.value();
+            case ROSTER -> "parents of students in course section " + selector.value();
+        };
+    }
 
-        recipientCountLabel.setText("Estimated recipients: " + count);
+    /**
+     * The audience picked on the bulk tab, or null for a custom selection.
+     */
+    private RecipientResolver.Selector selectedAudience() {
+        String audience = audienceComboBox.getValue();
+        String grade = gradeLevelComboBox.getValue();
+        String value = audienceValueField.getText();
+        if ("By Grade Level".equals(audience) && grade != null && !"All Grades".equals(grade)) {
+            return RecipientResolver.Selector.grade("Kindergarten".equals(grade) ? "K" : grade.replaceAll("\\D", ""));
+        }
+        if ("By Homeroom".equals(audience)) {
+            return RecipientResolver.Selector.homeroom(value);
+        }
+        if ("By Class/Course".equals(audience)) {
+            return RecipientResolver.Selector.roster(value);
+        }
+        if ("Custom Selection".equals(audience)) {
+            return null;
+        }
+        return RecipientResolver.Selector.all();
+    }
+
+    private List<String> loadedParentTokens() {
+        List<String> parentTokens = new ArrayList<>();
+        for (ParentContactDTO pc : parentContacts) {
+            if (pc.getParentToken() != null && !pc.getParentToken().isEmpty()) {
+                parentTokens.add(pc.getParentToken());
+            }
+        }
+        return parentTokens;
     }
 
     @FXML
@@ -578,40 +662,62 @@ public class ParentCommunicationController {
             return;
         }
 
+        RecipientResolver.Selector audience = selectedAudience();
+        if (audience != null && audience.scope() != RecipientResolver.Scope.ALL
+                && (audience.value() == null || audience.value().isEmpty())) {
+            showAlert(Alert.AlertType.WARNING, "Missing Audience", "Please enter the homeroom or course section to send to.");
+            return;
+        }
+
         Alert confirm = new Alert(Alert.AlertType.CONFIRMATION);
         confirm.setTitle("Confirm Bulk Send");
         confirm.setHeaderText("Send Announcement?");
-        confirm.setContentText("This will send the announcement to " + recipientCountLabel.getText().replace("Estimated recipients: ", "") + " parents.\n\nAre you sure?");
+        String count = recipientCountLabel.getText().replace("Estimated recipients: ", "");
+        confirm.setContentText("This will send the announcement to " + describeAudience(audience)
+                + (!count.isEmpty() && count.chars().allMatch(Character::isDigit) ? " (" + count + " recipients)" : "")
+                + ".\n\nAre you sure?");
 
         confirm.showAndWait().ifPresent(response -> {
             if (response == ButtonType.OK) {
                 sendBulkButton.setDisable(true);
                 setStatus("Sending bulk announcement...");
 
-                List<String> parentTokens = new ArrayList<>();
-                for (ParentContactDTO pc : parentContacts) {
-                    if (pc.getParentToken() != null && !pc.getParentToken().isEmpty()) {
-                        parentTokens.add(pc.getParentToken());
-                    }
-                }
-
                 ParentMessageDTO.Announcement announcement = ParentMessageDTO.Announcement.builder()
                         .subject(subject)
                         .content(content)
                         .category("ANNOUNCEMENT")
-                        .parentTokens(parentTokens)
                         .effectiveDate(LocalDateTime.now())
                         .build();
 
-                parentMessageService.sendAnnouncement(announcement).thenAccept(result -> {
+                // Selected audiences are resolved by the service; only custom sends pass tokens from here
+                Consumer<BulkDeliveryEngine.BulkProgress> onProgress =
+                        progress -> Platform.runLater(() -> showBulkProgress(progress));
+                CompletableFuture<ParentMessageDTO.BulkResponse> send;
+                if (audience != null) {
+                    showBulkProgress(new BulkDeliveryEngine.BulkProgress(0, 0, 0, 0, 0, 0));
+                    bulkProgressLabel.setText("Resolving recipients...");
+                    send = parentMessageService.sendAnnouncement(announcement, audience, onProgress);
+                } else {
+                    announcement.setParentTokens(loadedParentTokens());
+                    showBulkProgress(new BulkDeliveryEngine.BulkProgress(announcement.getParentTokens().size(), 0, 0, 0, 0, 0));
+                    send = parentMessageService.sendAnnouncement(announcement, onProgress);
+                }
+                send.thenAccept(result -> {
                     Platform.runLater(() -> {
                         sendBulkButton.setDisable(false);
+                        bulkProgressBox.setVisible(false);
+                        bulkProgressBox.setManaged(false);
                         if (result.isSuccess()) {
                             showAlert(Alert.AlertType.INFORMATION, "Announcement Sent",
                                     "Successfully sent to " + result.getSuccessCount() + " recipients.");
                             bulkSubjectField.clear();
                             bulkContentArea.clear();
                             setStatus("Announcement sent successfully");
+                        } else if (result.getSuccessCount() > 0) {
+                            showAlert(Alert.AlertType.WARNING, "Partially Sent",
+                                    "Sent to " + result.getSuccessCount() + " of " + result.getTotalRecipients()
+                                            + " recipients; " + result.getFailureCount() + " failed.");
+                            setStatus("Announcement partially sent");
                         } else {
                             showAlert(Alert.AlertType.ERROR, "Send Failed",
                                     "Failed to send announcement: " + result.getMessage());
@@ -623,6 +729,20 @@ public class ParentCommunicationController {
         });
     }
 
+    private void showBulkProgress(BulkDeliveryEngine.BulkProgress progress) {
+        bulkProgressBox.setVisible(true);
+        bulkProgressBox.setManaged(true);
+        bulkProgressBar.setProgress(progress.chunksTotal() == 0 ? ProgressBar.INDETERMINATE_PROGRESS : progress.fraction());
+        String text = progress.sent() + " of " + progress.totalRecipients() + " sent";
+        if (progress.failed() > 0) {
+            text += ", " + progress.failed() + " failed";
+        }
+        if (progress.retries() > 0) {
+            text += " (" + progress.retries() + " retries)";
+        }
+        bulkProgressLabel.setText(text);
+    }
+
     // ========================================================================
     // TEMPLATES TAB HANDLERS
     // ========================================================================
@@ -1,5 +1,8 @@
 package com.heronix.talkmodule.ui.controller;
 
+import com.heronix.talkmodule.config.ExecutorRegistry;
+import com.heronix.talkmodule.service.CacheRetentionService;
+import javafx.application.Platform;
 import javafx.fxml.FXML;
 import javafx.scene.control.*;
 import lombok.RequiredArgsConstructor;
@@ -7,6 +10,7 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
 
 import java.io.File;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Controller for application settings.
@@ -16,6 +20,9 @@ import java.io.File;
 @Slf4j
 public class SettingsController {
 
+    private final CacheRetentionService retentionService;
+    private final ExecutorRegistry executors;
+
     @FXML private TextField serverUrlField;
     @FXML private CheckBox autoConnectCheckbox;
     @FXML private CheckBox reconnectCheckbox;
@@ -93,14 +100,23 @@ public class SettingsController {
         Alert confirm = new Alert(Alert.AlertType.CONFIRMATION);
         confirm.setTitle("Clear Cache");
         confirm.setHeaderText("Clear message cache?");
-        confirm.setContentText("This will remove locally cached messages. They will be re-downloaded when you reconnect.");
+        confirm.setContentText("This will remove locally cached messages. They will be re-downloaded when you reconnect.\n\n" +
+                "Pinned, important and unsent messages are kept.");
 
         confirm.showAndWait().ifPresent(response -> {
             if (response == ButtonType.OK) {
                 log.info("Clearing message cache...");
-                // Would clear cache here
-                showInfo("Cache cleared successfully");
-                updateStorageUsed();
+                CompletableFuture.supplyAsync(retentionService::clearMessageCache, executors.io("retention"))
+                        .thenAccept(report -> Platform.runLater(() -> {
+                            if (report.skipped()) {
+                                showInfo("A cache cleanup is already running. Try again when it has finished.");
+                                return;
+                            }
+                            showInfo(String.format("Removed %d cached messages (%s reclaimed now).%n" +
+                                            "The database file is compacted when the application closes.",
+                                    report.messagesPruned(), formatSize(report.bytesReclaimed())));
+                            updateStorageUsed();
+                        }));
             }
         });
     }
@@ -0,0 +1,165 @@
+package com.heronix.talkmodule.util;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Size-bounded LRU cache whose entries expire after a TTL.
+ *
+ * Values the {@code negative} predicate matches (typically null or empty
+ * results) are kept for the shorter negative TTL, so a lookup that found
+ * nothing or failed is not retried on every call but recovers quickly.
+ * Concurrent loads of the same key are coalesced: one caller runs the loader
+ * and the others wait for its result.
+ */
+public class ExpiringLruCache<K, V> {
+
+    private final int maxEntries;
+    private final long ttlNanos;
+    private final long negativeTtlNanos;
+    private final Predicate<V> negative;
+
+    // Access-ordered; guarded by itself
+    private final LinkedHashMap<K, Entry<V>> entries;
+    private final Map<K, CompletableFuture<V>> loading = new ConcurrentHashMap<>();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    public ExpiringLruCache(int maxEntries, Duration ttl, Duration negativeTtl, Predicate<V> negative) {
+        this.maxEntries = Math.max(1, maxEntries);
+        this.ttlNanos = ttl.toNanos();
+        this.negativeTtlNanos = negativeTtl.toNanos();
+        this.negative = negative;
+        this.entries = new LinkedHashMap<>(64, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, Entry<V>> eldest) {
+                if (size() > ExpiringLruCache.this.maxEntries) {
+                    evictions.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Cached value for {@code key}, loading it on the calling thread if absent
+     * or expired. If another thread is already loading the key, waits for it.
+     */
+    public V get(K key, Function<K, V> loader) {
+        Entry<V> entry = fresh(key);
+        if (entry != null) {
+            hits.incrementAndGet();
+            return entry.value;
+        }
+
+        CompletableFuture<V> pending = new CompletableFuture<>();
+        CompletableFuture<V> existing = loading.putIfAbsent(key, pending);
+        if (existing != null) {
+            coalesced.incrementAndGet();
+            return join(existing);
+        }
+
+        misses.incrementAndGet();
+        load(key, loader, pending);
+        return join(pending);
+    }
+
+    /**
+     * Start loading {@code key} in the background unless it is cached or
+     * already loading.
+     */
+    public void prefetch(K key, Function<K, V> loader, Executor executor) {
+        if (fresh(key) != null) return;
+        CompletableFuture<V> pending = new CompletableFuture<>();
+        if (loading.putIfAbsent(key, pending) != null) return;
+        misses.incrementAndGet();
+        try {
+            executor.execute(() -> load(key, loader, pending));
+        } catch (RejectedExecutionException e) {
+            loading.remove(key, pending);
+            pending.cancel(false);
+        }
+    }
+
+    private void load(K key, Function<K, V> loader, CompletableFuture<V> pending) {
+        try {
+            V value = loader.apply(key);
+            long ttl = negative.test(value) ? negativeTtlNanos : ttlNanos;
+            synchronized (entries) {
+                entries.put(key, new Entry<>(value, System.nanoTime() + ttl));
+            }
+            pending.complete(value);
+        } catch (RuntimeException e) {
+            pending.completeExceptionally(e);
+        } finally {
+            loading.remove(key, pending);
+        }
+    }
+
+    private Entry<V> fresh(K key) {
+        synchronized (entries) {
+            Entry<V> entry = entries.get(key);
+            if (entry == null) return null;
+            if (System.nanoTime() - entry.expiresAtNanos >= 0) {
+                entries.remove(key);
+                return null;
+            }
+            return entry;
+        }
+    }
+
+    private static <V> V join(CompletableFuture<V> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException runtime) throw runtime;
+            throw e;
+        }
+    }
+
+    public void invalidate(K key) {
+        synchronized (entries) {
+            entries.remove(key);
+        }
+    }
+
+    public void invalidateAll() {
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    public Stats stats() {
+        int size;
+        synchronized (entries) {
+            size = entries.size();
+        }
+        return new Stats(size, hits.get(), misses.get(), coalesced.get(), evictions.get());
+    }
+
+    private record Entry<V>(V value, long expiresAtNanos) {}
+
+    /**
+     * {@code coalesced} counts lookups that joined a load already in progress.
+     */
+    public record Stats(int size, long hits, long misses, long coalesced, long evictions) {
+
+        public double hitRatio() {
+            long total = hits + misses + coalesced;
+            return total == 0 ? 0.0 : (double) (hits + coalesced) / total;
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package com.heronix.talkmodule.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free log-linear histogram of latencies in milliseconds.
+ *
+ * Values below 16 ms get exact buckets; above that each power of two is split
+ * into 8 sub-buckets, so percentiles are accurate to within 12.5%. Values up to
+ * about 35 minutes are tracked; anything larger lands in the last bucket.
+ */
+public class LatencyHistogram {
+
+    private static final int LINEAR = 16;
+    private static final int SUB_BUCKETS = 8;
+    private static final int MAX_EXPONENT = 30;
+    private static final int BUCKETS = LINEAR + (MAX_EXPONENT - 3) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong total = new AtomicLong();
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    public void record(long millis) {
+        long value = Math.max(0, millis);
+        counts.incrementAndGet(indexOf(value));
+        total.incrementAndGet();
+        sum.addAndGet(value);
+        max.accumulateAndGet(value, Math::max);
+    }
+
+    private static int indexOf(long value) {
+        if (value < LINEAR) return (int) value;
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        if (exponent > MAX_EXPONENT) return BUCKETS - 1;
+        int sub = (int) ((value >> (exponent - 3)) & (SUB_BUCKETS - 1));
+        return Math.min(BUCKETS - 1, LINEAR + (exponent - 4) * SUB_BUCKETS + sub);
+    }
+
+    /**
+     * Upper bound (inclusive) of the values counted in a bucket.
+     */
+    private static long upperBound(int index) {
+        if (index < LINEAR) return index;
+        int exponent = (index - LINEAR) / SUB_BUCKETS + 4;
+        int sub = (index - LINEAR) % SUB_BUCKETS;
+        long base = 1L << exponent;
+        long width = base / SUB_BUCKETS;
+        return base + (sub + 1) * width - 1;
+    }
+
+    /**
+     * Latency at or below which {@code percentile} percent of samples fall; 0 with no samples.
+     */
+    public long percentile(double percentile) {
+        long count = total.get();
+        if (count == 0) return 0;
+        long rank = (long) Math.ceil(count * Math.min(100.0, Math.max(0.0, percentile)) / 100.0);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts.get(i);
+            if (seen >= Math.max(1, rank)) {
+                return Math.min(upperBound(i), max.get());
+            }
+        }
+        return max.get();
+    }
+
+    public long count() {
+        return total.get();
+    }
+
+    public double mean() {
+        long count = total.get();
+        return count == 0 ? 0 : (double) sum.get() / count;
+    }
+
+    public long max() {
+        return max.get();
+    }
+
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts.set(i, 0);
+        }
+        total.set(0);
+        sum.set(0);
+        max.set(0);
+    }
+
+    public Snapshot snapshot() {
+        return new Snapshot(count(), mean(), percentile(50), percentile(95), percentile(99), max());
+    }
+
+    public record Snapshot(long count, double mean, long p50, long p95, long p99, long max) {}
+}
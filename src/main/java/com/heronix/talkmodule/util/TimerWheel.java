@@ -0,0 +1,145 @@
+package com.heronix.talkmodule.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hashed timer wheel for large numbers of short, frequently cancelled timeouts
+ * (typing indicators, alert expiry).
+ *
+ * One daemon thread advances the wheel every tick; scheduling and cancelling
+ * are O(1) and lock-free. Timeouts fire on the wheel thread with tick
+ * resolution, so callbacks must be cheap and hand real work to another thread.
+ */
+public final class TimerWheel {
+
+    private static final Logger log = LoggerFactory.getLogger(TimerWheel.class);
+
+    private final long tickMillis;
+    private final List<Queue<Timeout>> buckets;
+    private final int mask;
+    private final Queue<Timeout> incoming = new ConcurrentLinkedQueue<>();
+    private final Thread worker;
+    private final long startNanos = System.nanoTime();
+
+    private volatile boolean running = true;
+    private long tick;
+
+    public TimerWheel(String name, long tickDuration, TimeUnit unit, int wheelSize) {
+        this.tickMillis = Math.max(1, unit.toMillis(tickDuration));
+        int size = Integer.highestOneBit(Math.max(16, wheelSize - 1)) << 1;
+        this.buckets = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            buckets.add(new ArrayDeque<>());
+        }
+        this.mask = size - 1;
+
+        this.worker = new Thread(this::run, name);
+        this.worker.setDaemon(true);
+        this.worker.start();
+    }
+
+    /**
+     * Run {@code task} once after {@code delay}. Cancel via the returned handle.
+     */
+    public Timeout schedule(Runnable task, long delay, TimeUnit unit) {
+        long deadline = elapsedMillis() + Math.max(0, unit.toMillis(delay));
+        Timeout timeout = new Timeout(task, deadline);
+        incoming.add(timeout);
+        return timeout;
+    }
+
+    public void stop() {
+        running = false;
+        worker.interrupt();
+    }
+
+    private long elapsedMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+    }
+
+    private void run() {
+        while (running) {
+            long nextTickAt = (tick + 1) * tickMillis;
+            long sleep = nextTickAt - elapsedMillis();
+            if (sleep > 0) {
+                try {
+                    Thread.sleep(sleep);
+                } catch (InterruptedException e) {
+                    if (!running) break;
+                }
+            }
+            tick++;
+            transferIncoming();
+            expire(buckets.get((int) (tick & mask)));
+        }
+    }
+
+    private void transferIncoming() {
+        Timeout timeout;
+        while ((timeout = incoming.poll()) != null) {
+            if (timeout.cancelled) continue;
+            long ticks = Math.max(tick, (timeout.deadline + tickMillis - 1) / tickMillis);
+            timeout.rounds = (ticks - tick) / buckets.size();
+            buckets.get((int) (ticks & mask)).add(timeout);
+        }
+    }
+
+    private void expire(Queue<Timeout> bucket) {
+        Iterator<Timeout> it = bucket.iterator();
+        while (it.hasNext()) {
+            Timeout timeout = it.next();
+            if (timeout.cancelled) {
+                it.remove();
+            } else if (timeout.rounds <= 0) {
+                it.remove();
+                timeout.fire();
+            } else {
+                timeout.rounds--;
+            }
+        }
+    }
+
+    public static final class Timeout {
+        private final Runnable task;
+        private final long deadline;
+        private long rounds;
+        private volatile boolean cancelled;
+
+        private Timeout(Runnable task, long deadline) {
+            this.task = task;
+            this.deadline = deadline;
+        }
+
+        /**
+         * Prevent the task from running. Returns false if it already ran or was cancelled.
+         */
+        public boolean cancel() {
+            if (cancelled) return false;
+            cancelled = true;
+            return true;
+        }
+
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        private void fire() {
+            if (cancelled) return;
+            cancelled = true;
+            try {
+                task.run();
+            } catch (Exception e) {
+                log.error("Timer task failed", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.heronix.talkmodule.model.timeline;
+
+import com.heronix.talkmodule.model.domain.LocalMessage;
+import com.heronix.talkmodule.model.enums.MessageType;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Heap footprint of a 100k-message {@link CompactTimeline} against
+ * {@link CompactTimeline#TARGET_HEAP_BYTES_PER_MESSAGE}, with the same
+ * messages held as {@link LocalMessage} entities for comparison.
+ */
+class CompactTimelineTest {
+
+    private static final int MESSAGES = 100_000;
+    private static final LocalDateTime START = LocalDateTime.of(2026, 3, 2, 8, 0);
+
+    @Test
+    void hundredThousandMessagesStayWithinTarget() {
+        CompactTimeline timeline = new CompactTimeline(42L, new StringPool(), MESSAGES, true,
+                id -> Optional.empty());
+        for (int i = 0; i < MESSAGES; i++) {
+            timeline.append(message(i));
+        }
+
+        double perMessage = timeline.estimatedHeapBytesPerMessage();
+        System.out.printf("CompactTimeline: %.1f B/message estimated (target %d), %d B content off-heap%n",
+                perMessage, CompactTimeline.TARGET_HEAP_BYTES_PER_MESSAGE, timeline.offHeapBytes());
+
+        assertThat(timeline.size()).isEqualTo(MESSAGES);
+        assertThat(perMessage).isLessThanOrEqualTo(CompactTimeline.TARGET_HEAP_BYTES_PER_MESSAGE);
+        assertThat(timeline.content(MESSAGES - 1)).isEqualTo(message(MESSAGES - 1).getContent());
+    }
+
+    @Test
+    void localMessageBaselineIsLarger() {
+        long before = usedHeap();
+        List<LocalMessage> messages = new ArrayList<>(MESSAGES);
+        for (int i = 0; i < MESSAGES; i++) {
+            messages.add(message(i));
+        }
+        long after = usedHeap();
+
+        // Measured from the heap, so it includes content strings; still the figure
+        // the compact timeline replaces
+        double perMessage = (double) (after - before) / messages.size();
+        System.out.printf("LocalMessage baseline: %.1f B/message measured%n", perMessage);
+
+        assertThat(perMessage).isGreaterThan(CompactTimeline.TARGET_HEAP_BYTES_PER_MESSAGE);
+    }
+
+    private static LocalMessage message(int i) {
+        return LocalMessage.builder()
+                .localId((long) i + 1)
+                .serverId(500_000L + i)
+                .messageUuid(UUID.nameUUIDFromBytes(("m" + i).getBytes()).toString())
+                .channelId(42L)
+                .channelName("Grade 7 Staff")
+                .senderId(1_000L + i % 25)
+                .senderName("Teacher " + i % 25)
+                .content("Message " + i + ": permission slips are due at the front office")
+                .messageType(MessageType.TEXT)
+                .timestamp(START.plusSeconds(i * 30L))
+                .clientId(UUID.nameUUIDFromBytes(("c" + i).getBytes()).toString())
+                .build();
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,139 @@
+package com.heronix.talkmodule.network;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.heronix.talkmodule.config.JacksonConfig;
+import com.heronix.talkmodule.model.dto.EmergencyAlertDTO;
+import com.heronix.talkmodule.model.dto.MessageDTO;
+import com.heronix.talkmodule.model.dto.WebSocketMessageDTO;
+import com.heronix.talkmodule.model.enums.AlertLevel;
+import com.heronix.talkmodule.model.enums.AlertType;
+import com.heronix.talkmodule.model.enums.MessageType;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Encoded size and decode time of representative MESSAGE, HISTORY and ALERT
+ * frames under the JSON and CBOR wire formats.
+ *
+ * Sizes are asserted; timings are printed for comparison only, since they
+ * depend on the machine running the build.
+ */
+class WireCodecTest {
+
+    private static final int WARMUP_ROUNDS = 200;
+    private static final int MEASURED_ROUNDS = 1_000;
+    private static final int HISTORY_SIZE = 200;
+
+    private final ObjectMapper mapper = new JacksonConfig().objectMapper();
+    private final WireCodec json = WireCodec.json(mapper);
+    private final WireCodec cbor = WireCodec.cbor(mapper);
+
+    @Test
+    void messageFrameIsSmallerAsCbor() throws IOException {
+        compare("MESSAGE", frame(WebSocketMessageDTO.TYPE_MESSAGE, "CREATE", message(1)));
+    }
+
+    @Test
+    void historyFrameIsSmallerAsCbor() throws IOException {
+        List<MessageDTO> history = new ArrayList<>(HISTORY_SIZE);
+        for (int i = 0; i < HISTORY_SIZE; i++) {
+            history.add(message(i));
+        }
+        compare("HISTORY", frame(WebSocketMessageDTO.TYPE_MESSAGE, "HISTORY", history));
+    }
+
+    @Test
+    void alertFrameIsSmallerAsCbor() throws IOException {
+        compare("ALERT", frame(WebSocketMessageDTO.TYPE_ALERT, "CREATE", alert()));
+    }
+
+    private void compare(String label, WebSocketMessageDTO frame) throws IOException {
+        byte[] jsonBytes = encode(json, frame);
+        byte[] cborBytes = encode(cbor, frame);
+
+        // Both formats must carry the same object model
+        assertThat(cbor.decode(ByteBuffer.wrap(cborBytes)))
+                .isEqualTo(json.decode(ByteBuffer.wrap(jsonBytes)));
+        assertThat(cborBytes.length).isLessThan(jsonBytes.length);
+
+        double jsonMicros = meanDecodeMicros(json, jsonBytes);
+        double cborMicros = meanDecodeMicros(cbor, cborBytes);
+        System.out.printf("%-7s json %7d B %8.1f us | cbor %7d B %8.1f us | size %.0f%%%n",
+                label, jsonBytes.length, jsonMicros, cborBytes.length, cborMicros,
+                100.0 * cborBytes.length / jsonBytes.length);
+    }
+
+    private static byte[] encode(WireCodec codec, Object value) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        codec.encode(value, out);
+        return out.toByteArray();
+    }
+
+    private static double meanDecodeMicros(WireCodec codec, byte[] bytes) throws IOException {
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            codec.decode(ByteBuffer.wrap(bytes));
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < MEASURED_ROUNDS; i++) {
+            codec.decode(ByteBuffer.wrap(bytes));
+        }
+        return (System.nanoTime() - start) / 1_000.0 / MEASURED_ROUNDS;
+    }
+
+    private static WebSocketMessageDTO frame(String type, String action, Object payload) {
+        return WebSocketMessageDTO.builder()
+                .type(type)
+                .action(action)
+                .channelId(42L)
+                .payload(payload)
+                .success(true)
+                .timestamp(LocalDateTime.of(2026, 3, 2, 8, 30))
+                .build();
+    }
+
+    private static MessageDTO message(int i) {
+        return MessageDTO.builder()
+                .id(100_000L + i)
+                .messageUuid(UUID.nameUUIDFromBytes(("m" + i).getBytes()).toString())
+                .channelId(42L)
+                .channelName("Grade 7 Staff")
+                .senderId(1_000L + i % 12)
+                .senderName("Teacher " + i % 12)
+                .content("Reminder: field trip forms are due Friday. Message " + i)
+                .messageType(MessageType.TEXT)
+                .status("SENT")
+                .timestamp(LocalDateTime.of(2026, 3, 2, 8, 30).plusMinutes(i))
+                .clientId(UUID.nameUUIDFromBytes(("c" + i).getBytes()).toString())
+                .build();
+    }
+
+    private static EmergencyAlertDTO alert() {
+        return EmergencyAlertDTO.builder()
+                .id(7L)
+                .alertUuid(UUID.nameUUIDFromBytes("alert".getBytes()).toString())
+                .title("Shelter in place")
+                .message("Severe weather warning for the campus area.")
+                .instructions("Move students to interior hallways away from windows.")
+                .alertLevel(AlertLevel.EMERGENCY)
+                .alertType(AlertType.WEATHER)
+                .issuedById(1L)
+                .issuedByName("Main Office")
+                .active(true)
+                .requiresAcknowledgment(true)
+                .playSound(true)
+                .campusWide(true)
+                .repeatCount(3)
+                .recipientCount(180)
+                .issuedAt(LocalDateTime.of(2026, 3, 2, 9, 15))
+                .build();
+    }
+}